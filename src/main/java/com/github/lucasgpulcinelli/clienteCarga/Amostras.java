@@ -0,0 +1,72 @@
+package com.github.lucasgpulcinelli.clienteCarga;
+
+import java.util.Arrays;
+
+/**
+ * Amostras guarda medidas de tempo ou tamanho, em um array que cresce conforme
+ * necessário, e calcula percentis sobre elas.
+ */
+public class Amostras {
+    /** valores guardados */
+    private long[] valores = new long[1024];
+    /** número de valores guardados */
+    private int tamanho = 0;
+
+    /**
+     * @param valor novo valor a ser guardado
+     */
+    public void adicionar(long valor) {
+        if (tamanho == valores.length) {
+            valores = Arrays.copyOf(valores, tamanho * 2);
+        }
+        valores[tamanho++] = valor;
+    }
+
+    /**
+     * @param outras amostras a serem adicionadas a estas
+     */
+    public void adicionarTodas(Amostras outras) {
+        for (int i = 0; i < outras.tamanho; i++) {
+            adicionar(outras.valores[i]);
+        }
+    }
+
+    /**
+     * @return o número de valores guardados
+     */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * percentil calcula um percentil dos valores guardados pelo método do valor
+     * mais próximo.
+     *
+     * @param p o percentil, entre 0 e 100
+     * @return o valor do percentil, ou 0 caso não haja valores
+     */
+    public long percentil(double p) {
+        if (tamanho == 0) {
+            return 0;
+        }
+        long[] ordenados = Arrays.copyOf(valores, tamanho);
+        Arrays.sort(ordenados);
+
+        int i = (int) Math.ceil(p / 100 * tamanho) - 1;
+        return ordenados[Math.max(0, Math.min(tamanho - 1, i))];
+    }
+
+    /**
+     * resumo formata os percentis mais comuns dos valores guardados.
+     *
+     * @param divisor valor pelo qual cada percentil é dividido antes de ser
+     *                mostrado (por exemplo, 1e6 para mostrar nanossegundos em
+     *                milissegundos)
+     * @return o resumo formatado
+     */
+    public String resumo(double divisor) {
+        return String.format("p50 %8.2f  p90 %8.2f  p99 %8.2f  max %8.2f  (n=%d)",
+                percentil(50) / divisor, percentil(90) / divisor,
+                percentil(99) / divisor, percentil(100) / divisor, tamanho);
+    }
+}
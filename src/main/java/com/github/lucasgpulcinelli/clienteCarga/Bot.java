@@ -0,0 +1,226 @@
+package com.github.lucasgpulcinelli.clienteCarga;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.ConexaoCliente;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+
+/**
+ * Bot é um cliente sem interface gráfica que joga sozinho, usando o mesmo
+ * protocolo que o {@link clienteTerminal}, e mede cada estado recebido. Caso
+ * os dois jogadores já estejam no jogo, o bot entra como espectador e somente
+ * recebe estados.
+ *
+ * As ações são escolhidas aleatoriamente ou seguem um roteiro fixo, repetido
+ * enquanto o bot estiver jogando. Assim como um jogador real, o bot volta ao
+ * jogo com {@link Acao#ENTRAR_JOGO} sempre que perde uma vida.
+ *
+ * @see Main
+ */
+public class Bot extends Thread {
+    /** ip do servidor */
+    private final String ip;
+    /** porta do servidor */
+    private final int porta;
+    /** roteiro de ações a ser repetido, ou null para ações aleatórias */
+    private final List<Acao> roteiro;
+    /** momento, em System.nanoTime(), em que o bot deve parar de jogar */
+    private final long fim;
+    /** gerador das ações aleatórias */
+    private final Random aleatorio;
+
+    /** a conexão com o servidor, ou null antes de conectar */
+    private volatile ConexaoCliente conexao = null;
+    /** posição atual no roteiro */
+    private int posicaoRoteiro = 0;
+
+    /** id do jogador associado ao bot, ou -1 caso não tenha sido recebido */
+    private volatile int jogador = -1;
+    /** número de estados recebidos */
+    private volatile int estados = 0;
+    /** erro que fez o bot parar, ou null */
+    private volatile String erro = null;
+
+    /** intervalos entre a chegada de dois estados seguidos, em nanossegundos */
+    private final Amostras intervalos = new Amostras();
+    /** variação entre dois intervalos seguidos, em nanossegundos */
+    private final Amostras jitter = new Amostras();
+    /** tempo de decodificação de cada estado, em nanossegundos */
+    private final Amostras decodificacao = new Amostras();
+    /** bytes de cada estado */
+    private final Amostras bytes = new Amostras();
+
+    /**
+     * Cria um novo bot, que só se conecta quando a thread for iniciada.
+     *
+     * @param ip      ip do servidor
+     * @param porta   porta do servidor
+     * @param roteiro roteiro de ações a ser repetido, ou null para ações
+     *                aleatórias
+     * @param fim     momento, em System.nanoTime(), em que o bot deve parar
+     * @param semente semente das ações aleatórias
+     */
+    public Bot(String ip, int porta, List<Acao> roteiro, long fim, long semente) {
+        this.ip = ip;
+        this.porta = porta;
+        this.roteiro = roteiro;
+        this.fim = fim;
+        this.aleatorio = new Random(semente);
+        setDaemon(true);
+    }
+
+    /**
+     * proximaAcao escolhe a próxima ação do bot.
+     *
+     * @return a próxima ação, do roteiro ou aleatória
+     */
+    private Acao proximaAcao() {
+        if (roteiro != null) {
+            Acao a = roteiro.get(posicaoRoteiro);
+            posicaoRoteiro = (posicaoRoteiro + 1) % roteiro.size();
+            return a;
+        }
+
+        int sorteio = aleatorio.nextInt(10);
+        if (sorteio < 4) {
+            return Acao.NENHUMA_ACAO;
+        } else if (sorteio < 6) {
+            return Acao.ESQUERDA;
+        } else if (sorteio < 8) {
+            return Acao.DIREITA;
+        }
+        return Acao.ATIRAR;
+    }
+
+    /**
+     * run conecta ao servidor e joga até o fim do tempo, até o jogo ser perdido
+     * ou até a conexão cair.
+     */
+    @Override
+    public void run() {
+        try {
+            conexao = new ConexaoCliente(ip, porta);
+            jogador = conexao.receberJogador();
+
+            Evento perdaDeVida = (jogador == 1) ? Evento.PERDEU_VIDA_P1 : Evento.PERDEU_VIDA_P2;
+            boolean espectador = (jogador == ConexaoCliente.ESPECTADOR);
+
+            long chegadaAnterior = -1;
+            long intervaloAnterior = -1;
+
+            while (System.nanoTime() < fim) {
+                EstadoJogo estadoJogo = conexao.receberEstado();
+                estados++;
+
+                long chegada = conexao.getChegadaUltimoEstado();
+                if (chegadaAnterior >= 0) {
+                    long intervalo = chegada - chegadaAnterior;
+                    intervalos.adicionar(intervalo);
+                    if (intervaloAnterior >= 0) {
+                        jitter.adicionar(Math.abs(intervalo - intervaloAnterior));
+                    }
+                    intervaloAnterior = intervalo;
+                }
+                chegadaAnterior = chegada;
+                decodificacao.adicionar(conexao.getNanosDecodificacao());
+                bytes.adicionar(conexao.getBytesUltimoEstado());
+
+                List<Evento> eventos = conexao.getEventos();
+                if (eventos.contains(Evento.PERDEU_JOGO)) {
+                    erro = "jogo perdido no tick " + estadoJogo.getTick();
+                    break;
+                }
+                if (espectador) {
+                    // espectadores não enviam ações
+                    continue;
+                }
+                if (eventos.contains(perdaDeVida)) {
+                    conexao.enviarAcao(Acao.ENTRAR_JOGO);
+                }
+
+                conexao.enviarAcao(proximaAcao());
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            erro = e.toString();
+        }
+
+        parar();
+    }
+
+    /**
+     * parar encerra a conexão do bot, fazendo qualquer leitura bloqueada
+     * terminar.
+     */
+    public void parar() {
+        ConexaoCliente c = conexao;
+        if (c == null) {
+            return;
+        }
+        try {
+            c.fechar();
+        } catch (IOException e) {
+            // a conexão já estava fechada
+        }
+    }
+
+    /**
+     * @return o id do jogador associado, ou -1 caso não tenha sido recebido
+     */
+    public int getJogador() {
+        return jogador;
+    }
+
+    /**
+     * @return o número de estados recebidos
+     */
+    public int getEstados() {
+        return estados;
+    }
+
+    /**
+     * @return o erro que fez o bot parar, ou null
+     */
+    public String getErro() {
+        return erro;
+    }
+
+    /**
+     * @return o total de bytes recebidos
+     */
+    public long getBytesRecebidos() {
+        ConexaoCliente c = conexao;
+        return (c == null) ? 0 : c.getBytesRecebidos();
+    }
+
+    /**
+     * @return os intervalos entre estados, em nanossegundos
+     */
+    public Amostras getIntervalos() {
+        return intervalos;
+    }
+
+    /**
+     * @return as variações entre intervalos seguidos, em nanossegundos
+     */
+    public Amostras getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return os tempos de decodificação, em nanossegundos
+     */
+    public Amostras getDecodificacao() {
+        return decodificacao;
+    }
+
+    /**
+     * @return os tamanhos de cada estado, em bytes
+     */
+    public Amostras getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.lucasgpulcinelli.clienteCarga;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+import com.github.lucasgpulcinelli.comunicacao.ConexaoCliente;
+import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
+import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
+
+/**
+ * GraficoNulo é uma {@link InterfaceGrafica} que não desenha nada: a cada
+ * frame, guarda medidas do caminho de recepção do cliente, para que o
+ * {@link clienteTerminal} possa ser medido sem terminal nem javaFx, com vários
+ * clientes no mesmo processo.
+ *
+ * Cada frame guarda o número de entidades recebidas, o tempo de decodificação
+ * do estado, o intervalo desde o frame anterior e o tempo de CPU gasto pela
+ * thread do cliente desde o frame anterior, que inclui receber, decodificar e
+ * responder o estado. Um GraficoNulo deve ser usado por uma única thread, e
+ * as medidas só devem ser lidas depois que ela terminar.
+ *
+ * @see clienteTerminal.Main
+ */
+public class GraficoNulo implements InterfaceGrafica {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** a conexão cujos estados são desenhados */
+    private final ConexaoCliente conexao;
+    /** se o tempo de CPU da thread pode ser medido nesta JVM */
+    private final boolean medirCpu;
+
+    /** momento, em System.nanoTime(), do frame anterior, ou -1 */
+    private long frameAnterior = -1;
+    /** tempo de CPU da thread no frame anterior, ou -1 */
+    private long cpuAnterior = -1;
+
+    /** número de entidades de cada frame */
+    private final Amostras entidades = new Amostras();
+    /** tempo de decodificação de cada estado, em nanossegundos */
+    private final Amostras decodificacao = new Amostras();
+    /** intervalos entre dois frames seguidos, em nanossegundos */
+    private final Amostras intervalos = new Amostras();
+    /** tempo de CPU da thread entre dois frames seguidos, em nanossegundos */
+    private final Amostras cpu = new Amostras();
+
+    private int vidasPerdidas = 0;
+    private int niveisGanhos = 0;
+    private boolean perdeuJogo = false;
+
+    /**
+     * Cria um gráfico nulo para os estados de uma conexão.
+     *
+     * @param conexao a conexão, usada para ler o tempo de decodificação de cada
+     *                estado desenhado
+     */
+    public GraficoNulo(ConexaoCliente conexao) {
+        this.conexao = conexao;
+        this.medirCpu = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    @Override
+    public void desenharTela(int score, int vidas, List<Desenhavel> desenhaveis) {
+        long agora = System.nanoTime();
+        long cpuAgora = medirCpu ? THREADS.getCurrentThreadCpuTime() : -1;
+
+        entidades.adicionar(desenhaveis.size());
+        decodificacao.adicionar(conexao.getNanosDecodificacao());
+        if (frameAnterior >= 0) {
+            intervalos.adicionar(agora - frameAnterior);
+        }
+        if (cpuAnterior >= 0) {
+            cpu.adicionar(cpuAgora - cpuAnterior);
+        }
+        frameAnterior = agora;
+        cpuAnterior = cpuAgora;
+    }
+
+    @Override
+    public void printPerdeuVida() {
+        vidasPerdidas++;
+    }
+
+    @Override
+    public void printGanhouNivel(int nivel) {
+        niveisGanhos++;
+    }
+
+    @Override
+    public void printSplashScreen() {
+    }
+
+    @Override
+    public void printPerdeuJogo(Classificacao classificacao) {
+        perdeuJogo = true;
+    }
+
+    @Override
+    public void setTelemetria(String telemetria) {
+    }
+
+    /**
+     * @return o número de frames desenhados
+     */
+    public int getFrames() {
+        return entidades.getTamanho();
+    }
+
+    /**
+     * @return o número de entidades de cada frame
+     */
+    public Amostras getEntidades() {
+        return entidades;
+    }
+
+    /**
+     * @return os tempos de decodificação, em nanossegundos
+     */
+    public Amostras getDecodificacao() {
+        return decodificacao;
+    }
+
+    /**
+     * @return os intervalos entre frames, em nanossegundos
+     */
+    public Amostras getIntervalos() {
+        return intervalos;
+    }
+
+    /**
+     * @return o tempo de CPU entre frames, em nanossegundos, vazio caso a JVM
+     *         não meça o tempo de CPU de threads
+     */
+    public Amostras getCpu() {
+        return cpu;
+    }
+
+    /**
+     * @return quantas vezes o jogador perdeu uma vida
+     */
+    public int getVidasPerdidas() {
+        return vidasPerdidas;
+    }
+
+    /**
+     * @return quantos níveis foram ganhos
+     */
+    public int getNiveisGanhos() {
+        return niveisGanhos;
+    }
+
+    /**
+     * @return se o fim do jogo foi desenhado
+     */
+    public boolean getPerdeuJogo() {
+        return perdeuJogo;
+    }
+}
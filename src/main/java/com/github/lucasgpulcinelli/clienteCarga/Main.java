@@ -0,0 +1,129 @@
+package com.github.lucasgpulcinelli.clienteCarga;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+
+/**
+ * Main implementa o gerador de carga do Space Invaders Multiplayer: abre
+ * várias conexões ao mesmo tempo com um servidor, cada uma jogada por um
+ * {@link Bot}, e no final imprime um resumo em percentis das medidas de cada
+ * conexão.
+ *
+ * @see servidor.Main O método principal do servidor
+ * @see Bot
+ */
+public class Main {
+    /**
+     * main executa o gerador de carga.
+     *
+     * Os argumentos, todos opcionais, são, em ordem:
+     * o ip do servidor, com uma porta opcional (padrão 127.0.0.1:8080),
+     * o número de conexões (padrão 2),
+     * a duração do teste em segundos (padrão 30) e
+     * um arquivo de roteiro, com uma {@link Acao} por linha (linhas vazias ou
+     * iniciadas por '#' são ignoradas). Sem roteiro, as ações são aleatórias.
+     * Com -Dcompressao=true, todas as conexões pedem compressão ao servidor.
+     *
+     * @param args os argumentos descritos acima
+     * @throws IOException          caso o arquivo de roteiro não possa ser lido
+     * @throws InterruptedException caso a thread seja interrompida
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String[] ipPortaSeparado = ((args.length > 0) ? args[0] : "127.0.0.1").split(":");
+        String ip = ipPortaSeparado[0];
+        int porta = (ipPortaSeparado.length > 1) ? Integer.parseInt(ipPortaSeparado[1]) : 8080;
+        int conexoes = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+        int segundos = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+        List<Acao> roteiro = (args.length > 3) ? lerRoteiro(args[3]) : null;
+
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+
+        ArrayList<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < conexoes; i++) {
+            Bot b = new Bot(ip, porta, roteiro, fim, i);
+            bots.add(b);
+            b.start();
+        }
+
+        System.out.printf("%d conexões com %s:%d por %ds\n", conexoes, ip, porta, segundos);
+
+        // espera o tempo do teste e mais um pouco para os bots terminarem sozinhos
+        for (Bot b : bots) {
+            long restante = (fim - System.nanoTime()) / 1_000_000 + 1000;
+            b.join(Math.max(1, restante));
+        }
+        for (Bot b : bots) {
+            b.parar();
+        }
+
+        imprimirResumo(bots, segundos);
+    }
+
+    /**
+     * lerRoteiro lê um arquivo de roteiro de ações.
+     *
+     * @param arquivo caminho do arquivo
+     * @return as ações do roteiro, em ordem
+     * @throws IOException caso o arquivo não possa ser lido ou esteja vazio
+     */
+    private static List<Acao> lerRoteiro(String arquivo) throws IOException {
+        ArrayList<Acao> roteiro = new ArrayList<>();
+        for (String linha : Files.readAllLines(Paths.get(arquivo), StandardCharsets.UTF_8)) {
+            linha = linha.trim();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            roteiro.add(Acao.valueOf(linha));
+        }
+
+        if (roteiro.isEmpty()) {
+            throw new IOException("roteiro vazio: " + arquivo);
+        }
+        return roteiro;
+    }
+
+    /**
+     * imprimirResumo imprime as medidas de cada conexão e os percentis de todas
+     * as conexões juntas.
+     *
+     * @param bots     os bots do teste
+     * @param segundos a duração do teste
+     */
+    private static void imprimirResumo(List<Bot> bots, int segundos) {
+        Amostras intervalos = new Amostras();
+        Amostras jitter = new Amostras();
+        Amostras decodificacao = new Amostras();
+        Amostras bytes = new Amostras();
+        long bytesTotais = 0;
+
+        System.out.println();
+        for (int i = 0; i < bots.size(); i++) {
+            Bot b = bots.get(i);
+            System.out.printf("conexão %3d: jogador %2d, %6d estados, %8.1f KiB, jitter p99 %6.2fms, "
+                    + "decodificação p50 %6.3fms%s\n",
+                    i, b.getJogador(), b.getEstados(), b.getBytesRecebidos() / 1024.0,
+                    b.getJitter().percentil(99) / 1e6, b.getDecodificacao().percentil(50) / 1e6,
+                    (b.getErro() == null) ? "" : " (" + b.getErro() + ")");
+
+            intervalos.adicionarTodas(b.getIntervalos());
+            jitter.adicionarTodas(b.getJitter());
+            decodificacao.adicionarTodas(b.getDecodificacao());
+            bytes.adicionarTodas(b.getBytes());
+            bytesTotais += b.getBytesRecebidos();
+        }
+
+        System.out.println();
+        System.out.println("intervalo entre estados (ms): " + intervalos.resumo(1e6));
+        System.out.println("jitter (ms):                  " + jitter.resumo(1e6));
+        System.out.println("decodificação (ms):           " + decodificacao.resumo(1e6));
+        System.out.println("bytes por estado:             " + bytes.resumo(1));
+        System.out.printf("total recebido: %.1f KiB (%.1f KiB/s)\n",
+                bytesTotais / 1024.0, bytesTotais / 1024.0 / segundos);
+    }
+}
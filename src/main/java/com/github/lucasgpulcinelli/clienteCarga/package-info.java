@@ -0,0 +1,5 @@
+/**
+ * clienteCarga cria um gerador de carga para o servidor, com vários clientes
+ * sem interface gráfica jogando ao mesmo tempo.
+ */
+package com.github.lucasgpulcinelli.clienteCarga;
@@ -0,0 +1,215 @@
+package com.github.lucasgpulcinelli.clienteJavafx;
+
+import java.util.HashMap;
+
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * AtlasSprites junta as imagens de todos os sprites (e os segundos quadros da
+ * animação dos inimigos) em uma única imagem, para que cada personagem seja
+ * desenhado com um recorte dessa imagem, encontrado pelo ordinal do sprite em
+ * vez de uma busca em um mapa.
+ *
+ * Para telas maiores ou menores que o tamanho original, o atlas é copiado em
+ * uma escala (com vizinho mais próximo, mantendo os pixels dos sprites nítidos)
+ * uma única vez, e as cópias ficam guardadas por escala. Assim os recortes são
+ * desenhados sem mudança de tamanho, sem reamostrar as imagens a cada quadro.
+ */
+class AtlasSprites {
+    /** espaço entre dois sprites no atlas, para que um recorte não pegue o vizinho */
+    private static final int ESPACO = 1;
+    /** número máximo de escalas guardadas */
+    private static final int MAXIMO_ESCALAS = 4;
+
+    private static final Sprite[] SPRITES = Sprite.values();
+
+    /** um atlas em uma escala, com o recorte de cada quadro de cada sprite */
+    static final class Folha {
+        final Image imagem;
+        /**
+         * recorte de cada quadro, indexado por {@link indice}; o segundo quadro de
+         * sprites sem animação é igual ao primeiro
+         */
+        final int[] x;
+        final int[] y;
+        final int[] largura;
+        final int[] altura;
+
+        private Folha(Image imagem, int[] x, int[] y, int[] largura, int[] altura) {
+            this.imagem = imagem;
+            this.x = x;
+            this.y = y;
+            this.largura = largura;
+            this.altura = altura;
+        }
+
+        /**
+         * @param sprite o sprite
+         * @param segundo se é o segundo quadro da animação
+         * @return o índice do recorte do quadro
+         */
+        static int indice(Sprite sprite, boolean segundo) {
+            return segundo ? SPRITES.length + sprite.ordinal() : sprite.ordinal();
+        }
+    }
+
+    private final Folha original;
+    /** cópias do atlas por escala, em centésimos */
+    private final HashMap<Integer, Folha> escalas = new HashMap<>();
+
+    /**
+     * Cria o atlas, lendo todas as imagens da pasta de resources.
+     */
+    AtlasSprites() {
+        Image[] quadros = new Image[2 * SPRITES.length];
+        for (Sprite s : SPRITES) {
+            quadros[Folha.indice(s, false)] = ler(s.name());
+        }
+        // somente os inimigos têm um segundo quadro
+        Sprite[] inimigos = { Sprite.INIMIGO1, Sprite.INIMIGO2, Sprite.INIMIGO3 };
+        for (Sprite s : inimigos) {
+            quadros[Folha.indice(s, true)] = ler(s.name() + "_2");
+        }
+        original = montar(quadros);
+    }
+
+    /**
+     * ler carrega a imagem de um sprite.
+     *
+     * @param nome o nome do arquivo, sem a extensão
+     * @return a imagem
+     */
+    private Image ler(String nome) {
+        return new Image(getClass().getResource("/res/" + nome + ".png").toString());
+    }
+
+    /**
+     * montar coloca as imagens lado a lado em uma única imagem.
+     *
+     * @param quadros as imagens de cada quadro, ou null para quadros repetidos
+     * @return o atlas
+     */
+    private static Folha montar(Image[] quadros) {
+        int n = quadros.length;
+        int[] x = new int[n];
+        int[] y = new int[n];
+        int[] largura = new int[n];
+        int[] altura = new int[n];
+
+        int larguraTotal = 0;
+        int alturaTotal = 1;
+        for (int i = 0; i < n; i++) {
+            if (quadros[i] == null) {
+                continue;
+            }
+            largura[i] = (int) quadros[i].getWidth();
+            altura[i] = (int) quadros[i].getHeight();
+            x[i] = larguraTotal;
+            larguraTotal += largura[i] + ESPACO;
+            alturaTotal = Math.max(alturaTotal, altura[i]);
+        }
+
+        WritableImage atlas = new WritableImage(Math.max(1, larguraTotal), alturaTotal);
+        PixelWriter escritor = atlas.getPixelWriter();
+        for (int i = 0; i < n; i++) {
+            if (quadros[i] != null) {
+                escritor.setPixels(x[i], y[i], largura[i], altura[i], quadros[i].getPixelReader(), 0, 0);
+            }
+        }
+        repetirPrimeiros(x, y, largura, altura);
+        return new Folha(atlas, x, y, largura, altura);
+    }
+
+    /**
+     * repetirPrimeiros faz os sprites sem segundo quadro usarem o primeiro.
+     */
+    private static void repetirPrimeiros(int[] x, int[] y, int[] largura, int[] altura) {
+        for (int i = SPRITES.length; i < x.length; i++) {
+            if (largura[i] == 0) {
+                int primeiro = i - SPRITES.length;
+                x[i] = x[primeiro];
+                y[i] = y[primeiro];
+                largura[i] = largura[primeiro];
+                altura[i] = altura[primeiro];
+            }
+        }
+    }
+
+    /**
+     * emEscala devolve o atlas em uma escala, criando e guardando a cópia caso
+     * ela ainda não exista. Deve ser chamado na thread do javaFx.
+     *
+     * @param escala a escala, arredondada para centésimos
+     * @return o atlas na escala
+     */
+    Folha emEscala(double escala) {
+        int chave = (int) Math.max(1, Math.round(escala * 100));
+        if (chave == 100) {
+            return original;
+        }
+        Folha f = escalas.get(chave);
+        if (f == null) {
+            if (escalas.size() >= MAXIMO_ESCALAS) {
+                // a janela mudou muitas vezes de tamanho; as escalas antigas
+                // provavelmente não voltam
+                escalas.clear();
+            }
+            f = escalar(chave / 100.0);
+            escalas.put(chave, f);
+        }
+        return f;
+    }
+
+    /**
+     * escalar copia o atlas original em outra escala, sprite por sprite.
+     *
+     * @param escala a escala
+     * @return o atlas na escala
+     */
+    private Folha escalar(double escala) {
+        int n = original.x.length;
+        int[] x = new int[n];
+        int[] y = new int[n];
+        int[] largura = new int[n];
+        int[] altura = new int[n];
+
+        // os quadros repetidos apontam para o primeiro e não são copiados
+        boolean[] repetido = new boolean[n];
+        int larguraTotal = 0;
+        int alturaTotal = 1;
+        for (int i = 0; i < n; i++) {
+            repetido[i] = i >= SPRITES.length && original.x[i] == original.x[i - SPRITES.length];
+            if (repetido[i]) {
+                continue;
+            }
+            largura[i] = Math.max(1, (int) Math.round(original.largura[i] * escala));
+            altura[i] = Math.max(1, (int) Math.round(original.altura[i] * escala));
+            x[i] = larguraTotal;
+            larguraTotal += largura[i] + ESPACO;
+            alturaTotal = Math.max(alturaTotal, altura[i]);
+        }
+
+        WritableImage atlas = new WritableImage(Math.max(1, larguraTotal), alturaTotal);
+        PixelReader leitor = original.imagem.getPixelReader();
+        PixelWriter escritor = atlas.getPixelWriter();
+        for (int i = 0; i < n; i++) {
+            if (repetido[i]) {
+                continue;
+            }
+            for (int py = 0; py < altura[i]; py++) {
+                int oy = original.y[i] + Math.min(original.altura[i] - 1, (int) (py / escala));
+                for (int px = 0; px < largura[i]; px++) {
+                    int ox = original.x[i] + Math.min(original.largura[i] - 1, (int) (px / escala));
+                    escritor.setArgb(x[i] + px, y[i] + py, leitor.getArgb(ox, oy));
+                }
+            }
+        }
+        repetirPrimeiros(x, y, largura, altura);
+        return new Folha(atlas, x, y, largura, altura);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.lucasgpulcinelli.clienteJavafx;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BufferTriplo passa objetos reutilizáveis de uma thread que escreve para uma
+ * thread que lê, sem travas e sem que uma espere pela outra.
+ *
+ * Há três buffers: um sendo escrito, um sendo lido e um no meio, com o último
+ * buffer completo publicado. Publicar troca o buffer escrito pelo do meio, e
+ * ler o mais novo troca o do meio pelo lido, então a escrita nunca espera a
+ * leitura terminar, e a leitura sempre pega o buffer completo mais novo,
+ * pulando os que não deu tempo de ler.
+ *
+ * @param <T> o tipo dos buffers
+ * @see GraficosJavafx
+ */
+class BufferTriplo<T> {
+    /** bit do estado que indica que o buffer do meio ainda não foi lido */
+    private static final int NOVO = 4;
+    /** bits do estado com o índice do buffer do meio */
+    private static final int INDICE = 3;
+
+    private final Object[] buffers = new Object[3];
+    /** índice do buffer do meio, mais o bit {@link NOVO} */
+    private final AtomicInteger meio = new AtomicInteger(2);
+    /** índice do buffer da escrita, usado somente pela thread que escreve */
+    private int escrita = 0;
+    /** índice do buffer da leitura, usado somente pela thread que lê */
+    private int leitura = 1;
+
+    /**
+     * Cria os três buffers.
+     *
+     * @param criar cria um buffer vazio
+     */
+    BufferTriplo(Supplier<T> criar) {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = criar.get();
+        }
+    }
+
+    /**
+     * @return o buffer a ser preenchido pela thread que escreve, até o próximo
+     *         {@link publicar}
+     */
+    @SuppressWarnings("unchecked")
+    T paraEscrever() {
+        return (T) buffers[escrita];
+    }
+
+    /**
+     * publicar entrega o buffer escrito para a leitura, substituindo o buffer
+     * publicado anteriormente caso ele não tenha sido lido.
+     */
+    void publicar() {
+        escrita = meio.getAndSet(escrita | NOVO) & INDICE;
+    }
+
+    /**
+     * maisNovo pega o último buffer publicado, caso um buffer tenha sido
+     * publicado desde a última leitura.
+     *
+     * @return o buffer, válido até a próxima chamada, ou null
+     */
+    @SuppressWarnings("unchecked")
+    T maisNovo() {
+        if ((meio.get() & NOVO) == 0) {
+            return null;
+        }
+        leitura = meio.getAndSet(leitura) & INDICE;
+        return (T) buffers[leitura];
+    }
+
+    /**
+     * @return o último buffer pego por {@link maisNovo}
+     */
+    @SuppressWarnings("unchecked")
+    T atual() {
+        return (T) buffers[leitura];
+    }
+}
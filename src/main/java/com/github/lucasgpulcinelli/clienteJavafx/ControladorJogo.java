@@ -1,36 +1,52 @@
 package com.github.lucasgpulcinelli.clienteJavafx;
 
 import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+import com.github.lucasgpulcinelli.comunicacao.Conexao;
+import com.github.lucasgpulcinelli.comunicacao.ConexaoCliente;
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
 import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Random;
 import javafx.scene.layout.StackPane;
-import com.github.lucasgpulcinelli.servidor.Main;
+import com.github.lucasgpulcinelli.servidor.ConexaoLocal;
 
 /**
  * ControladorJogo realiza a lógica principal do cliente, comunicando com o
  * servidor e controlando a tela e os áudios em um alto nível.
+ *
+ * Esta é a thread de decodificação: ela lê os estados continuamente e os copia
+ * para os quadros dos {@link GraficosJavafx}, que são desenhados na thread do
+ * javaFx no seu próprio ritmo, e responde cada estado com a ação lida do
+ * teclado naquele momento, sem esperar. A leitura da socket nunca espera o
+ * desenho; a thread só espera o jogador para confirmar a volta depois de
+ * perder uma vida, quando o servidor também não envia estados.
  */
 public class ControladorJogo extends Thread {
     /** a interface gráfica de javaFx */
     private final InterfaceGrafica graficos;
 
-    /** a stream de input do servidor */
-    private ObjectInputStream in;
-    /** a stream de output do servidor */
-    private ObjectOutputStream out;
+    /** a conexão com o servidor, ou com a partida local */
+    private Conexao conexao;
     /** o id do jogador */
     private int jogador = -1;
+    /** se o cliente é somente um espectador */
+    private boolean espectador = false;
+
+    /**
+     * se a saúde da conexão deve ser mostrada sobre a tela de jogo, ligado com a
+     * propriedade de sistema "telemetria" (por exemplo, -Dtelemetria=true)
+     */
+    private static final boolean MOSTRAR_TELEMETRIA = Boolean.getBoolean("telemetria");
 
     /**
      * Cria um novo ControladorJogo conectado a um servidor em um painel da tela.
-     * Caso o ip seja "local", um servidor local é iniciado em uma nova thread.
-     * A porta no ip é opcional e o valor padrão é 8080.
+     * Caso o ip seja "local", uma partida de um jogador roda em uma nova thread
+     * deste processo, entregando os estados sem passar pela rede (veja
+     * {@link ConexaoLocal}). A porta no ip é opcional e o valor padrão é 8080.
      *
      * @param ipComPorta o ip do servidor a se conectar ou "local"
      * @param painel     o painel onde os gráficos estarão
@@ -44,6 +60,10 @@ public class ControladorJogo extends Thread {
 
         // separa a porta do ip
         String[] ipPortaSeparado = ipComPorta.split(":");
+        if ("local".equals(ipPortaSeparado[0])) {
+            conexao = new ConexaoLocal(new Random().nextLong());
+            return;
+        }
 
         int porta;
         if (ipPortaSeparado.length == 1) {
@@ -53,27 +73,11 @@ public class ControladorJogo extends Thread {
             porta = Integer.parseInt(ipPortaSeparado[1]);
         }
 
-        String ip;
-        if ("local".equals(ipPortaSeparado[0])) {
-            ip = "127.0.0.1";
-
-            // inicia o servidor local
-            new Thread(() -> {
-                try {
-                    Main.main(new String[0]);
-                } catch (InterruptedException | IOException e) {
-                    graficosJavafx.printErro("Erro inicializando servidor local");
-                }
-            }).start();
-        } else {
-            ip = ipPortaSeparado[0];
-        }
+        String ip = ipPortaSeparado[0];
 
         // conecta com o servidor
         try {
-            Socket s = new Socket(ip, porta);
-            in = new ObjectInputStream(s.getInputStream());
-            out = new ObjectOutputStream(s.getOutputStream());
+            conexao = new ConexaoCliente(ip, porta);
         } catch (UnknownHostException e) {
             graficosJavafx.printErro("Erro de host");
         } catch (IOException e) {
@@ -87,12 +91,18 @@ public class ControladorJogo extends Thread {
      */
     @Override
     public void run() {
-        if(in == null){
+        if(conexao == null){
             return;
         }
         try {
-            jogador = (Integer) in.readObject();
-        } catch (IOException | ClassNotFoundException ex) {
+            jogador = conexao.receberJogador();
+
+            // espectadores só assistem, vendo a score e as vidas do jogador 1
+            espectador = (jogador == ConexaoCliente.ESPECTADOR);
+            if (espectador) {
+                jogador = 1;
+            }
+        } catch (IOException ex) {
             System.err.println("erro recebendo jogador");
             return;
         }
@@ -114,8 +124,8 @@ public class ControladorJogo extends Thread {
     }
 
     /**
-     * unicoFrame realiza toda a lógica de um único frame do Space Invaders
-     * Multiplayer.
+     * unicoFrame realiza toda a lógica de um único estado recebido do Space
+     * Invaders Multiplayer, sem esperar o desenho.
      *
      * @param li          leitor de input do jogo
      * @param ta          tocador de áudio do jogo
@@ -128,34 +138,42 @@ public class ControladorJogo extends Thread {
      */
     private boolean unicoFrame(LeitorInput li, TocadorDeAudio ta, Evento perdaDeVida)
             throws IOException, ClassNotFoundException, InterruptedException {
-        // lê o estado atual do jogo
-        EstadoJogo estadoJogo = (EstadoJogo) in.readObject();
+        // lê o estado atual do jogo e os eventos que ainda não foram vistos
+        EstadoJogo estadoJogo = conexao.receberEstado();
+        List<Evento> eventos = conexao.getEventos();
 
-        // desenha o que está acontecendo
+        // desenha o que está acontecendo, com a saúde da conexão por cima caso pedido
+        if (MOSTRAR_TELEMETRIA) {
+            graficos.setTelemetria(conexao.getTelemetria().resumoCurto());
+        }
         graficos.desenharTela(estadoJogo.getScore(jogador),
                 estadoJogo.getVidas(jogador), estadoJogo.getDesenhaveis());
 
-        // toca áudio para cada evento (que tenha um som associado)
-        for (Evento e : estadoJogo.getEventos()) {
-            ta.tocar(e);
-        }
+        // toca áudio para os eventos (que tenham um som associado)
+        ta.tocar(eventos);
 
         // se o jogo foi perdido, para toda a execução
-        if (estadoJogo.getEventos().contains(Evento.PERDEU_JOGO)) {
-            graficos.printPerdeuJogo();
+        if (eventos.contains(Evento.PERDEU_JOGO)) {
+            Classificacao classificacao = null;
+            try {
+                classificacao = conexao.pedirClassificacao(10);
+            } catch (IOException e) {
+                // o jogo já acabou, então o placar só não é mostrado
+            }
+            graficos.printPerdeuJogo(classificacao);
             return true;
         }
         // se o seu jogador perdeu vida, avisa ele e espera até ele dar a confirmação
         // para respawn
-        if (estadoJogo.getEventos().contains(perdaDeVida)) {
+        if (!espectador && eventos.contains(perdaDeVida)) {
             graficos.printPerdeuVida();
             li.esperarTiro();
-            out.writeObject(Acao.ENTRAR_JOGO);
+            conexao.enviarAcao(Acao.ENTRAR_JOGO);
         }
-        // se ganhou o nível, celebra!
-        if (estadoJogo.getEventos().contains(Evento.GANHOU_NIVEL)) {
+        // se ganhou o nível, celebra! O aviso fica até o próximo nível começar, sem
+        // parar a leitura dos estados
+        if (eventos.contains(Evento.GANHOU_NIVEL)) {
             graficos.printGanhouNivel(estadoJogo.getNivel());
-            li.esperarTiro();
         }
 
         // no final, sempre escreve a próxima ação
@@ -164,7 +182,9 @@ public class ControladorJogo extends Thread {
             return true;
         }
 
-        out.writeObject(a);
+        if (!espectador) {
+            conexao.enviarAcao(a);
+        }
         return false;
     }
 
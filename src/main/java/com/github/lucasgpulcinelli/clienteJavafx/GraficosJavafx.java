@@ -1,17 +1,17 @@
 package com.github.lucasgpulcinelli.clienteJavafx;
 
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
 import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
 import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
 import com.github.lucasgpulcinelli.sistema.TelaJogo;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
@@ -22,10 +22,60 @@ import javafx.scene.text.Text;
 /**
  * GraficosJavafx implementa a interface gráfica de javaFx para o controlador
  * de jogo principal.
+ *
+ * A thread de rede não desenha: {@link desenharTela} somente copia o estado
+ * recebido para um {@link BufferTriplo} de quadros reutilizáveis, e um
+ * {@link AnimationTimer} desenha na thread do javaFx, uma vez por quadro da
+ * tela, apenas o quadro completo mais novo. Assim, se a thread do javaFx
+ * atrasar, estados antigos são descartados em vez de se acumularem, a thread
+ * de rede nunca espera o desenho, e os textos de score e vidas só são
+ * alterados quando mudam.
+ *
+ * O canvas acompanha o tamanho da janela: a área de jogo de 1050x600 é
+ * escalada para caber nela, e os sprites são recortados de um
+ * {@link AtlasSprites} já na escala da tela.
  */
 public class GraficosJavafx implements InterfaceGrafica {
+    /**
+     * um estado recebido, copiado para arrays que são reutilizados de um estado
+     * para o outro
+     */
+    private static final class Quadro {
+        long numero;
+        int score;
+        int vidas;
+        int tamanho;
+        Sprite[] sprites = new Sprite[128];
+        float[] x = new float[128];
+        float[] y = new float[128];
+
+        /**
+         * copiar coloca um estado no quadro, aumentando os arrays caso preciso.
+         */
+        void copiar(long numero, int score, int vidas, List<Desenhavel> desenhaveis) {
+            this.numero = numero;
+            this.score = score;
+            this.vidas = vidas;
+            tamanho = desenhaveis.size();
+            if (tamanho > sprites.length) {
+                int novo = Math.max(tamanho, 2 * sprites.length);
+                sprites = new Sprite[novo];
+                x = new float[novo];
+                y = new float[novo];
+            }
+            for (int i = 0; i < tamanho; i++) {
+                Desenhavel d = desenhaveis.get(i);
+                sprites[i] = d.getSprite();
+                x[i] = d.getX();
+                y[i] = d.getY();
+            }
+        }
+    }
+
     /** painel principal onde todo o jogo estará */
     private final StackPane painel;
+    /** canvas de jogo, do tamanho do painel */
+    private final Canvas canvas;
     /** gráficos para o desenho de imagens */
     private final GraphicsContext graficos;
 
@@ -35,60 +85,65 @@ public class GraficosJavafx implements InterfaceGrafica {
     private final Text textoScore = new Text();
     /** texto das vidas do jogador */
     private final Text textoVidas = new Text();
+    /** texto da telemetria da conexão */
+    private final Text textoTelemetria = new Text();
 
-    /** imagens associadas a todos os sprites */
-    private final HashMap<Sprite, Image> imagens = new HashMap<>();
-    /** imagens secundárias associadas a sprites de inimigos (para animação) */
-    private final HashMap<Sprite, Image> imagensSecundarias = new HashMap<>();
+    /** as imagens de todos os sprites */
+    private final AtlasSprites atlas = new AtlasSprites();
 
-    /** se é necessário usar a segunda imagem ou a primeira (para animação) */
-    private boolean UsarSegundaImagem = false;
+    /** quadros escritos pela thread de rede e desenhados pela thread do javaFx */
+    private final BufferTriplo<Quadro> quadros = new BufferTriplo<>(Quadro::new);
+    /** número do último estado publicado, usado somente pela thread de rede */
+    private long quadrosPublicados = 0;
+    /** número do último estado publicado quando o aviso atual foi escrito */
+    private volatile long quadroDoAviso = 0;
+    /** texto da telemetria a ser mostrado, ou null */
+    private volatile String telemetria = null;
 
-    /** tamanho em x da tela do javaFx */
+    /**
+     * o que está na tela, usado somente na thread do javaFx para alterar os
+     * textos só quando mudam
+     */
+    private int scoreMostrado = -1;
+    private int vidasMostradas = -1;
+    private String telemetriaMostrada = null;
+    /** se algum quadro já foi desenhado, para redesenhá-lo caso a janela mude de tamanho */
+    private boolean desenhouQuadro = false;
+    private double larguraMostrada = 0;
+    private double alturaMostrada = 0;
+
+    /** tamanho em x da área de jogo, antes de ser escalada para a janela */
     private static final int telaX = 1050;
-    /** tamanho em y da tela do javaFx */
+    /** tamanho em y da área de jogo, antes de ser escalada para a janela */
     private static final int telaY = 600;
 
     /**
-     * Cria uma nova interface gráfica dentro de um painel.
-     * O painel deve ter no mínimo 1050x600 pixels.
+     * Cria uma nova interface gráfica dentro de um painel, que pode ter
+     * qualquer tamanho.
      *
      * @param painel o painel principal onde todo o jogo estará
      */
     public GraficosJavafx(StackPane painel) {
         this.painel = painel;
 
-        // canvas de jogo onde as imagens estarão
+        // canvas de jogo onde as imagens estarão. Ele não entra no layout do
+        // painel, senão o seu tamanho impediria a janela de diminuir
         Canvas c = new Canvas(telaX, telaY);
-        StackPane.setAlignment(c, Pos.TOP_CENTER);
+        c.setManaged(false);
+        c.widthProperty().bind(painel.widthProperty());
+        c.heightProperty().bind(painel.heightProperty());
+        canvas = c;
         graficos = c.getGraphicsContext2D();
         Platform.runLater(() -> {
             initTextos();
             painel.getChildren().add(c);
-        });
-
-        // le todas as imagens da pasta de resources
-        for (Sprite s : Sprite.values()) {
-            imagens.put(s, new Image(this.getClass().getResource("/res/" + s.name() + ".png").toString()));
-        }
-
-        // le todas as imagens secundárias de inimigos
-        Sprite[] inimigos = { Sprite.INIMIGO1, Sprite.INIMIGO2, Sprite.INIMIGO3 };
-        for (Sprite s : inimigos) {
-            imagensSecundarias.put(s,
-                    new Image(this.getClass().getResource("/res/" + s.name() + "_2.png").toString()));
-        }
-
-        // cria a thread que cuida da animação
-        new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
+            new AnimationTimer() {
+                @Override
+                public void handle(long agora) {
+                    desenharQuadro(agora);
                 }
-                UsarSegundaImagem = !UsarSegundaImagem;
-            }
-        }).start();
+            }.start();
+        });
     }
 
     /**
@@ -114,9 +169,15 @@ public class GraficosJavafx implements InterfaceGrafica {
         textoVidas.setFont(Font.font(30));
         textoVidas.setText("Vidas: 3");
 
+        StackPane.setAlignment(textoTelemetria, Pos.BOTTOM_LEFT);
+        textoTelemetria.setFill(Color.LIGHTGREEN);
+        textoTelemetria.setFont(Font.font("Monospaced", 14));
+        textoTelemetria.setVisible(false);
+
         painel.getChildren().add(textoAvisos);
         painel.getChildren().add(textoScore);
         painel.getChildren().add(textoVidas);
+        painel.getChildren().add(textoTelemetria);
     }
 
     /**
@@ -125,6 +186,8 @@ public class GraficosJavafx implements InterfaceGrafica {
      * @param texto o texto a ser escrito
      */
     private void escreverTexto(String texto) {
+        // o aviso só é escondido por um estado publicado depois dele
+        quadroDoAviso = quadrosPublicados;
         Platform.runLater(() -> {
             // o texto de avisos é removido e colocado novamente para não ficar
             // atrás de imagens
@@ -136,40 +199,75 @@ public class GraficosJavafx implements InterfaceGrafica {
     }
 
     /**
-     * @param score a nova score
-     * @param vidas o novo número de vidas
+     * desenharQuadro desenha o estado mais novo, caso um estado tenha sido
+     * publicado desde o último quadro da tela. Roda na thread do javaFx.
+     *
+     * @param agora o momento do quadro da tela, em nanossegundos
      */
-    private void setScoreEVidas(int score, int vidas) {
-        Platform.runLater(() -> {
-            textoScore.setText("Score: " + String.format("%05d", score));
-            textoVidas.setText("Vidas: " + Integer.toString(vidas));
-        });
-    }
+    private void desenharQuadro(long agora) {
+        String t = telemetria;
+        if (!Objects.equals(t, telemetriaMostrada)) {
+            textoTelemetria.setVisible(t != null);
+            if (t != null) {
+                textoTelemetria.setText(t);
+            }
+            telemetriaMostrada = t;
+        }
 
-    @Override
-    public void desenharTela(int score, int vidas, List<Desenhavel> desenhaveis) {
-        textoAvisos.setVisible(false);
-        setScoreEVidas(score, vidas);
+        double largura = canvas.getWidth();
+        double altura = canvas.getHeight();
+        Quadro q = quadros.maisNovo();
+        if (q == null) {
+            if (!desenhouQuadro || (largura == larguraMostrada && altura == alturaMostrada)) {
+                return;
+            }
+            q = quadros.atual();
+        }
+        desenhouQuadro = true;
+        larguraMostrada = largura;
+        alturaMostrada = altura;
 
-        Platform.runLater(() -> {
-            graficos.clearRect(0, 0, telaX, telaY);
-            for (Desenhavel d : desenhaveis) {
-                Image img = imagens.get(d.getSprite());
-
-                if (UsarSegundaImagem) {
-                    Image img2 = imagensSecundarias.get(d.getSprite());
-                    if (img2 != null) {
-                        img = img2;
-                    }
-                }
+        if (q.numero > quadroDoAviso) {
+            textoAvisos.setVisible(false);
+        }
+        if (q.score != scoreMostrado) {
+            textoScore.setText(String.format("Score: %05d", q.score));
+            scoreMostrado = q.score;
+        }
+        if (q.vidas != vidasMostradas) {
+            textoVidas.setText("Vidas: " + q.vidas);
+            vidasMostradas = q.vidas;
+        }
 
-                double x = d.getX() * telaX / TelaJogo.MAX_X - img.getWidth() / 2;
-                // y tem um offset para dar espaço aos textos de score e vidas
-                double y = d.getY() * (telaY - 50) / TelaJogo.MAX_Y - img.getHeight() / 2 + 50;
+        // os inimigos trocam de imagem a cada segundo (para animação)
+        boolean usarSegundaImagem = (agora / 1_000_000_000L) % 2 == 1;
 
-                graficos.drawImage(img, x, y);
-            }
-        });
+        // a área de jogo mantém a proporção, centralizada no topo da janela
+        double escala = Math.min(largura / telaX, altura / telaY);
+        AtlasSprites.Folha folha = atlas.emEscala(escala);
+        double inicioX = (largura - telaX * escala) / 2;
+
+        graficos.clearRect(0, 0, largura, altura);
+        for (int j = 0; j < q.tamanho; j++) {
+            int i = AtlasSprites.Folha.indice(q.sprites[j], usarSegundaImagem);
+            int w = folha.largura[i];
+            int h = folha.altura[i];
+
+            double x = inicioX + escala * q.x[j] * telaX / TelaJogo.MAX_X - w / 2.0;
+            // y tem um offset para dar espaço aos textos de score e vidas
+            double y = escala * (q.y[j] * (telaY - 50) / TelaJogo.MAX_Y + 50) - h / 2.0;
+
+            // o recorte já está na escala da tela, então é copiado sem reamostrar
+            graficos.drawImage(folha.imagem, folha.x[i], folha.y[i], w, h,
+                    Math.round(x), Math.round(y), w, h);
+        }
+    }
+
+    @Override
+    public void desenharTela(int score, int vidas, List<Desenhavel> desenhaveis) {
+        // um quadro publicado que ainda não foi desenhado é simplesmente substituído
+        quadros.paraEscrever().copiar(++quadrosPublicados, score, vidas, desenhaveis);
+        quadros.publicar();
     }
 
     @Override
@@ -179,7 +277,7 @@ public class GraficosJavafx implements InterfaceGrafica {
 
     @Override
     public void printGanhouNivel(int nivel) {
-        escreverTexto("Ganhou Nivel " + Integer.toString(nivel) + "! Aperte 'w'");
+        escreverTexto("Ganhou Nivel " + Integer.toString(nivel) + "!");
     }
 
     @Override
@@ -188,15 +286,25 @@ public class GraficosJavafx implements InterfaceGrafica {
     }
 
     @Override
-    public void printPerdeuJogo() {
-        escreverTexto("...GAME OVER...");
+    public void printPerdeuJogo(Classificacao classificacao) {
+        if (classificacao == null) {
+            escreverTexto("...GAME OVER...");
+        } else {
+            escreverTexto("...GAME OVER...\n\n" + String.join("\n", classificacao.linhas()));
+        }
         try {
-            Thread.sleep(3000);
+            Thread.sleep(classificacao == null ? 3000 : 8000);
         } catch (InterruptedException e) {
         }
         System.exit(0);
     }
 
+    @Override
+    public void setTelemetria(String telemetria) {
+        // aplicado pelo próximo quadro da tela
+        this.telemetria = telemetria;
+    }
+
     /**
      * coloca um erro na tela e sai do jogo com um sinal de erro.
      *
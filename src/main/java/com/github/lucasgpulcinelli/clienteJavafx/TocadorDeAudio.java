@@ -1,62 +1,148 @@
-package com.github.lucasgpulcinelli.clienteJavafx;
-
-import com.github.lucasgpulcinelli.comunicacao.Evento;
-import java.net.URL;
-import java.util.HashMap;
-import javafx.scene.media.AudioClip;
-
-/**
- * TocadorDeAudio controla todos os áudios tocados durante o loop principal do
- * jogo. Não inclui a música de fundo da splash screen, mas inclui todos os
- * efeitos especiais de áudio e a música de fundo do jogo principal.
- *
- * @see ControladorJogo
- */
-public class TocadorDeAudio {
-    /** todos os áudios relacionados a eventos do jogo */
-    private final HashMap<Evento, AudioClip> audios = new HashMap<>();
-
-    /**
-     * cria um novo Tocador de áudio e inicia a música de fundo do jogo em
-     * background e seu looping.
-     */
-    public TocadorDeAudio() {
-        for (Evento e : Evento.values()) {
-            URL url = this.getClass().getResource("/res/" + e.name() + ".wav");
-            if (url == null) {
-                continue;
-            }
-
-            AudioClip ac = new AudioClip(url.toString());
-            audios.put(e, ac);
-        }
-
-        // inicia a música de fundo
-        new Thread(() -> {
-            URL url = this.getClass().getResource("/res/musica_background.wav");
-            AudioClip musica_background = new AudioClip(url.toString());
-            while (true) {
-                musica_background.play();
-                try {
-                    // 29 segundos é o tamanho do áudio da música de fundo
-                    Thread.sleep(29000);
-                } catch (InterruptedException e) {
-                }
-            }
-        }).start();
-    }
-
-    /**
-     * tocar toca uma música relacionada a um evento do jogo, caso a música
-     * exista.
-     *
-     * @param e o evento.
-     */
-    public void tocar(Evento e) {
-        AudioClip ac = audios.get(e);
-        if (ac == null) {
-            return;
-        }
-        ac.play();
-    }
-}
+package com.github.lucasgpulcinelli.clienteJavafx;
+
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import javafx.scene.media.AudioClip;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * TocadorDeAudio controla todos os áudios tocados durante o loop principal do
+ * jogo. Não inclui a música de fundo da splash screen, mas inclui todos os
+ * efeitos especiais de áudio e a música de fundo do jogo principal.
+ *
+ * Para que o áudio tenha um custo limitado, os eventos de um mesmo estado são
+ * juntados (vários objetos destruídos no mesmo frame tocam o som uma vez só),
+ * e cada tipo de evento toca no máximo {@link MAXIMO_VOZES} sons ao mesmo
+ * tempo; um som novo enquanto todos os anteriores ainda tocam é descartado.
+ * Como um AudioClip não avisa quando um som termina, cada som é considerado
+ * tocando pela duração do seu arquivo.
+ *
+ * Os áudios são carregados por uma thread separada ao criar o tocador, e os
+ * eventos que chegam antes disso não tocam som. A música de fundo repete
+ * sozinha pelo próprio AudioClip.
+ *
+ * @see ControladorJogo
+ */
+public class TocadorDeAudio {
+    /** quantos sons de um mesmo tipo de evento podem tocar ao mesmo tempo */
+    private static final int MAXIMO_VOZES = 2;
+    /** duração usada para sons cujo arquivo não informa a duração, em ns */
+    private static final long DURACAO_PADRAO = 500_000_000L;
+
+    private static final Evento[] EVENTOS = Evento.values();
+
+    /** os áudios carregados, indexados pelo ordinal do evento */
+    private static final class Audios {
+        final AudioClip[] clipes = new AudioClip[EVENTOS.length];
+        final long[] duracoes = new long[EVENTOS.length];
+    }
+
+    /** os áudios, ou null enquanto ainda não foram carregados */
+    private volatile Audios audios = null;
+
+    /** momento em que cada voz de cada evento termina de tocar */
+    private final long[][] fimVozes = new long[EVENTOS.length][MAXIMO_VOZES];
+    /** eventos já tocados no estado atual, reusado a cada estado */
+    private final boolean[] tocados = new boolean[EVENTOS.length];
+
+    /**
+     * cria um novo Tocador de áudio e carrega os áudios em background, iniciando
+     * a música de fundo do jogo em looping depois de carregada.
+     */
+    public TocadorDeAudio() {
+        // todas as vozes começam livres
+        long agora = System.nanoTime();
+        for (long[] fins : fimVozes) {
+            Arrays.fill(fins, agora);
+        }
+
+        Thread carregador = new Thread(this::carregar, "carregador-audio");
+        carregador.setDaemon(true);
+        carregador.start();
+    }
+
+    /**
+     * carregar lê todos os áudios dos resources e inicia a música de fundo.
+     */
+    private void carregar() {
+        Audios a = new Audios();
+        for (Evento e : EVENTOS) {
+            URL url = this.getClass().getResource("/res/" + e.name() + ".wav");
+            if (url == null) {
+                continue;
+            }
+
+            a.clipes[e.ordinal()] = new AudioClip(url.toString());
+            a.duracoes[e.ordinal()] = duracao(url);
+        }
+        audios = a;
+
+        // inicia a música de fundo
+        URL url = this.getClass().getResource("/res/musica_background.wav");
+        if (url != null) {
+            AudioClip musicaBackground = new AudioClip(url.toString());
+            musicaBackground.setCycleCount(AudioClip.INDEFINITE);
+            musicaBackground.play();
+        }
+    }
+
+    /**
+     * duracao lê a duração de um arquivo de áudio pelo seu cabeçalho.
+     *
+     * @param url o arquivo
+     * @return a duração em ns, ou {@link DURACAO_PADRAO} caso não seja possível
+     *         lê-la
+     */
+    private static long duracao(URL url) {
+        try {
+            AudioFileFormat f = AudioSystem.getAudioFileFormat(url);
+            float taxa = f.getFormat().getFrameRate();
+            if (f.getFrameLength() > 0 && taxa > 0) {
+                return (long) (f.getFrameLength() / (double) taxa * 1e9);
+            }
+        } catch (UnsupportedAudioFileException | IOException e) {
+        }
+        return DURACAO_PADRAO;
+    }
+
+    /**
+     * tocar toca os sons relacionados aos eventos de um estado recebido, um por
+     * tipo de evento, respeitando o limite de vozes de cada tipo.
+     *
+     * @param eventos os eventos do estado
+     */
+    public void tocar(List<Evento> eventos) {
+        Audios a = audios;
+        if (a == null || eventos.isEmpty()) {
+            return;
+        }
+
+        long agora = System.nanoTime();
+        for (int i = 0; i < eventos.size(); i++) {
+            int e = eventos.get(i).ordinal();
+            if (tocados[e] || a.clipes[e] == null) {
+                continue;
+            }
+            tocados[e] = true;
+
+            // procura uma voz livre desse evento
+            long[] fins = fimVozes[e];
+            for (int v = 0; v < fins.length; v++) {
+                if (fins[v] - agora <= 0) {
+                    fins[v] = agora + a.duracoes[e];
+                    a.clipes[e].play();
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < eventos.size(); i++) {
+            tocados[eventos.get(i).ordinal()] = false;
+        }
+    }
+}
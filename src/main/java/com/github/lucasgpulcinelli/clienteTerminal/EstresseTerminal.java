@@ -0,0 +1,96 @@
+package com.github.lucasgpulcinelli.clienteTerminal;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.servidor.Entrada;
+import com.github.lucasgpulcinelli.servidor.Simulacao;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * EstresseTerminal mede quantos bytes o {@link GraficoTerminal} escreve por
+ * frame, desenhando uma partida simulada no próprio processo, com um jogador
+ * que age aleatoriamente, como se cada tick fosse um estado recebido.
+ *
+ * Por padrão os frames são descartados e só as medidas são impressas; com
+ * "--tela", eles também são desenhados no terminal, e as medidas são
+ * impressas na saída de erro.
+ *
+ * Uso: java com.github.lucasgpulcinelli.clienteTerminal.EstresseTerminal
+ * [frames] [--tela]
+ */
+public class EstresseTerminal {
+    /**
+     * main simula a partida, desenha cada frame e imprime os bytes por frame.
+     *
+     * @param args número de frames, 3000 por padrão, e opcionalmente "--tela"
+     */
+    public static void main(String[] args) {
+        int n = 3000;
+        boolean tela = false;
+        for (String a : args) {
+            if (a.equals("--tela")) {
+                tela = true;
+            } else {
+                n = Math.max(2, Integer.parseInt(a));
+            }
+        }
+
+        OutputStream saida = tela ? System.out : new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int inicio, int tamanho) {
+            }
+        };
+        GraficoTerminal graficos = new GraficoTerminal(saida);
+
+        EstadoJogo ej = EstadoJogo.criar(Personagem.getDesenhaveis());
+        Simulacao simulacao = new Simulacao(1, ej, null);
+        simulacao.iniciar();
+
+        Random aleatorio = new Random(1);
+        Acao[] acoes = { Acao.ESQUERDA, Acao.DIREITA, Acao.ATIRAR, Acao.NENHUMA_ACAO };
+        int[] bytes = new int[n];
+        int primeiro = 0;
+        for (int i = 0; i < n; i++) {
+            // entrar não faz nada enquanto o canhão estiver vivo, e o recria depois
+            // de uma vida perdida
+            simulacao.enfileirar(Entrada.entrar(1));
+            simulacao.enfileirar(Entrada.acao(1, acoes[aleatorio.nextInt(acoes.length)], 1));
+            if (simulacao.tick()) {
+                simulacao.proximoNivel();
+            }
+
+            graficos.desenharTela(ej.getScore(1), ej.getVidas(1), Personagem.getDesenhaveis());
+            bytes[i] = graficos.getBytesUltimoQuadro();
+            if (i == 0) {
+                primeiro = bytes[i];
+            }
+            if (tela) {
+                try {
+                    Thread.sleep(16);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long total = 0;
+        for (int b : bytes) {
+            total += b;
+        }
+        int[] ordenados = Arrays.copyOfRange(bytes, 1, n);
+        Arrays.sort(ordenados);
+        (tela ? System.err : System.out).printf(
+                "%d frames: primeiro %d bytes, depois %.1f bytes por frame em média (p50 %d, p99 %d, máx %d)\n",
+                n, primeiro, (total - primeiro) / (double) Math.max(1, n - 1),
+                ordenados[ordenados.length / 2], ordenados[ordenados.length * 99 / 100],
+                ordenados[ordenados.length - 1]);
+    }
+}
@@ -1,8 +1,12 @@
 package com.github.lucasgpulcinelli.clienteTerminal;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
 import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
 import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
@@ -12,15 +16,61 @@ import com.github.lucasgpulcinelli.sistema.TelaJogo;
  * GraficoTerminal controla o display de desenhaveis e telas especiais para o
  * {@link clienteTerminal}. O output fica na tela e é sobrescrevido somente
  * quando é chamado outro método desta classe.
+ *
+ * Cada frame é montado em uma matriz de caracteres e comparado com o frame
+ * anterior: somente as células que mudaram são escritas, cada trecho com uma
+ * sequência ANSI que posiciona o cursor, em um buffer de bytes reutilizado que
+ * é enviado ao terminal em uma única escrita. Assim, mesmo por SSH, um frame
+ * em que pouca coisa se moveu custa poucos bytes e a tela não pisca.
+ *
+ * @see EstresseTerminal
  */
 public class GraficoTerminal implements InterfaceGrafica {
     // tamanhos máximos para altura e comprimento da tela.
     private static final int TAM_ALTU = (int) TelaJogo.MAX_Y;
     private static final int TAM_COMP = (int) TelaJogo.MAX_X;
 
+    // tamanho da tela inteira, com as bordas e a linha de score e vidas.
+    private static final int ALTURA = TAM_ALTU + 4;
+    private static final int LARGURA = TAM_COMP + 2;
+    // células iguais entre dois trechos alterados que ainda são reescritas, em
+    // vez de começar um novo trecho com uma sequência de posicionamento
+    private static final int MAXIMO_IGUAIS = 4;
+
     // buffer de caracteres a serem desenhados.
     private final char buffer[][] = new char[TAM_ALTU][TAM_COMP];
 
+    // tela sendo montada e tela que está no terminal.
+    private final char tela[][] = new char[ALTURA][LARGURA];
+    private final char anterior[][] = new char[ALTURA][LARGURA];
+    // se o terminal já foi limpo, então anterior é o que está nele.
+    private boolean limpa = false;
+
+    // onde o terminal é escrito, e os bytes de um frame antes de serem escritos.
+    private final OutputStream saida;
+    private byte bytes[] = new byte[8192];
+    private int tamanho = 0;
+    private int bytesUltimoQuadro = 0;
+
+    // texto de telemetria escrito na borda de baixo da tela, ou null.
+    private volatile String telemetria = null;
+
+    /**
+     * Cria um novo gráfico que escreve na saída padrão.
+     */
+    public GraficoTerminal() {
+        this(System.out);
+    }
+
+    /**
+     * Cria um novo gráfico que escreve em uma stream qualquer.
+     *
+     * @param saida onde as sequências do terminal são escritas
+     */
+    public GraficoTerminal(OutputStream saida) {
+        this.saida = saida;
+    }
+
     /**
      * spriteToChar converte um sprite para o seu caracter correspondente.
      * 
@@ -70,14 +120,20 @@ public class GraficoTerminal implements InterfaceGrafica {
     }
 
     /**
-     * retornaTela utiliza caracteres especiais para retornar o cursor para o
-     * início da tela.
+     * escreverLinha coloca um texto em uma linha da tela, completando o resto
+     * da linha com um caracter.
+     *
+     * @param linha       a linha da tela
+     * @param texto       o texto, cortado caso não caiba na linha
+     * @param complemento o caracter do resto da linha
      */
-    private void retornarTela() {
-        for (int i = 0; i < (TAM_ALTU + 4); i++) {
-            // "\033[F" é o caracter especial que vai uma linha para cima,
-            // funciona no NetBeans.
-            System.out.print("\033[F");
+    private void escreverLinha(int linha, String texto, char complemento) {
+        int j = 0;
+        for (; j < Math.min(texto.length(), LARGURA); j++) {
+            tela[linha][j] = texto.charAt(j);
+        }
+        for (; j < LARGURA; j++) {
+            tela[linha][j] = complemento;
         }
     }
 
@@ -85,43 +141,28 @@ public class GraficoTerminal implements InterfaceGrafica {
      * printMensagem coloca uma mensagem na tela formatada de uma forma boa.
      */
     private void printMensagem(String mensagem) {
-        retornarTela();
-
-        int i;
-        for (i = 0; i < (TAM_ALTU + 4) / 2 - 1; i++) {
-            System.out.println();
+        for (int i = 0; i < ALTURA; i++) {
+            escreverLinha(i, "", ' ');
         }
 
-        for (int j = 0; j < TAM_COMP + 2; j++)
-            System.out.print('-');
-        System.out.println();
-        i++;
+        int i = (ALTURA) / 2 - 1;
+        escreverLinha(i++, "", '-');
 
         int espacosBrancosLados = (int) (TAM_COMP - mensagem.length()) / 2;
-
-        System.out.print('|');
+        StringBuilder sb = new StringBuilder().append('|');
         for (int j = 0; j < espacosBrancosLados; j++) {
-            System.out.print(' ');
+            sb.append(' ');
         }
-        System.out.print(mensagem);
+        sb.append(mensagem);
         for (int j = 0; j < espacosBrancosLados + (TAM_COMP - mensagem.length()) % 2; j++) {
-            System.out.print(' ');
-        }
-        System.out.println('|');
-        i++;
-
-        for (int j = 0; j < TAM_COMP + 2; j++) {
-            System.out.print('-');
+            sb.append(' ');
         }
-        System.out.println();
-        i++;
+        escreverLinha(i++, sb.append('|').toString(), ' ');
 
-        for (; i < TAM_ALTU + 2; i++) {
-            System.out.println();
-        }
+        escreverLinha(i, "", '-');
 
-        System.out.println("|     Aperte \'w\' ou espaço     |");
-        System.out.println();
+        escreverLinha(ALTURA - 2, "|     Aperte \'w\' ou espaço     |", ' ');
+        enviarDiferencas();
     }
 
     /**
@@ -131,8 +172,6 @@ public class GraficoTerminal implements InterfaceGrafica {
      */
     @Override
     public void desenharTela(int score, int vidas, List<Desenhavel> desenhaveis) {
-        retornarTela();
-
         // resseta buffer de jogo
         encherBufferVazio();
 
@@ -141,39 +180,185 @@ public class GraficoTerminal implements InterfaceGrafica {
             buffer[(int) d.getY()][(int) d.getX()] = spriteToChar(d.getSprite());
         }
 
-        // print do frame de cima
-        for (int i = 0; i < TAM_COMP + 2; i++) {
-            System.out.print("-");
-        }
-        System.out.println();
+        // frame de cima
+        escreverLinha(0, "", '-');
 
-        // print de score e vidas
-        System.out.printf("|Score: %05d     Vidas:", score);
+        // score e vidas, montados sem formatação de texto
+        char[] linha = tela[1];
+        String prefixo = "|Score: ";
+        int j = 0;
+        for (; j < prefixo.length(); j++) {
+            linha[j] = prefixo.charAt(j);
+        }
+        // todos os dígitos da score, com zeros à esquerda até ter ao menos 5
+        int digitos = 5;
+        for (int resto = score / 100000; resto > 0; resto /= 10) {
+            digitos++;
+        }
+        for (int k = digitos - 1, resto = score; k >= 0; k--, resto /= 10) {
+            linha[j + k] = (char) ('0' + resto % 10);
+        }
+        j += digitos;
+        // o espaço antes das vidas diminui com scores maiores, para que a linha
+        // sempre caiba entre as bordas
+        for (int k = Math.max(1, 10 - digitos); k > 0; k--) {
+            linha[j++] = ' ';
+        }
+        String meio = "Vidas:";
+        for (int k = 0; k < meio.length(); k++) {
+            linha[j++] = meio.charAt(k);
+        }
         for (int i = 0; i < 3; i++) {
-            System.out.printf(" %c", (i < vidas) ? '^' : ' ');
+            linha[j++] = ' ';
+            linha[j++] = (i < vidas) ? '^' : ' ';
         }
-        System.out.println(" |");
-
-        // print do frame de jogo
-        for (int i = 0; i < TAM_COMP + 2; i++) {
-            System.out.print("-");
+        for (; j < LARGURA - 1; j++) {
+            linha[j] = ' ';
         }
-        System.out.println();
+        linha[LARGURA - 1] = '|';
+
+        // frame de jogo
+        escreverLinha(2, "", '-');
 
-        // print da tela de jogo em si e frame dos lados
+        // tela de jogo em si e frame dos lados
         for (int i = 0; i < TAM_ALTU; i++) {
-            System.out.print('|');
-            for (int j = 0; j < TAM_COMP; j++) {
-                System.out.print(buffer[i][j]);
+            tela[i + 3][0] = '|';
+            System.arraycopy(buffer[i], 0, tela[i + 3], 1, TAM_COMP);
+            tela[i + 3][LARGURA - 1] = '|';
+        }
+
+        // frame de baixo, com a telemetria por cima caso exista
+        String texto = telemetria;
+        for (int i = 0; i < LARGURA; i++) {
+            boolean dentroTexto = texto != null && i >= 1 && i <= Math.min(texto.length(), TAM_COMP);
+            tela[ALTURA - 1][i] = dentroTexto ? texto.charAt(i - 1) : '-';
+        }
+
+        enviarDiferencas();
+    }
+
+    /**
+     * enviarDiferencas escreve no terminal somente as células da tela que
+     * mudaram desde o último frame, em uma única escrita.
+     *
+     * Cada trecho alterado de uma linha é precedido por uma sequência ANSI que
+     * posiciona o cursor; células iguais entre dois trechos próximos são
+     * reescritas, pois custam menos que uma nova sequência. No primeiro frame, o
+     * terminal é limpo e tudo o que não é espaço é escrito.
+     */
+    private void enviarDiferencas() {
+        tamanho = 0;
+        if (!limpa) {
+            colocar("\033[H\033[2J");
+            for (char[] l : anterior) {
+                Arrays.fill(l, ' ');
             }
-            System.out.println('|');
+            limpa = true;
         }
 
-        // print do frame de baixo
-        for (int i = 0; i < TAM_COMP + 2; i++) {
-            System.out.print("-");
+        boolean mudou = false;
+        for (int i = 0; i < ALTURA; i++) {
+            char[] atual = tela[i];
+            char[] antes = anterior[i];
+            int j = 0;
+            while (j < LARGURA) {
+                if (atual[j] == antes[j]) {
+                    j++;
+                    continue;
+                }
+
+                // um trecho vai até a última célula diferente que não esteja depois
+                // de mais de MAXIMO_IGUAIS células iguais
+                int fim = j + 1;
+                for (int k = fim; k < LARGURA && k - fim <= MAXIMO_IGUAIS; k++) {
+                    if (atual[k] != antes[k]) {
+                        fim = k + 1;
+                    }
+                }
+
+                posicionar(i, j);
+                for (int k = j; k < fim; k++) {
+                    colocar(atual[k]);
+                    antes[k] = atual[k];
+                }
+                j = fim;
+                mudou = true;
+            }
+        }
+        if (!mudou && tamanho == 0) {
+            bytesUltimoQuadro = 0;
+            return;
+        }
+
+        // o cursor fica embaixo da tela, onde qualquer outro texto é escrito
+        posicionar(ALTURA, 0);
+        bytesUltimoQuadro = tamanho;
+        try {
+            saida.write(bytes, 0, tamanho);
+            saida.flush();
+        } catch (IOException e) {
+            // o terminal foi fechado; não há onde mostrar o erro
+        }
+    }
+
+    /**
+     * posicionar coloca a sequência ANSI que move o cursor para uma célula.
+     *
+     * @param linha  a linha, a partir de 0
+     * @param coluna a coluna, a partir de 0
+     */
+    private void posicionar(int linha, int coluna) {
+        colocar('\033');
+        colocar('[');
+        colocarNumero(linha + 1);
+        colocar(';');
+        colocarNumero(coluna + 1);
+        colocar('H');
+    }
+
+    /**
+     * colocarNumero coloca um número positivo em decimal, sem criar uma string.
+     */
+    private void colocarNumero(int n) {
+        if (n >= 10) {
+            colocarNumero(n / 10);
+        }
+        colocar((char) ('0' + n % 10));
+    }
+
+    /**
+     * colocar coloca um texto no buffer de saída.
+     */
+    private void colocar(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            colocar(texto.charAt(i));
         }
-        System.out.println();
+    }
+
+    /**
+     * colocar coloca um caracter no buffer de saída, codificado em UTF-8.
+     */
+    private void colocar(char c) {
+        if (tamanho + 3 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        }
+        if (c < 0x80) {
+            bytes[tamanho++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[tamanho++] = (byte) (0xc0 | (c >> 6));
+            bytes[tamanho++] = (byte) (0x80 | (c & 0x3f));
+        } else {
+            bytes[tamanho++] = (byte) (0xe0 | (c >> 12));
+            bytes[tamanho++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[tamanho++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    /**
+     * @return quantos bytes o último frame ou mensagem escreveu no terminal
+     */
+    public int getBytesUltimoQuadro() {
+        return bytesUltimoQuadro;
     }
 
     @Override
@@ -193,7 +378,25 @@ public class GraficoTerminal implements InterfaceGrafica {
     }
 
     @Override
-    public void printPerdeuJogo() {
+    public void printPerdeuJogo(Classificacao classificacao) {
         printMensagem("...GAME OVER...");
+        if (classificacao != null) {
+            // o cursor já está embaixo da tela
+            tamanho = 0;
+            for (String linha : classificacao.linhas()) {
+                colocar(linha);
+                colocar('\n');
+            }
+            try {
+                saida.write(bytes, 0, tamanho);
+                saida.flush();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    @Override
+    public void setTelemetria(String telemetria) {
+        this.telemetria = telemetria;
     }
 }
@@ -1,8 +1,8 @@
 package com.github.lucasgpulcinelli.clienteTerminal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import com.github.lucasgpulcinelli.comunicacao.Acao;
 
@@ -10,25 +10,80 @@ import com.github.lucasgpulcinelli.comunicacao.Acao;
  * LeitorInput é responsável por obter as entradas de teclas pelo terminal para
  * o {@link clienteTerminal}.
  * Esta classe funciona por meio de uma thread exclusiva para esse
- * processamento, coletando inputs a cada 1/60s em {@link run} e retornando o
- * valor lido em {@link getAcao}.
+ * processamento, que fica bloqueada lendo os bytes da entrada padrão em
+ * {@link run}, sem acordar enquanto nenhuma tecla for apertada. Cada tecla
+ * vira uma ação com o momento em que foi lida, colocada em uma fila que o loop
+ * de jogo esvazia em {@link getAcao}, então nenhuma tecla é perdida entre dois
+ * frames.
+ *
+ * Além de 'a', 'd', 'w' e espaço, as setas do teclado também são aceitas: as
+ * setas para os lados movem o canhão e a seta para cima atira.
  *
  * @see comunicacao.Acao
  */
 public class LeitorInput extends Thread {
-    private boolean esperando = false;
-    private Acao acao = Acao.NENHUMA_ACAO;
-    private boolean deveParar = false;
+    /**
+     * idade máxima de uma tecla na fila; teclas mais antigas são descartadas,
+     * para que a repetição de uma tecla segurada não atrase as próximas quando
+     * o servidor envia menos estados do que as teclas chegam
+     */
+    private static final long ATRASO_MAXIMO = 500_000_000L;
+
+    private static final int ESC = 27;
+
+    /** uma tecla lida, já como ação, e o momento em que foi lida */
+    private static final class Tecla {
+        final Acao acao;
+        final long momento;
+
+        Tecla(Acao acao, long momento) {
+            this.acao = acao;
+            this.momento = momento;
+        }
+    }
+
+    private final LinkedBlockingQueue<Tecla> fila = new LinkedBlockingQueue<>();
+    private volatile boolean deveParar = false;
 
     /**
-     * getAcao pega a ação atual lida pela thread leitora.
+     * Cria o leitor, como uma thread daemon para que a leitura bloqueada não
+     * impeça o programa de terminar.
+     */
+    public LeitorInput() {
+        super("leitor-input");
+        setDaemon(true);
+    }
+
+    /**
+     * getAcao pega a tecla mais antiga que ainda não foi enviada, sem esperar.
+     * O servidor espera exatamente uma ação por estado, então as outras teclas
+     * ficam na fila para os próximos frames.
      *
-     * @return a ação do frame atual
+     * Um movimento repetido seguidamente na fila (como pela repetição de uma
+     * seta segurada) é enviado uma única vez, já que cada ação vale pelo
+     * intervalo inteiro até o próximo estado; assim, ao soltar ou trocar de
+     * direção, os movimentos antigos não continuam sendo enviados. Tiros e a
+     * saída nunca são juntados.
+     *
+     * @return a ação do frame atual, ou {@link Acao#NENHUMA_ACAO} caso nenhuma
+     *         tecla tenha sido apertada
      */
     public Acao getAcao() {
-        Acao retorno = acao;
-        acao = Acao.NENHUMA_ACAO;
-        return retorno;
+        long limite = System.nanoTime() - ATRASO_MAXIMO;
+        Tecla t;
+        while ((t = fila.poll()) != null) {
+            if (t.acao == Acao.SAIR_JOGO || t.momento - limite >= 0) {
+                if (t.acao == Acao.ESQUERDA || t.acao == Acao.DIREITA) {
+                    // somente esta thread tira teclas da fila, então o peek é seguro
+                    Tecla repetida;
+                    while ((repetida = fila.peek()) != null && repetida.acao == t.acao) {
+                        fila.poll();
+                    }
+                }
+                return t.acao;
+            }
+        }
+        return Acao.NENHUMA_ACAO;
     }
 
     /**
@@ -37,30 +92,43 @@ public class LeitorInput extends Thread {
      * Pode ser útil para desenhar na tela informações como ganho de nível, perda de
      * vida, etc.
      *
+     * Teclas apertadas antes da chamada não contam como confirmação, e as
+     * teclas que não são de tiro apertadas durante a espera são descartadas.
+     *
+     * @return {@link Acao#ENTRAR_JOGO} quando o usuário atira, ou
+     *         {@link Acao#SAIR_JOGO} caso ele saia do jogo durante a espera
      * @throws InterruptedException caso a thread atual tenha sido interrompida por
      *                              um sinal do sistema operacional
      */
-    synchronized public void esperarTiro() throws InterruptedException {
-        esperando = true;
-        wait();
+    public Acao esperarTiro() throws InterruptedException {
+        long inicio = System.nanoTime();
+        while (true) {
+            Tecla t = fila.take();
+            if (t.acao == Acao.SAIR_JOGO) {
+                return Acao.SAIR_JOGO;
+            }
+            if (t.acao == Acao.ATIRAR && t.momento - inicio >= 0) {
+                return Acao.ENTRAR_JOGO;
+            }
+        }
     }
 
     /**
      * run é o método principal da classe, chamado após um start().
-     * A cada 1/60 segundos, vai atualizar o valor retornado em {@link getAcao}.
+     * Bloqueia lendo a entrada padrão byte a byte e coloca cada tecla
+     * reconhecida na fila lida por {@link getAcao} e {@link esperarTiro}.
      *
      * Caso o sistema operacional utilizado seja linux, uma otimização é feita para
      * deixar o programa mais interativo: um programa é utilizado para fazer com que
      * não seja necessário apertar enter a cada entrada de teclado.
      *
-     * Caso haja uma thread esperando via {@link esperarTiro}, não envia a ação mas
-     * notifica a thread que o tiro foi dado caso esse seja o input.
+     * As setas chegam como sequências de escape (ESC '[' e uma letra, ou ESC 'O'
+     * e uma letra), decodificadas byte a byte.
      */
     @Override
     public void run() {
         try {
-            BufferedReader leitor = new BufferedReader(
-                    new InputStreamReader(System.in));
+            InputStream entrada = System.in;
 
             if (System.getProperty("os.name").equals("Linux")) {
                 // desabilita o enter como buffering do programa
@@ -68,39 +136,64 @@ public class LeitorInput extends Thread {
                 Runtime.getRuntime().exec(cmd).waitFor();
             }
 
+            // 0: fora de uma sequência, 1: depois de ESC, 2: depois de ESC '[' ou ESC 'O'
+            int escape = 0;
             while (!deveParar) {
-                if (!leitor.ready()) {
-                    Thread.sleep(16, 666); // 60 fps
-                    continue;
+                int lido = entrada.read();
+                if (lido == -1) {
+                    // a entrada foi fechada
+                    enfileirar(Acao.SAIR_JOGO);
+                    return;
                 }
 
-                int lido = leitor.read();
-                char charlido = (char) lido;
+                if (escape == 1) {
+                    if (lido == '[' || lido == 'O') {
+                        escape = 2;
+                        continue;
+                    }
+                    // um ESC sozinho, o byte lido é uma tecla normal
+                    escape = 0;
+                } else if (escape == 2) {
+                    // parâmetros da sequência vêm antes do byte final, de '@' a '~'
+                    if (lido < '@' || lido > '~') {
+                        continue;
+                    }
+                    escape = 0;
+                    switch (lido) {
+                        case 'D':
+                            enfileirar(Acao.ESQUERDA);
+                            break;
+                        case 'C':
+                            enfileirar(Acao.DIREITA);
+                            break;
+                        case 'A':
+                            enfileirar(Acao.ATIRAR);
+                            break;
+                    }
+                    continue;
+                }
 
-                switch (charlido) {
+                switch (lido) {
+                    case ESC:
+                        escape = 1;
+                        break;
                     case 'a':
-                        acao = Acao.ESQUERDA;
+                    case 'A':
+                        enfileirar(Acao.ESQUERDA);
                         break;
                     case 'd':
-                        acao = Acao.DIREITA;
+                    case 'D':
+                        enfileirar(Acao.DIREITA);
                         break;
                     case 'w':
+                    case 'W':
                     case ' ':
-                        if (!esperando) {
-                            acao = Acao.ATIRAR;
-                            break;
-                        }
-                        esperando = false;
-                        synchronized (this) {
-                            // retorna a thread do esperarTiro a execução normal
-                            notify();
-                            acao = Acao.ENTRAR_JOGO;
-                        }
+                        enfileirar(Acao.ATIRAR);
                         break;
                     case 'q':
                     case 3:
                         // ctrl+C
-                        acao = Acao.SAIR_JOGO;
+                        enfileirar(Acao.SAIR_JOGO);
                         return;
                 }
             }
@@ -114,9 +207,18 @@ public class LeitorInput extends Thread {
     }
 
     /**
-     * parar faz com que a thread de leitura em {@link run} pare de coletar input.
-     * O valor retornado por getAcao se torna sempre o mesmo que no último frame
-     * lido.
+     * enfileirar coloca uma tecla lida agora na fila.
+     *
+     * @param acao a ação da tecla
+     */
+    private void enfileirar(Acao acao) {
+        fila.add(new Tecla(acao, System.nanoTime()));
+    }
+
+    /**
+     * parar faz com que a thread de leitura em {@link run} pare de coletar input
+     * depois da próxima tecla. Como ela é daemon, o programa pode terminar
+     * enquanto ela ainda espera essa tecla.
      */
     public void parar() {
         deveParar = true;
@@ -1,12 +1,15 @@
 package com.github.lucasgpulcinelli.clienteTerminal;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 
+import com.github.lucasgpulcinelli.clienteCarga.Amostras;
+import com.github.lucasgpulcinelli.clienteCarga.GraficoNulo;
 import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+import com.github.lucasgpulcinelli.comunicacao.ConexaoCliente;
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
 import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
@@ -21,7 +24,11 @@ import com.github.lucasgpulcinelli.grafico.InterfaceGrafica;
  * @see LeitorInput
  */
 public class Main {
-    private static final InterfaceGrafica graficos = new GraficoTerminal();
+    /**
+     * se a saúde da conexão deve ser mostrada na borda da tela de jogo, ligado
+     * com a propriedade de sistema "telemetria" (por exemplo, -Dtelemetria=true)
+     */
+    private static final boolean MOSTRAR_TELEMETRIA = Boolean.getBoolean("telemetria");
 
     /**
      * main executa o código completo do cliente do Space Invaders, com uma
@@ -29,12 +36,19 @@ public class Main {
      * Para jogar, uma instância de servidor {@link servidor.Main} deve estar ativa
      * em 127.0.0.1:8080.
      * Os comandos de jogo são:
-     * 'w' ou espaço para atirar,
-     * 'a' para se mover para a esquerda,
-     * 'd' para se mover para a direita,
+     * 'w', espaço ou seta para cima para atirar,
+     * 'a' ou seta para a esquerda para se mover para a esquerda,
+     * 'd' ou seta para a direita para se mover para a direita,
      * 'q' para sair do jogo.
      *
-     * @param args ip do servidor 
+     * Com "--sem-tela n", nada é desenhado nem lido do teclado: n clientes se
+     * conectam ao mesmo tempo, neste processo, cada um desenhando em um
+     * {@link GraficoNulo} e sem enviar ações além da volta ao jogo depois de
+     * uma vida perdida, e no fim do jogo as medidas de cada cliente são
+     * impressas.
+     *
+     * @param args ip do servidor e, opcionalmente, "--sem-tela" e o número de
+     *             clientes
      * @throws UnknownHostException   caso não exista servidor em 127.0.0.1:8080
      * @throws IOException            caso o servidor pare de responder
      * @throws ClassNotFoundException caso haja um erro muito grande na comunicação
@@ -43,47 +57,145 @@ public class Main {
     public static void main(String[] args)
             throws UnknownHostException, IOException, ClassNotFoundException {
 
-        String ip;
-        if(args.length == 0){
-            ip = "127.0.0.1";
-        } else{
-            ip = args[0];
+        String ip = "127.0.0.1";
+        int semTela = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--sem-tela")) {
+                semTela = Integer.parseInt(args[++i]);
+            } else {
+                ip = args[i];
+            }
         }
-        Socket s = new Socket(ip, 8080);
-        ObjectInputStream in = new ObjectInputStream(s.getInputStream());
-        ObjectOutputStream out = new ObjectOutputStream(s.getOutputStream());
+
+        if (semTela > 0) {
+            try {
+                executarSemTela(ip, semTela);
+            } catch (InterruptedException e) {
+                System.exit(0);
+            }
+            return;
+        }
+
+        ConexaoCliente conexao = new ConexaoCliente(ip, 8080);
 
         try {
-            loopJogo(in, out);
+            loopJogo(conexao, new GraficoTerminal(), new LeitorInput());
         } catch (InterruptedException e) {
             System.exit(0);
         }
-        s.close();
+        conexao.fechar();
+    }
+
+    /**
+     * executarSemTela conecta vários clientes sem tela ao servidor, cada um em
+     * uma thread, e imprime as medidas de cada um quando todos terminarem.
+     *
+     * @param ip       ip do servidor
+     * @param clientes número de clientes
+     * @throws InterruptedException caso a thread seja interrompida
+     */
+    private static void executarSemTela(String ip, int clientes) throws InterruptedException {
+        GraficoNulo[] graficos = new GraficoNulo[clientes];
+        String[] erros = new String[clientes];
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clientes; i++) {
+            final int n = i;
+            Thread t = new Thread(() -> {
+                try {
+                    ConexaoCliente conexao = new ConexaoCliente(ip, 8080);
+                    graficos[n] = new GraficoNulo(conexao);
+                    loopJogo(conexao, graficos[n], null);
+                    conexao.fechar();
+                } catch (IOException | ClassNotFoundException | InterruptedException e) {
+                    erros[n] = e.toString();
+                }
+            }, "cliente-" + i);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Amostras decodificacao = new Amostras();
+        Amostras intervalos = new Amostras();
+        Amostras cpu = new Amostras();
+        for (int i = 0; i < clientes; i++) {
+            GraficoNulo g = graficos[i];
+            if (g == null) {
+                System.out.printf("cliente %3d: %s\n", i, erros[i]);
+                continue;
+            }
+            System.out.printf("cliente %3d: %6d frames, %3d entidades p50, decodificação p50 %6.3fms, "
+                    + "cpu por estado p50 %6.3fms%s\n",
+                    i, g.getFrames(), g.getEntidades().percentil(50),
+                    g.getDecodificacao().percentil(50) / 1e6, g.getCpu().percentil(50) / 1e6,
+                    (erros[i] == null) ? "" : " (" + erros[i] + ")");
+
+            decodificacao.adicionarTodas(g.getDecodificacao());
+            intervalos.adicionarTodas(g.getIntervalos());
+            cpu.adicionarTodas(g.getCpu());
+        }
+
+        System.out.println();
+        System.out.println("decodificação (ms):      " + decodificacao.resumo(1e6));
+        System.out.println("intervalo de frame (ms): " + intervalos.resumo(1e6));
+        System.out.println("cpu por estado (ms):     " + cpu.resumo(1e6));
+    }
+
+    /**
+     * pedirClassificacao pede o placar ao servidor no fim do jogo.
+     *
+     * @param conexao a conexão com o servidor
+     * @return as maiores scores e a posição do jogador, ou null caso o servidor
+     *         não tenha um placar ou tenha deixado de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    private static Classificacao pedirClassificacao(ConexaoCliente conexao) throws ClassNotFoundException {
+        try {
+            return conexao.pedirClassificacao(10);
+        } catch (IOException e) {
+            // o jogo já acabou, então o placar só não é mostrado
+            return null;
+        }
     }
 
     /**
      * loopJogo executa o código principal que a thread de display e comunicação
      * estará exercendo.
      *
-     * @param in  é a stream de objetos de entrada, que deve ter inicialmente um
-     *            inteiro com o número do jogado associado, e, posteriormente, a
-     *            cada 1/30s, um {@link comunicacao.EstadoJogo} do frame atual.
-     * @param out é a stream de objetos de saída, que terá uma nova
-     *            {@link comunicacao.Acao} escrita a cada 1/30s
+     * @param conexao  é a conexão com o servidor, que envia inicialmente o
+     *                 número do jogador associado e, posteriormente, na taxa
+     *                 escolhida pelo servidor, um {@link comunicacao.EstadoJogo}
+     *                 do frame atual, esperando uma {@link comunicacao.Acao}
+     *                 para cada estado recebido
+     * @param graficos onde os frames são desenhados
+     * @param li       o leitor do teclado, ainda não iniciado, ou null para um
+     *                 cliente sem input, que não espera confirmações e não
+     *                 envia ações além da volta ao jogo
      * @throws InterruptedException   caso a thread tenha sido interrompida
      * @throws ClassNotFoundException caso haja um erro grande na comunicação
      * @throws IOException            caso o servidor deixe de responder
      */
-    private static void loopJogo(ObjectInputStream in, ObjectOutputStream out)
+    private static void loopJogo(ConexaoCliente conexao, InterfaceGrafica graficos, LeitorInput li)
             throws InterruptedException, ClassNotFoundException, IOException {
 
-        LeitorInput li = new LeitorInput();
-        li.start();
+        if (li != null) {
+            li.start();
+        }
 
         graficos.printSplashScreen();
-        li.esperarTiro();
+        if (li != null && li.esperarTiro() == Acao.SAIR_JOGO) {
+            return;
+        }
 
-        int jogador = (Integer) in.readObject();
+        int jogador = conexao.receberJogador();
+
+        // espectadores só assistem, vendo a score e as vidas do jogador 1
+        boolean espectador = (jogador == ConexaoCliente.ESPECTADOR);
+        if (espectador) {
+            jogador = 1;
+        }
 
         //evento de perda de vida
         Evento perdaDeVida = (jogador == 1) ? Evento.PERDEU_VIDA_P1 : Evento.PERDEU_VIDA_P2;
@@ -91,38 +203,50 @@ public class Main {
         while (true) {
             // a cada frame:
 
-            // lê o estado atual do jogo
-            EstadoJogo estadoJogo = (EstadoJogo) in.readObject();
+            // lê o estado atual do jogo e os eventos que ainda não foram vistos
+            EstadoJogo estadoJogo = conexao.receberEstado();
+            List<Evento> eventos = conexao.getEventos();
 
-            // desenha o que está acontecendo
+            // desenha o que está acontecendo, com a saúde da conexão por cima caso pedido
+            if (MOSTRAR_TELEMETRIA) {
+                graficos.setTelemetria(conexao.getTelemetria().resumoCurto());
+            }
             graficos.desenharTela(estadoJogo.getScore(jogador),
                     estadoJogo.getVidas(jogador), estadoJogo.getDesenhaveis());
 
             // se o jogo foi perdido, para toda a execução
-            if (estadoJogo.getEventos().contains(Evento.PERDEU_JOGO)) {
-                graficos.printPerdeuJogo();
-                li.parar();
+            if (eventos.contains(Evento.PERDEU_JOGO)) {
+                graficos.printPerdeuJogo(pedirClassificacao(conexao));
+                if (li != null) {
+                    li.parar();
+                }
                 return;
             }
             // se o seu jogador perdeu vida, avisa ele e espera até ele dar a confirmação
             // para respawn
-            if (estadoJogo.getEventos().contains(perdaDeVida)) {
+            if (!espectador && eventos.contains(perdaDeVida)) {
                 graficos.printPerdeuVida();
-                li.esperarTiro();
-                out.writeObject(Acao.ENTRAR_JOGO);
+                if (li != null && li.esperarTiro() == Acao.SAIR_JOGO) {
+                    return;
+                }
+                conexao.enviarAcao(Acao.ENTRAR_JOGO);
             }
             // se ganhou o nível, celebra!
-            if (estadoJogo.getEventos().contains(Evento.GANHOU_NIVEL)) {
+            if (eventos.contains(Evento.GANHOU_NIVEL)) {
                 graficos.printGanhouNivel(estadoJogo.getNivel());
-                li.esperarTiro();
+                if (!espectador && li != null && li.esperarTiro() == Acao.SAIR_JOGO) {
+                    return;
+                }
             }
 
             // no final, sempre escreve a próxima ação
-            Acao a = li.getAcao();
+            Acao a = (li == null) ? Acao.NENHUMA_ACAO : li.getAcao();
             if(a == Acao.SAIR_JOGO){
                 return;
             }
-            out.writeObject(a);
+            if (!espectador) {
+                conexao.enviarAcao(a);
+            }
         }
     }
 }
@@ -0,0 +1,124 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Classificacao é a resposta do servidor a um {@link PedidoClassificacao} no
+ * fim do jogo: as maiores scores do placar do servidor e a posição da score
+ * final do jogador que pediu.
+ *
+ * @see ConexaoCliente#pedirClassificacao
+ * @see servidor.Placar
+ */
+public final class Classificacao implements Serializable {
+    /** versão da forma serializada */
+    private static final long serialVersionUID = 1L;
+
+    /** as maiores scores, em ordem, com o jogador e o momento de cada uma */
+    private final int[] scores;
+    private final byte[] jogadores;
+    private final long[] momentos;
+    /** score final e posição do jogador que pediu, ou -1 */
+    private final int score;
+    private final int posicao;
+    /** quantas scores o placar guarda */
+    private final int total;
+
+    /**
+     * Cria uma nova classificação.
+     *
+     * @param scores    as maiores scores, em ordem
+     * @param jogadores o jogador de cada score
+     * @param momentos  o fim da partida de cada score, em milissegundos desde
+     *                  1970
+     * @param score     a score final do jogador que pediu, ou -1 caso ele não
+     *                  tenha jogado
+     * @param posicao   a posição dessa score, ou -1
+     * @param total     quantas scores o placar guarda
+     */
+    public Classificacao(int[] scores, byte[] jogadores, long[] momentos, int score, int posicao,
+            int total) {
+        this.scores = scores;
+        this.jogadores = jogadores;
+        this.momentos = momentos;
+        this.score = score;
+        this.posicao = posicao;
+        this.total = total;
+    }
+
+    /**
+     * @return quantas das maiores scores foram enviadas
+     */
+    public int getTamanho() {
+        return scores.length;
+    }
+
+    /**
+     * @param i índice da score, a partir de 0
+     * @return a i-ésima maior score
+     */
+    public int getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @param i índice da score, a partir de 0
+     * @return o jogador, 1 ou 2, que fez a i-ésima maior score
+     */
+    public int getJogador(int i) {
+        return jogadores[i];
+    }
+
+    /**
+     * @param i índice da score, a partir de 0
+     * @return o fim da partida da i-ésima maior score, em milissegundos desde
+     *         1970
+     */
+    public long getMomento(int i) {
+        return momentos[i];
+    }
+
+    /**
+     * @return a score final do jogador que pediu, ou -1
+     */
+    public int getScoreJogador() {
+        return score;
+    }
+
+    /**
+     * @return a posição da score final do jogador que pediu, a partir de 1, ou
+     *         -1
+     */
+    public int getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * @return quantas scores o placar guarda
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * linhas formata a classificação para ser mostrada pelos clientes.
+     *
+     * @return uma linha por score, seguida da posição do jogador
+     */
+    public List<String> linhas() {
+        SimpleDateFormat data = new SimpleDateFormat("dd/MM/yy");
+        List<String> linhas = new ArrayList<>(scores.length + 1);
+        for (int i = 0; i < scores.length; i++) {
+            linhas.add(String.format("%2d. %05d  P%d  %s", i + 1, scores[i], jogadores[i],
+                    data.format(new Date(momentos[i]))));
+        }
+        if (posicao > 0) {
+            linhas.add(String.format("você: %05d, %dº de %d", score, posicao, total));
+        }
+        return linhas;
+    }
+}
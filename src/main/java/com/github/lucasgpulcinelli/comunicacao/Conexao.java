@@ -0,0 +1,76 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Conexao identifica o que um cliente de jogo usa de uma conexão com o
+ * servidor: receber o jogador e os estados, com os eventos novos de cada um, e
+ * enviar uma ação para cada estado recebido.
+ *
+ * A {@link ConexaoCliente} fala com um servidor pela rede; um jogo local pode
+ * usar uma conexão no próprio processo, sem sockets nem serialização.
+ *
+ * @see ConexaoCliente
+ * @see servidor.ConexaoLocal
+ */
+public interface Conexao {
+    /**
+     * receberJogador espera o id do jogador associado a essa conexão. Deve ser
+     * chamado uma única vez, antes de qualquer estado ser recebido.
+     *
+     * @return o id do jogador, 1 ou 2, ou {@link ConexaoCliente#ESPECTADOR}
+     * @throws IOException caso o servidor deixe de responder
+     */
+    public int receberJogador() throws IOException;
+
+    /**
+     * receberEstado espera o próximo estado de jogo, atualizando os eventos
+     * novos.
+     *
+     * @return o estado de jogo recebido
+     * @throws IOException            caso o servidor deixe de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    public EstadoJogo receberEstado() throws IOException, ClassNotFoundException;
+
+    /**
+     * @return os eventos do último estado recebido que ainda não haviam sido
+     *         vistos pelo cliente
+     */
+    public List<Evento> getEventos();
+
+    /**
+     * enviarAcao envia a ação do jogador para o estado recebido.
+     *
+     * @param acao a ação a ser enviada
+     * @throws IOException caso o servidor deixe de responder
+     */
+    public void enviarAcao(Acao acao) throws IOException;
+
+    /**
+     * pedirClassificacao pede o placar, depois que o jogo foi perdido, no lugar
+     * da próxima ação.
+     *
+     * @param quantidade quantas das maiores scores pedir
+     * @return as maiores scores e a posição da score final do jogador, ou null
+     *         caso o servidor não guarde um placar ou o cliente seja um
+     *         espectador
+     * @throws IOException            caso o servidor deixe de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    public Classificacao pedirClassificacao(int quantidade) throws IOException, ClassNotFoundException;
+
+    /**
+     * @return as medidas de saúde da conexão, que podem ser lidas por qualquer
+     *         thread
+     */
+    public Telemetria getTelemetria();
+
+    /**
+     * fechar encerra a conexão com o servidor.
+     *
+     * @throws IOException caso haja um erro fechando a conexão
+     */
+    public void fechar() throws IOException;
+}
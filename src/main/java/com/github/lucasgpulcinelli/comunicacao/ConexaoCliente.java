@@ -0,0 +1,448 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ConexaoCliente implementa o lado do cliente do protocolo do Space Invaders
+ * Multiplayer, sendo usada por todos os clientes de jogo.
+ *
+ * O protocolo funciona da seguinte forma: os dois lados trocam uma
+ * {@link Saudacao}, com a versão do protocolo e as capacidades de cada um (como
+ * a compressão dos estados), e o servidor informa o id do jogador associado ao
+ * cliente, o token da sessão, a taxa de ticks e o tick atual. Depois,
+ * na taxa escolhida pelo servidor, o servidor envia um {@link EstadoJogo} do
+ * frame atual; para cada estado recebido o cliente responde com uma
+ * {@link Acao}, a menos que seja um espectador.
+ *
+ * A compressão é opcional e só vale a pena quando a banda da conexão é o
+ * gargalo; ela é pedida quando a propriedade de sistema "compressao" é true
+ * (por exemplo, com -Dcompressao=true).
+ *
+ * Além disso, a conexão mantém quais eventos já foram vistos e mede cada
+ * estado recebido: quantos bytes foram lidos, quanto tempo a decodificação
+ * levou e em que momento o estado começou a chegar. Os {@link Ping}s que o
+ * servidor envia antes de alguns estados são devolvidos imediatamente, e as
+ * medidas da conexão ficam em uma {@link Telemetria}.
+ *
+ * Caso a conexão de um jogador caia, a conexão tenta se reconectar ao servidor
+ * com o token da sessão por até {@link TEMPO_RECONEXAO}, sem que quem a usa
+ * perceba: o servidor guarda o lugar do jogador nesse tempo, e o próximo
+ * estado recebido já é o estado completo atual.
+ *
+ * @see servidor.ComunicadorJogo
+ */
+public class ConexaoCliente implements Conexao {
+    /**
+     * id recebido por clientes que se conectam quando os dois jogadores já estão
+     * no jogo. Um espectador recebe os estados normalmente, mas não deve enviar
+     * ações.
+     */
+    public static final int ESPECTADOR = 0;
+
+    /** por quanto tempo uma conexão caída tenta voltar, em nanossegundos */
+    public static final long TEMPO_RECONEXAO = 10_000_000_000L;
+    /** intervalo entre duas tentativas de reconexão, em milissegundos */
+    private static final long INTERVALO_RECONEXAO = 250;
+
+    /** endereço do servidor */
+    private final String ip;
+    private final int porta;
+
+    /** a socket conectada ao servidor */
+    private Socket socket;
+    /** stream bufferizada do servidor, usada para esperar o início de um estado */
+    private BufferedInputStream bufferEntrada;
+    /** contador de bytes recebidos */
+    private ContadorEntrada contador;
+    /** contador de bytes enviados */
+    private ContadorSaida contadorSaida;
+    /** descompressão dos estados, ativada somente se negociada */
+    private EntradaComprimida entradaComprimida;
+    /** se o cliente pede compressão ao servidor */
+    private final boolean pedirCompressao;
+    /** a stream de input do servidor */
+    private ObjectInputStream in;
+    /** a stream de output do servidor */
+    private ObjectOutputStream out;
+
+    /** id do jogador recebido do servidor, -1 antes do primeiro */
+    private int jogador = -1;
+    /** token da sessão do jogador, 0 para espectadores ou antes de receber */
+    private long token = 0;
+    /** resposta do servidor na última saudação, ou null antes de recebê-la */
+    private Saudacao saudacao = null;
+    /** se a conexão foi fechada pelo próprio cliente */
+    private volatile boolean fechada = false;
+    /** quantas vezes a conexão caiu e voltou */
+    private int reconexoes = 0;
+    /** bytes recebidos e enviados pelas conexões anteriores */
+    private long bytesRecebidosAnteriores = 0;
+    private long bytesEnviadosAnteriores = 0;
+
+    /** tick do último estado recebido, -1 antes do primeiro */
+    private long ultimoTick = -1;
+    /** eventos novos do último estado recebido */
+    private List<Evento> eventos = Collections.emptyList();
+
+    /** bytes do último estado recebido */
+    private long bytesUltimoEstado = 0;
+    /** tempo de decodificação do último estado, em nanossegundos */
+    private long nanosDecodificacao = 0;
+    /** momento, em System.nanoTime(), em que o último estado começou a chegar */
+    private long chegadaUltimoEstado = 0;
+
+    /** medidas de saúde da conexão */
+    private final Telemetria telemetria = new Telemetria();
+
+    /**
+     * Cria uma nova conexão com um servidor de jogo, pedindo compressão caso a
+     * propriedade de sistema "compressao" seja true.
+     *
+     * @param ip    ip do servidor
+     * @param porta porta do servidor
+     * @throws IOException caso não seja possível conectar ao servidor
+     */
+    public ConexaoCliente(String ip, int porta) throws IOException {
+        this(ip, porta, Boolean.getBoolean("compressao"));
+    }
+
+    /**
+     * Cria uma nova conexão com um servidor de jogo.
+     *
+     * @param ip              ip do servidor
+     * @param porta           porta do servidor
+     * @param pedirCompressao se o cliente deve pedir que os estados sejam
+     *                        comprimidos
+     * @throws IOException caso não seja possível conectar ao servidor
+     */
+    public ConexaoCliente(String ip, int porta, boolean pedirCompressao) throws IOException {
+        this.ip = ip;
+        this.porta = porta;
+        this.pedirCompressao = pedirCompressao;
+        abrir();
+    }
+
+    /**
+     * abrir cria uma nova socket com o servidor e envia a saudação do cliente.
+     *
+     * @throws IOException caso não seja possível conectar ao servidor
+     */
+    private void abrir() throws IOException {
+        socket = new Socket(ip, porta);
+        socket.setTcpNoDelay(true);
+
+        // os bytes são contados antes da descompressão, como chegam da rede
+        bufferEntrada = new BufferedInputStream(socket.getInputStream());
+        contador = new ContadorEntrada(bufferEntrada);
+        // uma reconexão reaproveita o descompressor da conexão anterior
+        if (entradaComprimida == null) {
+            entradaComprimida = new EntradaComprimida(contador);
+        } else {
+            entradaComprimida.reiniciar(contador);
+        }
+        contadorSaida = new ContadorSaida(socket.getOutputStream());
+
+        // a saudação é lida pelo servidor antes de ele escolher o papel da conexão,
+        // então ela vai antes de qualquer stream de objetos
+        int capacidades = Saudacao.PLACAR | (pedirCompressao ? Saudacao.COMPRESSAO : 0);
+        Saudacao.pedido(capacidades, token).escreverPedido(new DataOutputStream(contadorSaida));
+
+        out = new ObjectOutputStream(contadorSaida);
+    }
+
+    /**
+     * receberJogador lê a saudação do servidor, com o id do jogador associado
+     * a essa conexão e as capacidades negociadas. Deve ser chamado uma única vez,
+     * antes de qualquer estado ser recebido.
+     *
+     * @return o id do jogador, 1 ou 2, ou {@link ESPECTADOR}
+     * @throws IOException caso o servidor deixe de responder ou recuse a versão
+     *                     do cliente
+     */
+    public int receberJogador() throws IOException {
+        saudacao = Saudacao.lerResposta(new DataInputStream(entradaComprimida));
+        jogador = saudacao.getJogador();
+        if (jogador != ESPECTADOR) {
+            token = saudacao.getToken();
+        }
+
+        in = new ObjectInputStream(entradaComprimida);
+        if (saudacao.possui(Saudacao.COMPRESSAO)) {
+            // tudo o que o servidor enviar depois do cabeçalho da stream é comprimido
+            entradaComprimida.ativar();
+        }
+
+        return jogador;
+    }
+
+    /**
+     * @return a resposta do servidor na saudação, com a versão, as capacidades
+     *         negociadas, a taxa de ticks e o tick da conexão
+     */
+    public Saudacao getSaudacao() {
+        return saudacao;
+    }
+
+    /**
+     * reconectar tenta voltar ao servidor depois que a conexão de um jogador
+     * caiu, até {@link TEMPO_RECONEXAO} depois da queda.
+     *
+     * @param causa o erro que derrubou a conexão
+     * @throws IOException a causa, caso a conexão não volte a tempo, tenha sido
+     *                     fechada pelo cliente ou o cliente seja um espectador
+     */
+    private void reconectar(IOException causa) throws IOException {
+        if (token == 0 || fechada) {
+            throw causa;
+        }
+
+        bytesRecebidosAnteriores = getBytesRecebidos();
+        bytesEnviadosAnteriores = getBytesEnviados();
+        socket.close();
+
+        int anterior = jogador;
+        long limite = System.nanoTime() + TEMPO_RECONEXAO;
+        while (true) {
+            try {
+                abrir();
+                receberJogador();
+                break;
+            } catch (IOException e) {
+                if (System.nanoTime() - limite > 0) {
+                    throw causa;
+                }
+                try {
+                    Thread.sleep(INTERVALO_RECONEXAO);
+                } catch (InterruptedException e2) {
+                    throw causa;
+                }
+            }
+        }
+
+        if (jogador != anterior) {
+            // o servidor já liberou o lugar do jogador
+            socket.close();
+            throw new IOException("a sessão do jogador " + anterior + " expirou", causa);
+        }
+
+        // o servidor trata a nova conexão do zero, e o primeiro estado não tem
+        // eventos novos
+        ultimoTick = -1;
+        reconexoes++;
+    }
+
+    /**
+     * @return quantas vezes a conexão caiu e voltou
+     */
+    public int getReconexoes() {
+        return reconexoes;
+    }
+
+    /**
+     * @return se os estados recebidos são comprimidos
+     */
+    public boolean getCompressao() {
+        return entradaComprimida.getAtiva();
+    }
+
+    /**
+     * receberEstado espera e lê o próximo estado de jogo enviado pelo servidor,
+     * atualizando os eventos novos e as medidas da conexão.
+     *
+     * @return o estado de jogo recebido
+     * @throws IOException            caso o servidor deixe de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    public EstadoJogo receberEstado() throws IOException, ClassNotFoundException {
+        try {
+            return lerEstado();
+        } catch (IOException e) {
+            reconectar(e);
+            return lerEstado();
+        }
+    }
+
+    /**
+     * lerEstado lê o próximo estado da conexão atual.
+     *
+     * @return o estado de jogo recebido
+     * @throws IOException            caso o servidor deixe de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    private EstadoJogo lerEstado() throws IOException, ClassNotFoundException {
+        // espera o primeiro byte do estado chegar, para que o tempo de espera não
+        // seja contado como tempo de decodificação. O reset que o servidor envia
+        // depois de cada estado já está no buffer, então ele é pulado na espera (mas
+        // ainda é lido pela ObjectInputStream). Com compressão, o reset fica dentro
+        // do bloco comprimido anterior, já lido por completo.
+        bufferEntrada.mark(2);
+        int lido = bufferEntrada.read();
+        if (lido == ObjectStreamConstants.TC_RESET && !entradaComprimida.getAtiva()) {
+            lido = bufferEntrada.read();
+        }
+        if (lido < 0) {
+            throw new EOFException();
+        }
+        bufferEntrada.reset();
+
+        long bytesAntes = getBytesRecebidos();
+        chegadaUltimoEstado = System.nanoTime();
+        Object mensagem = in.readObject();
+        while (mensagem instanceof Ping) {
+            // o ping vem antes do estado e é devolvido antes da decodificação, para
+            // que o tempo medido pelo servidor seja somente o da rede
+            responderPing((Ping) mensagem);
+            chegadaUltimoEstado = System.nanoTime();
+            mensagem = in.readObject();
+        }
+        EstadoJogo estadoJogo = (EstadoJogo) mensagem;
+        nanosDecodificacao = System.nanoTime() - chegadaUltimoEstado;
+        bytesUltimoEstado = getBytesRecebidos() - bytesAntes;
+
+        telemetria.registrarChegada(chegadaUltimoEstado);
+        telemetria.registrarBytes(getBytesEnviados(), getBytesRecebidos());
+
+        // o primeiro estado não tem eventos novos
+        eventos = (ultimoTick < 0) ? Collections.<Evento>emptyList()
+                : estadoJogo.getEventosDesde(ultimoTick);
+        ultimoTick = estadoJogo.getTick();
+
+        return estadoJogo;
+    }
+
+    /**
+     * responderPing devolve um ping ao servidor e registra o tempo de ida e
+     * volta medido pelo servidor no ping anterior.
+     *
+     * @param ping o ping recebido
+     * @throws IOException caso o servidor deixe de responder
+     */
+    private void responderPing(Ping ping) throws IOException {
+        out.writeObject(ping);
+        // cada ping é um objeto novo, então a saída é resetada para que a tabela
+        // de objetos já enviados não cresça para sempre
+        out.reset();
+        out.flush();
+        telemetria.registrarRttRemoto(ping.getRttAnterior());
+    }
+
+    /**
+     * @return os eventos do último estado recebido que ainda não haviam sido
+     *         vistos pelo cliente
+     */
+    public List<Evento> getEventos() {
+        return eventos;
+    }
+
+    /**
+     * enviarAcao envia a ação do jogador para o frame atual. Caso a conexão
+     * tenha caído, a ação é descartada e a conexão é refeita; o servidor começa
+     * a nova conexão enviando um estado.
+     *
+     * @param acao a ação a ser enviada
+     * @throws IOException caso o servidor deixe de responder
+     */
+    public void enviarAcao(Acao acao) throws IOException {
+        try {
+            out.writeObject(acao);
+        } catch (IOException e) {
+            reconectar(e);
+        }
+    }
+
+    /**
+     * pedirClassificacao pede ao servidor o placar, depois que o jogo foi
+     * perdido, no lugar da próxima ação. Caso a conexão caia, o placar não é
+     * pedido novamente.
+     *
+     * @param quantidade quantas das maiores scores pedir
+     * @return as maiores scores e a posição da score final do jogador, ou null
+     *         caso o servidor não guarde um placar ou o cliente seja um
+     *         espectador
+     * @throws IOException            caso o servidor deixe de responder
+     * @throws ClassNotFoundException caso haja um erro grande na comunicação
+     */
+    public Classificacao pedirClassificacao(int quantidade) throws IOException, ClassNotFoundException {
+        if (jogador == ESPECTADOR || !saudacao.possui(Saudacao.PLACAR)) {
+            return null;
+        }
+        out.writeObject(new PedidoClassificacao(quantidade));
+        out.reset();
+        out.flush();
+
+        // o servidor está esperando a ação do último estado enviado, então a
+        // resposta é a próxima mensagem
+        Object mensagem = in.readObject();
+        while (mensagem instanceof Ping) {
+            responderPing((Ping) mensagem);
+            mensagem = in.readObject();
+        }
+        return (Classificacao) mensagem;
+    }
+
+    /**
+     * @return o total de bytes recebidos do servidor, comprimidos ou não,
+     *         somando as conexões anteriores
+     */
+    public long getBytesRecebidos() {
+        return bytesRecebidosAnteriores + contador.getBytes();
+    }
+
+    /**
+     * @return o total de bytes enviados ao servidor, somando as conexões
+     *         anteriores
+     */
+    public long getBytesEnviados() {
+        return bytesEnviadosAnteriores + contadorSaida.getBytes();
+    }
+
+    /**
+     * @return as medidas de saúde da conexão, que podem ser lidas por qualquer
+     *         thread
+     */
+    public Telemetria getTelemetria() {
+        return telemetria;
+    }
+
+    /**
+     * @return os bytes do último estado recebido
+     */
+    public long getBytesUltimoEstado() {
+        return bytesUltimoEstado;
+    }
+
+    /**
+     * @return o tempo de decodificação do último estado, em nanossegundos
+     */
+    public long getNanosDecodificacao() {
+        return nanosDecodificacao;
+    }
+
+    /**
+     * @return o momento, em System.nanoTime(), em que o último estado começou a
+     *         chegar
+     */
+    public long getChegadaUltimoEstado() {
+        return chegadaUltimoEstado;
+    }
+
+    /**
+     * fechar encerra a conexão com o servidor.
+     *
+     * @throws IOException caso haja um erro fechando a socket
+     */
+    public void fechar() throws IOException {
+        fechada = true;
+        socket.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ContadorEntrada conta quantos bytes passaram por uma stream de entrada.
+ *
+ * Somente a thread que lê da stream altera o contador, então ele pode ser lido
+ * por qualquer thread sem travas.
+ *
+ * @see ContadorSaida
+ */
+public class ContadorEntrada extends FilterInputStream {
+    /** bytes lidos até agora */
+    private volatile long bytes = 0;
+
+    /**
+     * @param in stream a ser contada
+     */
+    public ContadorEntrada(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int lido = super.read();
+        if (lido >= 0) {
+            bytes++;
+        }
+        return lido;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int lidos = super.read(b, off, len);
+        if (lidos > 0) {
+            bytes += lidos;
+        }
+        return lidos;
+    }
+
+    /**
+     * @return os bytes lidos até agora
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
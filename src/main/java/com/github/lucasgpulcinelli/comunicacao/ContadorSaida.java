@@ -0,0 +1,45 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ContadorSaida conta quantos bytes passaram por uma stream de saída.
+ *
+ * Somente a thread que escreve na stream altera o contador, então ele pode ser
+ * lido por qualquer thread sem travas.
+ *
+ * @see ContadorEntrada
+ */
+public class ContadorSaida extends FilterOutputStream {
+    /** bytes escritos até agora */
+    private volatile long bytes = 0;
+
+    /**
+     * @param out stream a ser contada
+     */
+    public ContadorSaida(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream escreveria byte a byte
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    /**
+     * @return os bytes escritos até agora
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
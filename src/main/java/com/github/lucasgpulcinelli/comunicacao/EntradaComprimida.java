@@ -0,0 +1,128 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * EntradaComprimida é uma stream de entrada que, depois de ativada,
+ * descomprime tudo o que é lido com {@link Inflater}, lendo o que foi escrito
+ * por uma {@link SaidaComprimida}.
+ *
+ * Antes de ser ativada, a stream somente repassa os bytes lidos, assim como a
+ * SaidaComprimida.
+ *
+ * @see SaidaComprimida
+ */
+public class EntradaComprimida extends FilterInputStream {
+    /** o descompressor, usado somente depois de ativado */
+    private final Inflater inflater = new Inflater();
+    /** buffer para os bytes comprimidos lidos da stream */
+    private final byte[] buffer = new byte[8192];
+    /** se a compressão já foi ativada */
+    private boolean ativa = false;
+
+    /**
+     * Cria uma nova entrada comprimida, ainda não ativada.
+     *
+     * @param in a stream de onde os bytes comprimidos são lidos
+     */
+    public EntradaComprimida(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * ativar faz com que tudo o que for lido a partir de agora seja
+     * descomprimido.
+     */
+    public void ativar() {
+        ativa = true;
+    }
+
+    /**
+     * reiniciar volta a stream ao estado inicial, ainda não ativada, lendo de uma
+     * nova stream. O descompressor é reaproveitado, sem alocar a sua memória de
+     * novo.
+     *
+     * @param in a nova stream de onde os bytes comprimidos são lidos
+     */
+    public void reiniciar(InputStream in) {
+        this.in = in;
+        inflater.reset();
+        ativa = false;
+    }
+
+    /**
+     * @return se a compressão foi ativada
+     */
+    public boolean getAtiva() {
+        return ativa;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (!ativa) {
+            return in.read(b, off, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        try {
+            while (true) {
+                int n = inflater.inflate(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+                if (inflater.finished()) {
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("stream comprimida com dicionário desconhecido");
+                }
+
+                // somente lê mais da stream quando tudo o que foi lido já foi
+                // descomprimido, para não bloquear esperando o próximo estado
+                int lidos = in.read(buffer, 0, buffer.length);
+                if (lidos < 0) {
+                    throw new EOFException("stream comprimida terminou no meio de um bloco");
+                }
+                inflater.setInput(buffer, 0, lidos);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("dados comprimidos inválidos", e);
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return ativa ? 0 : in.available();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] descartados = new byte[(int) Math.min(n, 512)];
+        int lidos = read(descartados, 0, descartados.length);
+        return Math.max(lidos, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        super.close();
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.lucasgpulcinelli.comunicacao;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
@@ -20,12 +23,46 @@ public final class EstadoJogo implements Serializable {
      */
     private final List<Desenhavel> desenhaveis;
 
-    /** lista de eventos novos no frame, é tanto lido quanto escrito. */
-    private final ArrayList<Evento> eventos;
+    /**
+     * número de ticks da lógica de jogo mantidos na janela de eventos. Como cada
+     * cliente pode receber o estado em uma taxa diferente, os eventos não são
+     * limpos a cada envio, e sim mantidos por 2 segundos de jogo (a 60 ticks por
+     * segundo) para que qualquer cliente os veja ao menos uma vez.
+     */
+    public static final int JANELA_EVENTOS = 120;
+
+    /**
+     * EventoNoTick associa um evento ao tick da lógica de jogo em que ele
+     * ocorreu.
+     */
+    private static final class EventoNoTick implements Serializable {
+        /** versão da forma serializada */
+        private static final long serialVersionUID = 1L;
+
+        /** o evento ocorrido */
+        private final Evento evento;
+        /** tick em que o evento ocorreu */
+        private final long tick;
 
-    /** lista dos eventos para o próximo frame. */
+        /**
+         * @param evento o evento ocorrido
+         * @param tick   tick em que o evento ocorreu
+         */
+        private EventoNoTick(Evento evento, long tick) {
+            this.evento = evento;
+            this.tick = tick;
+        }
+    }
+
+    /** janela de eventos dos últimos ticks, é tanto lida quanto escrita. */
+    private final ArrayList<EventoNoTick> eventos;
+
+    /** lista dos eventos para o próximo tick. */
     private final ArrayList<Evento> eventosProximoFrame = new ArrayList<>();
 
+    /** tick atual da lógica de jogo */
+    private long tick = 0;
+
     /** score do jogador 1 */
     private int scoreP1;
     /** score do jogador 2 */
@@ -51,9 +88,9 @@ public final class EstadoJogo implements Serializable {
      * 
      * @param desenhaveis lista de desenhaveis que será modificada pelo resto do
      *                    programa
-     * @param eventos     lista de eventos que será controlada pelo EstadoJogo.
+     * @param eventos     janela de eventos que será controlada pelo EstadoJogo.
      */
-    private EstadoJogo(List<Desenhavel> desenhaveis, ArrayList<Evento> eventos) {
+    private EstadoJogo(List<Desenhavel> desenhaveis, ArrayList<EventoNoTick> eventos) {
         this.scoreP1 = 0;
         this.scoreP2 = 0;
         this.vidasP1 = 3;
@@ -81,6 +118,47 @@ public final class EstadoJogo implements Serializable {
         return unicoEstadoJogo;
     }
 
+    /**
+     * Congelado é um desenhavel que guarda o sprite e a posição de outro no
+     * momento da cópia, e não muda mais.
+     */
+    private static final class Congelado extends Desenhavel {
+        /** versão da forma serializada */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param d o desenhavel copiado
+         */
+        private Congelado(Desenhavel d) {
+            super(d.getSprite(), d.getX(), d.getY());
+        }
+    }
+
+    /**
+     * copiar cria uma cópia do estado atual que não é mais alterada pelo jogo,
+     * com uma cópia de cada desenhavel, para que outra thread do mesmo processo
+     * a leia sem travas e sem serialização. Assim como a serialização do
+     * estado, deve ser chamado com a trava da lista de personagens.
+     *
+     * @return a cópia
+     */
+    synchronized public final EstadoJogo copiar() {
+        ArrayList<Desenhavel> copias = new ArrayList<>(desenhaveis.size());
+        for (Desenhavel d : desenhaveis) {
+            copias.add(new Congelado(d));
+        }
+
+        EstadoJogo copia = new EstadoJogo(copias, new ArrayList<>(eventos));
+        copia.tick = tick;
+        copia.scoreP1 = scoreP1;
+        copia.scoreP2 = scoreP2;
+        copia.vidasP1 = vidasP1;
+        copia.vidasP2 = vidasP2;
+        copia.nivel = nivel;
+        copia.perdeuJogo = perdeuJogo;
+        return copia;
+    }
+
     /**
      * @return uma lista não modificável de desenhaveis.
      */
@@ -89,37 +167,125 @@ public final class EstadoJogo implements Serializable {
     }
 
     /**
-     * @return uma lista não modificável de eventos.
+     * @return uma lista não modificável dos eventos ocorridos no último tick.
      */
     public final List<Evento> getEventos() {
-        return Collections.unmodifiableList(eventos);
+        return getEventosDesde(tick - 1);
+    }
+
+    /**
+     * getEventosDesde retorna os eventos ocorridos depois de um certo tick, ou
+     * seja, os eventos que um cliente que recebeu o estado daquele tick ainda não
+     * viu. O evento Evento.PERDEU_JOGO sempre é incluso caso o jogo tenha sido
+     * perdido.
+     * 
+     * @param tickAnterior último tick já visto por quem pede os eventos
+     * @return uma lista não modificável de eventos
+     */
+    synchronized public final List<Evento> getEventosDesde(long tickAnterior) {
+        ArrayList<Evento> retorno = new ArrayList<>();
+        if (perdeuJogo) {
+            retorno.add(Evento.PERDEU_JOGO);
+        }
+        for (EventoNoTick e : eventos) {
+            if (e.tick > tickAnterior) {
+                retorno.add(e.evento);
+            }
+        }
+        return Collections.unmodifiableList(retorno);
+    }
+
+    /**
+     * @return o tick atual da lógica de jogo
+     */
+    public final long getTick() {
+        return tick;
     }
 
     /**
-     * @param e Evento a ser adicionado a lista do próximo frame.
+     * @param e Evento a ser adicionado a lista do próximo tick.
      */
     synchronized public final void addEvento(Evento e) {
         eventosProximoFrame.add(e);
     }
 
     /**
-     * clearEventos limpa a lista de eventos do frame atual e copia os valores do
-     * frame anterior para o do atual.
-     * O buffer é eventosProximoFrame é importante pois clearEventos pode ser
-     * chamado a qualquer momento na visão de outra thread, então seria possível
-     * perder Eventos no meio do programa quando um addEvento() fosse chamado em uma
-     * thread e logo depois um clearEventos fosse chamado em uma segunda.
+     * avancarTick avança o tick da lógica de jogo, movendo os eventos adicionados
+     * durante o tick para a janela de eventos e retirando dela os eventos mais
+     * antigos que {@link JANELA_EVENTOS} ticks.
+     * O buffer eventosProximoFrame é importante pois addEvento pode ser chamado
+     * a qualquer momento na visão de outra thread, então um evento adicionado
+     * no meio de um envio de estado apareceria em um tick já enviado.
      * 
      * O evento Evento.PERDEU_JOGO é especial pois quando os jogadores
      * perdem um jogo eles perdem para sempre (o evento nunca é limpo).
      */
-    synchronized public final void clearEventos() {
+    synchronized public final void avancarTick() {
+        tick++;
+        for (Evento e : eventosProximoFrame) {
+            eventos.add(new EventoNoTick(e, tick));
+        }
+        eventosProximoFrame.clear();
+
+        while (!eventos.isEmpty() && eventos.get(0).tick <= tick - JANELA_EVENTOS) {
+            eventos.remove(0);
+        }
+    }
+
+    /**
+     * escreverCheckpoint escreve tudo o que o estado de jogo guarda, exceto os
+     * desenhaveis, para ser restaurado por {@link lerCheckpoint}.
+     *
+     * @param out onde o estado é escrito
+     * @throws IOException caso a escrita falhe
+     */
+    synchronized public final void escreverCheckpoint(DataOutput out) throws IOException {
+        out.writeLong(tick);
+        out.writeInt(scoreP1);
+        out.writeInt(scoreP2);
+        out.writeInt(vidasP1);
+        out.writeInt(vidasP2);
+        out.writeInt(nivel);
+        out.writeBoolean(perdeuJogo);
+
+        out.writeShort(eventos.size());
+        for (EventoNoTick e : eventos) {
+            out.writeByte(e.evento.ordinal());
+            out.writeLong(e.tick);
+        }
+        out.writeShort(eventosProximoFrame.size());
+        for (Evento e : eventosProximoFrame) {
+            out.writeByte(e.ordinal());
+        }
+    }
+
+    /**
+     * lerCheckpoint restaura o estado escrito por {@link escreverCheckpoint},
+     * substituindo tudo o que havia antes.
+     *
+     * @param in de onde o estado é lido
+     * @throws IOException caso a leitura falhe
+     */
+    synchronized public final void lerCheckpoint(DataInput in) throws IOException {
+        Evento[] valores = Evento.values();
+
+        tick = in.readLong();
+        scoreP1 = in.readInt();
+        scoreP2 = in.readInt();
+        vidasP1 = in.readInt();
+        vidasP2 = in.readInt();
+        nivel = in.readInt();
+        perdeuJogo = in.readBoolean();
+
         eventos.clear();
-        if (perdeuJogo) {
-            eventos.add(Evento.PERDEU_JOGO);
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            Evento e = valores[in.readUnsignedByte()];
+            eventos.add(new EventoNoTick(e, in.readLong()));
         }
-        eventos.addAll(eventosProximoFrame);
         eventosProximoFrame.clear();
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            eventosProximoFrame.add(valores[in.readUnsignedByte()]);
+        }
     }
 
     /**
@@ -168,9 +334,16 @@ public final class EstadoJogo implements Serializable {
      * limpo).
      */
     synchronized public final void perderJogo() {
+        // não é necessário esperar o próximo tick, o evento é incluso em todos os
+        // estados a partir de agora.
         perdeuJogo = true;
-        // não é necessário esperar o próximo frame, ele não seria limpo da mesma forma.
-        eventos.add(Evento.PERDEU_JOGO);
+    }
+
+    /**
+     * @return se os jogadores perderam o jogo
+     */
+    synchronized public final boolean getPerdeuJogo() {
+        return perdeuJogo;
     }
 
     /**
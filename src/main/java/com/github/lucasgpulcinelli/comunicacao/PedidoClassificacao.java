@@ -0,0 +1,35 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.Serializable;
+
+/**
+ * PedidoClassificacao é enviado por um jogador no lugar de uma {@link Acao}
+ * depois de ver o fim do jogo, caso a capacidade {@link Saudacao#PLACAR} tenha
+ * sido negociada. O servidor responde com uma {@link Classificacao} antes de
+ * qualquer outra mensagem.
+ *
+ * @see ConexaoCliente#pedirClassificacao
+ */
+public final class PedidoClassificacao implements Serializable {
+    /** versão da forma serializada */
+    private static final long serialVersionUID = 1L;
+
+    /** quantas das maiores scores são pedidas */
+    private final int quantidade;
+
+    /**
+     * Cria um novo pedido.
+     *
+     * @param quantidade quantas das maiores scores são pedidas
+     */
+    public PedidoClassificacao(int quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    /**
+     * @return quantas das maiores scores são pedidas
+     */
+    public int getQuantidade() {
+        return quantidade;
+    }
+}
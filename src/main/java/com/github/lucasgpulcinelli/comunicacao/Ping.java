@@ -0,0 +1,61 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.Serializable;
+
+/**
+ * Ping é enviado periodicamente pelo servidor a um jogador, antes de um
+ * estado, e deve ser devolvido pelo cliente assim que for lido. O tempo até a
+ * volta é o tempo de ida e volta da rede, sem contar a decodificação e o
+ * processamento do estado.
+ *
+ * O ping também leva o último tempo de ida e volta medido pelo servidor, para
+ * que o cliente possa mostrá-lo.
+ *
+ * @see Telemetria
+ */
+public final class Ping implements Serializable {
+    /** versão da forma serializada */
+    private static final long serialVersionUID = 1L;
+
+    /** número do ping na conexão */
+    private final long numero;
+    /** momento do envio, em System.nanoTime() do servidor */
+    private final long momento;
+    /** último tempo de ida e volta medido, em nanossegundos, ou -1 */
+    private final long rttAnterior;
+
+    /**
+     * Cria um novo ping.
+     *
+     * @param numero      número do ping na conexão
+     * @param momento     momento do envio, em System.nanoTime() do servidor
+     * @param rttAnterior último tempo de ida e volta medido, ou -1
+     */
+    public Ping(long numero, long momento, long rttAnterior) {
+        this.numero = numero;
+        this.momento = momento;
+        this.rttAnterior = rttAnterior;
+    }
+
+    /**
+     * @return o número do ping na conexão
+     */
+    public long getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return o momento do envio, em System.nanoTime() do servidor
+     */
+    public long getMomento() {
+        return momento;
+    }
+
+    /**
+     * @return o último tempo de ida e volta medido pelo servidor, em
+     *         nanossegundos, ou -1 caso nenhum tenha sido medido
+     */
+    public long getRttAnterior() {
+        return rttAnterior;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * SaidaComprimida é uma stream de saída que, depois de ativada, comprime tudo
+ * o que é escrito nela com {@link Deflater}, sendo lida do outro lado por uma
+ * {@link EntradaComprimida}.
+ *
+ * Antes de ser ativada, a stream somente repassa os bytes, o que permite que
+ * a compressão seja negociada na própria conexão. Depois de ativada, cada
+ * flush() termina um bloco comprimido (SYNC_FLUSH), então cada estado enviado
+ * pode ser lido assim que chega, mas todos os estados fazem parte de uma única
+ * stream comprimida: como estados consecutivos são quase iguais, o estado
+ * anterior funciona como dicionário para o próximo.
+ *
+ * @see EntradaComprimida
+ */
+public class SaidaComprimida extends FilterOutputStream {
+    /** nível de compressão usado pelo servidor */
+    public static final int NIVEL_PADRAO = Deflater.BEST_SPEED;
+
+    /** o compressor, usado somente depois de ativado */
+    private final Deflater deflater;
+    /** buffer para a saída do compressor */
+    private final byte[] buffer = new byte[8192];
+    /** se a compressão já foi ativada */
+    private boolean ativa = false;
+    /** tempo gasto comprimindo, em nanossegundos */
+    private long nanosCompressao = 0;
+
+    /**
+     * Cria uma nova saída comprimida, ainda não ativada.
+     *
+     * @param out   a stream onde os bytes comprimidos são escritos
+     * @param nivel nível de compressão do {@link Deflater}
+     */
+    public SaidaComprimida(OutputStream out, int nivel) {
+        super(out);
+        deflater = new Deflater(nivel);
+    }
+
+    /**
+     * ativar faz com que tudo o que for escrito a partir de agora seja
+     * comprimido.
+     */
+    public void ativar() {
+        ativa = true;
+    }
+
+    /**
+     * @return se a compressão foi ativada
+     */
+    public boolean getAtiva() {
+        return ativa;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!ativa) {
+            out.write(b, off, len);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            out.write(buffer, 0, n);
+        }
+        nanosCompressao += System.nanoTime() - inicio;
+    }
+
+    /**
+     * flush termina o bloco comprimido atual, para que tudo o que foi escrito
+     * até agora possa ser descomprimido do outro lado.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (ativa) {
+            long inicio = System.nanoTime();
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, n);
+            } while (n == buffer.length);
+            nanosCompressao += System.nanoTime() - inicio;
+        }
+        out.flush();
+    }
+
+    /**
+     * @return quantos bytes foram escritos para serem comprimidos
+     */
+    public long getBytesOriginais() {
+        return deflater.getBytesRead();
+    }
+
+    /**
+     * @return quantos bytes comprimidos foram gerados
+     */
+    public long getBytesComprimidos() {
+        return deflater.getBytesWritten();
+    }
+
+    /**
+     * @return o tempo gasto comprimindo, em nanossegundos
+     */
+    public long getNanosCompressao() {
+        return nanosCompressao;
+    }
+
+    /**
+     * terminar libera a memória do compressor; a stream não pode mais ser usada
+     * depois disso.
+     */
+    public void terminar() {
+        deflater.end();
+    }
+}
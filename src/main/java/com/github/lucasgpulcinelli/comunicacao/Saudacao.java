@@ -0,0 +1,227 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Saudacao é a primeira mensagem de cada lado de uma conexão, em um formato
+ * binário fixo, escrita antes de qualquer stream de objetos.
+ *
+ * O cliente envia um pedido com a versão do protocolo que fala, as
+ * capacidades que implementa e o token da sua sessão (0 em uma conexão nova).
+ * O servidor responde com a versão e as capacidades que serão usadas (a menor
+ * versão e as capacidades que os dois lados implementam), o id do jogador, o
+ * token da sessão, a taxa de ticks da lógica de jogo e o tick atual.
+ *
+ * Assim, um novo formato pode ser ligado aos poucos: o servidor só o usa com
+ * clientes que o anunciaram, e clientes antigos continuam funcionando. Uma
+ * versão 0 na resposta significa que o servidor não fala a versão do cliente.
+ *
+ * <pre>
+ * pedido:   int mágica, short versão, int capacidades, long token
+ * resposta: int mágica, short versão, int capacidades, byte jogador,
+ *           long token, short ticks por segundo, long tick
+ * </pre>
+ *
+ * @see ConexaoCliente
+ * @see servidor.Recepcionista
+ */
+public final class Saudacao {
+    /** "SIMP", identifica uma conexão do Space Invaders Multiplayer */
+    public static final int MAGICA = 0x53494d50;
+    /** versão do protocolo implementada por este código */
+    public static final short VERSAO = 1;
+    /** versão mais antiga do protocolo que o servidor ainda aceita */
+    public static final short VERSAO_MINIMA = 1;
+
+    /** estados codificados em um formato binário próprio */
+    public static final int CODEC_BINARIO = 1;
+    /** estados enviados como diferenças do estado anterior */
+    public static final int DELTA = 1 << 1;
+    /** estados comprimidos, veja {@link SaidaComprimida} */
+    public static final int COMPRESSAO = 1 << 2;
+    /** o cliente interpola os personagens entre dois estados */
+    public static final int INTERPOLACAO = 1 << 3;
+    /** estados enviados por UDP */
+    public static final int UDP = 1 << 4;
+    /** o servidor guarda um placar e o envia no fim do jogo, veja {@link Classificacao} */
+    public static final int PLACAR = 1 << 5;
+
+    private final short versao;
+    private final int capacidades;
+    private final int jogador;
+    private final long token;
+    private final int ticksPorSegundo;
+    private final long tick;
+
+    private Saudacao(short versao, int capacidades, int jogador, long token, int ticksPorSegundo,
+            long tick) {
+        this.versao = versao;
+        this.capacidades = capacidades;
+        this.jogador = jogador;
+        this.token = token;
+        this.ticksPorSegundo = ticksPorSegundo;
+        this.tick = tick;
+    }
+
+    /**
+     * pedido cria o pedido de um cliente com a versão deste código.
+     *
+     * @param capacidades as capacidades que o cliente implementa
+     * @param token       o token da sessão, ou 0 em uma conexão nova
+     * @return o pedido
+     */
+    public static Saudacao pedido(int capacidades, long token) {
+        return new Saudacao(VERSAO, capacidades, -1, token, 0, 0);
+    }
+
+    /**
+     * responder cria a resposta do servidor a este pedido, com a menor versão e
+     * as capacidades em comum.
+     *
+     * @param capacidadesServidor as capacidades que o servidor implementa
+     * @param jogador             o id do jogador da conexão
+     * @param token               o token da sessão, ou 0 para espectadores
+     * @param ticksPorSegundo     a taxa de ticks da lógica de jogo
+     * @param tick                o tick atual
+     * @return a resposta
+     */
+    public Saudacao responder(int capacidadesServidor, int jogador, long token, int ticksPorSegundo,
+            long tick) {
+        return new Saudacao((short) Math.min(versao, VERSAO), capacidades & capacidadesServidor, jogador,
+                token, ticksPorSegundo, tick);
+    }
+
+    /**
+     * recusar cria a resposta do servidor a um pedido com uma versão que ele não
+     * fala mais.
+     *
+     * @return a resposta
+     */
+    public static Saudacao recusar() {
+        return new Saudacao((short) 0, 0, -1, 0, 0, 0);
+    }
+
+    /**
+     * escreverPedido escreve esta saudação como o pedido de um cliente.
+     *
+     * @param out onde o pedido é escrito
+     * @throws IOException caso a escrita falhe
+     */
+    public void escreverPedido(DataOutput out) throws IOException {
+        out.writeInt(MAGICA);
+        out.writeShort(versao);
+        out.writeInt(capacidades);
+        out.writeLong(token);
+    }
+
+    /**
+     * lerPedido lê o pedido de um cliente.
+     *
+     * @param in de onde o pedido é lido
+     * @return o pedido
+     * @throws IOException caso a leitura falhe ou a conexão não seja de um
+     *                     cliente do jogo
+     */
+    public static Saudacao lerPedido(DataInput in) throws IOException {
+        if (in.readInt() != MAGICA) {
+            throw new IOException("a conexão não é de um cliente do jogo");
+        }
+        short versao = in.readShort();
+        int capacidades = in.readInt();
+        long token = in.readLong();
+        return new Saudacao(versao, capacidades, -1, token, 0, 0);
+    }
+
+    /**
+     * escreverResposta escreve esta saudação como a resposta do servidor.
+     *
+     * @param out onde a resposta é escrita
+     * @throws IOException caso a escrita falhe
+     */
+    public void escreverResposta(DataOutput out) throws IOException {
+        out.writeInt(MAGICA);
+        out.writeShort(versao);
+        out.writeInt(capacidades);
+        out.writeByte(jogador);
+        out.writeLong(token);
+        out.writeShort(ticksPorSegundo);
+        out.writeLong(tick);
+    }
+
+    /**
+     * lerResposta lê a resposta do servidor.
+     *
+     * @param in de onde a resposta é lida
+     * @return a resposta
+     * @throws IOException caso a leitura falhe, a conexão não seja com um
+     *                     servidor do jogo ou o servidor recuse a versão
+     */
+    public static Saudacao lerResposta(DataInput in) throws IOException {
+        if (in.readInt() != MAGICA) {
+            throw new IOException("o servidor não é um servidor do jogo");
+        }
+        short versao = in.readShort();
+        if (versao == 0) {
+            throw new IOException("o servidor não aceita a versão " + VERSAO + " do protocolo");
+        }
+        int capacidades = in.readInt();
+        int jogador = in.readByte();
+        long token = in.readLong();
+        int ticksPorSegundo = in.readShort();
+        long tick = in.readLong();
+        return new Saudacao(versao, capacidades, jogador, token, ticksPorSegundo, tick);
+    }
+
+    /**
+     * @return a versão do protocolo
+     */
+    public short getVersao() {
+        return versao;
+    }
+
+    /**
+     * @return as capacidades, como uma máscara de bits
+     */
+    public int getCapacidades() {
+        return capacidades;
+    }
+
+    /**
+     * @param capacidade uma das capacidades, como {@link COMPRESSAO}
+     * @return se a capacidade está presente
+     */
+    public boolean possui(int capacidade) {
+        return (capacidades & capacidade) != 0;
+    }
+
+    /**
+     * @return o id do jogador da conexão, somente na resposta
+     */
+    public int getJogador() {
+        return jogador;
+    }
+
+    /**
+     * @return o token da sessão
+     */
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * @return a taxa de ticks da lógica de jogo, somente na resposta
+     */
+    public int getTicksPorSegundo() {
+        return ticksPorSegundo;
+    }
+
+    /**
+     * @return o tick da lógica de jogo quando a conexão foi aceita, somente na
+     *         resposta
+     */
+    public long getTick() {
+        return tick;
+    }
+}
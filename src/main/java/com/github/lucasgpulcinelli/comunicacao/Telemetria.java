@@ -0,0 +1,244 @@
+package com.github.lucasgpulcinelli.comunicacao;
+
+/**
+ * Telemetria guarda as medidas de saúde de uma conexão: tempo de ida e volta
+ * (pelos {@link Ping}s), bytes enviados e recebidos, taxa de cada direção,
+ * tempo de envio de cada estado e jitter da chegada de mensagens (ações no
+ * servidor, estados no cliente).
+ *
+ * Os métodos registrar* devem ser chamados somente pela thread da conexão, e
+ * os valores são publicados em campos volatile; assim qualquer outra thread
+ * pode ler as medidas sem travas e sem atrasar a conexão, o que permite
+ * deixar a telemetria sempre ligada.
+ */
+public class Telemetria {
+    /** peso de cada nova amostra nas médias móveis */
+    private static final double PESO = 0.1;
+    /** período mínimo para o cálculo das taxas de bytes por segundo */
+    private static final long JANELA_TAXA = 1_000_000_000L;
+
+    private volatile long rtt = -1;
+    private volatile double rttMedio = -1;
+    private volatile long rttMaximo = -1;
+    private volatile long pings = 0;
+
+    private volatile long bytesEnviados = 0;
+    private volatile long bytesRecebidos = 0;
+    private volatile double taxaEnvio = 0;
+    private volatile double taxaRecebimento = 0;
+
+    private volatile double envioMedio = -1;
+    private volatile long envioMaximo = -1;
+    private volatile long envios = 0;
+
+    private volatile double jitter = 0;
+    private volatile long chegadas = 0;
+
+    /** estado usado somente pela thread da conexão */
+    private long chegadaAnterior = -1;
+    private long intervaloAnterior = -1;
+    private long inicioJanela = System.nanoTime();
+    private long enviadosJanela = 0;
+    private long recebidosJanela = 0;
+
+    /**
+     * media atualiza uma média móvel exponencial.
+     *
+     * @param media   média atual, ou negativa caso não haja amostras
+     * @param amostra nova amostra
+     * @return a nova média
+     */
+    private static double media(double media, double amostra) {
+        return (media < 0) ? amostra : media + PESO * (amostra - media);
+    }
+
+    /**
+     * @param nanos tempo de ida e volta de um ping, em nanossegundos
+     */
+    public void registrarRtt(long nanos) {
+        rtt = nanos;
+        rttMedio = media(rttMedio, nanos);
+        rttMaximo = Math.max(rttMaximo, nanos);
+        pings++;
+    }
+
+    /**
+     * @param nanos quanto tempo o envio de um estado levou, em nanossegundos
+     */
+    public void registrarEnvio(long nanos) {
+        envioMedio = media(envioMedio, nanos);
+        envioMaximo = Math.max(envioMaximo, nanos);
+        envios++;
+    }
+
+    /**
+     * registrarChegada registra o momento em que uma mensagem chegou, calculando
+     * o jitter como a variação entre intervalos consecutivos de chegada.
+     *
+     * @param momento o momento da chegada, em System.nanoTime()
+     */
+    public void registrarChegada(long momento) {
+        if (chegadaAnterior >= 0) {
+            long intervalo = momento - chegadaAnterior;
+            if (intervaloAnterior >= 0) {
+                jitter = media(jitter, Math.abs(intervalo - intervaloAnterior));
+            }
+            intervaloAnterior = intervalo;
+        }
+        chegadaAnterior = momento;
+        chegadas++;
+    }
+
+    /**
+     * registrarBytes atualiza o total de bytes da conexão, recalculando as taxas
+     * a cada segundo.
+     *
+     * @param enviados  total de bytes enviados até agora
+     * @param recebidos total de bytes recebidos até agora
+     */
+    public void registrarBytes(long enviados, long recebidos) {
+        bytesEnviados = enviados;
+        bytesRecebidos = recebidos;
+
+        long agora = System.nanoTime();
+        long passado = agora - inicioJanela;
+        if (passado >= JANELA_TAXA) {
+            taxaEnvio = (enviados - enviadosJanela) * 1e9 / passado;
+            taxaRecebimento = (recebidos - recebidosJanela) * 1e9 / passado;
+            inicioJanela = agora;
+            enviadosJanela = enviados;
+            recebidosJanela = recebidos;
+        }
+    }
+
+    /**
+     * @param rtt último tempo de ida e volta, informado pelo outro lado da conexão
+     */
+    public void registrarRttRemoto(long rtt) {
+        if (rtt >= 0) {
+            registrarRtt(rtt);
+        }
+    }
+
+    /**
+     * @return o último tempo de ida e volta, em nanossegundos, ou -1
+     */
+    public long getRtt() {
+        return rtt;
+    }
+
+    /**
+     * @return a média móvel do tempo de ida e volta, em nanossegundos, ou -1
+     */
+    public double getRttMedio() {
+        return rttMedio;
+    }
+
+    /**
+     * @return o maior tempo de ida e volta medido, em nanossegundos, ou -1
+     */
+    public long getRttMaximo() {
+        return rttMaximo;
+    }
+
+    /**
+     * @return quantos tempos de ida e volta foram medidos
+     */
+    public long getPings() {
+        return pings;
+    }
+
+    /**
+     * @return o total de bytes enviados
+     */
+    public long getBytesEnviados() {
+        return bytesEnviados;
+    }
+
+    /**
+     * @return o total de bytes recebidos
+     */
+    public long getBytesRecebidos() {
+        return bytesRecebidos;
+    }
+
+    /**
+     * @return a taxa de envio no último segundo, em bytes por segundo
+     */
+    public double getTaxaEnvio() {
+        return taxaEnvio;
+    }
+
+    /**
+     * @return a taxa de recebimento no último segundo, em bytes por segundo
+     */
+    public double getTaxaRecebimento() {
+        return taxaRecebimento;
+    }
+
+    /**
+     * @return a média móvel do tempo de envio de um estado, em nanossegundos,
+     *         ou -1
+     */
+    public double getEnvioMedio() {
+        return envioMedio;
+    }
+
+    /**
+     * @return o maior tempo de envio de um estado, em nanossegundos, ou -1
+     */
+    public long getEnvioMaximo() {
+        return envioMaximo;
+    }
+
+    /**
+     * @return quantos estados foram enviados
+     */
+    public long getEnvios() {
+        return envios;
+    }
+
+    /**
+     * @return a média móvel do jitter de chegada, em nanossegundos
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return quantas mensagens chegaram
+     */
+    public long getChegadas() {
+        return chegadas;
+    }
+
+    /**
+     * @return um resumo curto, em uma linha, para ser mostrado sobre a tela de
+     *         jogo
+     */
+    public String resumoCurto() {
+        return String.format("rtt %s jit %.1fms %.0fK/s", formatarMs(rtt), jitter / 1e6,
+                taxaRecebimento / 1024);
+    }
+
+    /**
+     * @return um resumo completo das medidas
+     */
+    @Override
+    public String toString() {
+        return String.format("rtt %s (média %s, máx %s), envio %s (máx %s), jitter %.2fms, "
+                + "enviado %.1f KiB (%.1f KiB/s), recebido %.1f KiB (%.1f KiB/s)",
+                formatarMs(rtt), formatarMs((long) rttMedio), formatarMs(rttMaximo),
+                formatarMs((long) envioMedio), formatarMs(envioMaximo), jitter / 1e6,
+                bytesEnviados / 1024.0, taxaEnvio / 1024, bytesRecebidos / 1024.0,
+                taxaRecebimento / 1024);
+    }
+
+    /**
+     * @param nanos um tempo em nanossegundos, ou negativo caso não medido
+     * @return o tempo em milissegundos, ou "?"
+     */
+    private static String formatarMs(long nanos) {
+        return (nanos < 0) ? "?" : String.format("%.1fms", nanos / 1e6);
+    }
+}
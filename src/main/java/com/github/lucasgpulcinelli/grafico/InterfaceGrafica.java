@@ -2,6 +2,7 @@ package com.github.lucasgpulcinelli.grafico;
 
 import java.util.List;
 
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
 import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
 
 /**
@@ -40,7 +41,16 @@ public interface InterfaceGrafica {
     public void printSplashScreen();
 
     /**
-     * printPerdeuJogo desenha a tela para falar que um jogador perdeu o jogo.
+     * printPerdeuJogo desenha a tela para falar que um jogador perdeu o jogo,
+     * com o placar do servidor caso ele tenha sido recebido.
+     * @param classificacao as maiores scores e a posição do jogador, ou null
      */
-    public void printPerdeuJogo();
+    public void printPerdeuJogo(Classificacao classificacao);
+
+    /**
+     * setTelemetria define um texto curto com a saúde da conexão, mostrado sobre
+     * a tela de jogo a partir do próximo frame desenhado.
+     * @param telemetria o texto a ser mostrado, ou null para não mostrar nada
+     */
+    public void setTelemetria(String telemetria);
 }
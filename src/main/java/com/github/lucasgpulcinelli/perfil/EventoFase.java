@@ -0,0 +1,24 @@
+package com.github.lucasgpulcinelli.perfil;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * EventoFase é o evento do JDK Flight Recorder emitido por cada trecho medido
+ * com {@link Perfil#abrir(Fase)}; a duração do evento é a duração da fase.
+ */
+@Name("spaceinvaders.Fase")
+@Label("Fase do tick")
+@Category("Space Invaders")
+@Description("Uma fase de um tick do servidor")
+@StackTrace(false)
+class EventoFase extends jdk.jfr.Event {
+    @Label("Fase")
+    String fase;
+
+    @Label("Tick")
+    long tick;
+}
@@ -0,0 +1,39 @@
+package com.github.lucasgpulcinelli.perfil;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * EventoTick é o evento do JDK Flight Recorder emitido a cada tick, com a
+ * duração do tick inteiro e os totais das fases agregadas.
+ */
+@Name("spaceinvaders.Tick")
+@Label("Tick")
+@Category("Space Invaders")
+@Description("Um tick do servidor, com o tempo total das fases medidas por personagem")
+@StackTrace(false)
+class EventoTick extends jdk.jfr.Event {
+    @Label("Tick")
+    long tick;
+
+    @Label("Personagens")
+    int personagens;
+
+    @Label("Tempo de colisão")
+    @Timespan(Timespan.NANOSECONDS)
+    long colisao;
+
+    @Label("Checagens de colisão")
+    int colisoes;
+
+    @Label("Tempo de mortes")
+    @Timespan(Timespan.NANOSECONDS)
+    long mortes;
+
+    @Label("Checagens de morte")
+    int checagensMorte;
+}
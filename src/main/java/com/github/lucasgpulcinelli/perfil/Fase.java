@@ -0,0 +1,71 @@
+package com.github.lucasgpulcinelli.perfil;
+
+/**
+ * Fase é cada parte medida de um tick do servidor.
+ *
+ * As fases agregadas acontecem uma vez por personagem a cada tick, e por isso
+ * não são medidas como trechos separados: somente o tempo total e o número de
+ * chamadas de cada uma são guardados por tick.
+ *
+ * @see Perfil
+ */
+public enum Fase {
+    /** o tick inteiro, da aplicação das entradas até o envio aos espectadores */
+    TICK("tick", false),
+
+    /** aplicação das entradas dos jogadores */
+    ENTRADAS("entradas", false),
+
+    /** frame de todos os personagens */
+    FRAME("frame", false),
+
+    /** movimento dos inimigos e fim do frame */
+    INIMIGOS("inimigos", false),
+
+    /** gravação da partida, com o hash do estado */
+    GRAVACAO("gravação", false),
+
+    /** registro do quadro no arquivo de quadros */
+    QUADROS("quadros", false),
+
+    /** codificação do estado para os espectadores */
+    TRANSMISSAO("transmissão", false),
+
+    /** espera pelas travas dos personagens e do estado de jogo */
+    TRAVA("trava", false),
+
+    /** envio de um estado a um jogador */
+    ENVIO("envio", false),
+
+    /** checagem e tratamento de colisões, uma vez por personagem */
+    COLISAO("colisão", true),
+
+    /** retirada dos personagens mortos, uma vez por personagem */
+    MORTES("mortes", true);
+
+    private final String nome;
+    private final boolean agregada;
+
+    /**
+     * @param nome     nome da fase nos eventos e no trace
+     * @param agregada se a fase é medida somente pelo total de cada tick
+     */
+    private Fase(String nome, boolean agregada) {
+        this.nome = nome;
+        this.agregada = agregada;
+    }
+
+    /**
+     * @return o nome da fase nos eventos e no trace
+     */
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * @return se a fase é medida somente pelo total de cada tick
+     */
+    public boolean getAgregada() {
+        return agregada;
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.lucasgpulcinelli.perfil;
+
+import java.io.File;
+import java.io.IOException;
+
+import jdk.jfr.EventType;
+
+/**
+ * Perfil mede quanto tempo cada {@link Fase} de um tick do servidor leva,
+ * para que um tick lento possa ser explicado: colisões, personagens morrendo,
+ * os inimigos, a transmissão ou a espera pelas travas dos jogadores.
+ *
+ * Cada medida é emitida como um evento do JDK Flight Recorder
+ * ({@link EventoFase} e {@link EventoTick}), que podem ser vistos no JDK
+ * Mission Control ao rodar o servidor com -XX:StartFlightRecording. Além
+ * disso, com {@link gravarTrace}, os últimos ticks são guardados e podem ser
+ * salvos como um trace do Chrome com {@link exportarTrace}.
+ *
+ * As fases são medidas somente quando o JFR está gravando ou o trace está
+ * ligado; caso contrário, cada medida custa somente a leitura de uma variável.
+ *
+ * {@link inicioTick}, {@link fimTick} e as fases agregadas devem ser usados
+ * somente pela thread da lógica de jogo; {@link abrir} pode ser usado por
+ * qualquer thread.
+ */
+public final class Perfil {
+    /**
+     * Escopo é um trecho aberto com {@link Perfil#abrir(Fase)}, que termina ao
+     * ser fechado; pode ser usado com try-with-resources. Como o escopo
+     * normalmente não é usado dentro do try, os métodos que o fazem suprimem o
+     * aviso "try" do compilador.
+     */
+    public static final class Escopo implements AutoCloseable {
+        private final Fase fase;
+        private final EventoFase evento;
+        private final long tick;
+        private final long inicio;
+
+        /**
+         * @param fase   a fase medida, ou null para um escopo que não mede nada
+         * @param tick   o tick em que a fase acontece
+         * @param inicio o início da fase, em System.nanoTime()
+         */
+        private Escopo(Fase fase, long tick, long inicio) {
+            this.fase = fase;
+            this.tick = tick;
+            this.inicio = inicio;
+            if (fase == null) {
+                this.evento = null;
+            } else {
+                this.evento = new EventoFase();
+                evento.begin();
+            }
+        }
+
+        /**
+         * close termina a fase, emitindo o evento e guardando o trecho.
+         */
+        @Override
+        public void close() {
+            if (fase == null) {
+                return;
+            }
+
+            long duracao = System.nanoTime() - inicio;
+            evento.fase = fase.getNome();
+            evento.tick = tick;
+            evento.commit();
+
+            TraceChrome t = trace;
+            if (t != null) {
+                t.adicionar(fase, tick, inicio, duracao);
+            }
+        }
+    }
+
+    /** escopo usado quando nada está sendo medido */
+    private static final Escopo NENHUM = new Escopo(null, -1, 0);
+
+    /**
+     * se as fases estão sendo medidas; decidido no início de cada tick e mantido
+     * até o próximo, para que as fases das outras threads entre os ticks também
+     * sejam medidas
+     */
+    private static volatile boolean medindo = false;
+    /** o tick atual */
+    private static volatile long tickAtual = -1;
+    /** o trace dos últimos ticks, ou null caso desligado */
+    private static volatile TraceChrome trace = null;
+
+    /** tipo do evento do tick, para saber se ele está sendo gravado sem criá-lo */
+    private static final EventType TIPO_TICK = EventType.getEventType(EventoTick.class);
+
+    /**
+     * estado do tick atual, usado somente pela thread da lógica de jogo; um
+     * evento emitido não pode ser reutilizado, então cada tick medido cria o
+     * seu
+     */
+    private static EventoTick eventoTick = null;
+    private static long inicioTick = 0;
+    private static final long[] nanosAgregados = new long[Fase.values().length];
+    private static final int[] chamadasAgregadas = new int[Fase.values().length];
+
+    /** classe somente com métodos estáticos */
+    private Perfil() {
+    }
+
+    /**
+     * gravarTrace liga o trace, guardando os trechos dos últimos ticks.
+     *
+     * @param ticks quantos ticks são guardados
+     */
+    public static void gravarTrace(int ticks) {
+        trace = new TraceChrome(ticks);
+    }
+
+    /**
+     * exportarTrace salva os últimos ticks guardados como um trace do Chrome.
+     *
+     * @param arquivo o arquivo JSON a ser escrito
+     * @throws IOException caso a escrita falhe
+     * @throws IllegalStateException caso o trace não tenha sido ligado
+     */
+    public static void exportarTrace(File arquivo) throws IOException {
+        TraceChrome t = trace;
+        if (t == null) {
+            throw new IllegalStateException("o trace não foi ligado");
+        }
+        t.escrever(arquivo);
+    }
+
+    /**
+     * inicioTick começa a medida de um novo tick.
+     *
+     * @param tick o número do tick
+     */
+    public static void inicioTick(long tick) {
+        tickAtual = tick;
+        medindo = trace != null || TIPO_TICK.isEnabled();
+        if (!medindo) {
+            eventoTick = null;
+            return;
+        }
+
+        for (int i = 0; i < nanosAgregados.length; i++) {
+            nanosAgregados[i] = 0;
+            chamadasAgregadas[i] = 0;
+        }
+        eventoTick = new EventoTick();
+        eventoTick.begin();
+        inicioTick = System.nanoTime();
+    }
+
+    /**
+     * fimTick termina a medida do tick atual, emitindo o evento do tick com os
+     * totais das fases agregadas.
+     *
+     * @param personagens quantos personagens existem no fim do tick
+     */
+    public static void fimTick(int personagens) {
+        EventoTick e = eventoTick;
+        if (e == null) {
+            return;
+        }
+        long fim = System.nanoTime();
+        long tick = tickAtual;
+
+        e.tick = tick;
+        e.personagens = personagens;
+        e.colisao = nanosAgregados[Fase.COLISAO.ordinal()];
+        e.colisoes = chamadasAgregadas[Fase.COLISAO.ordinal()];
+        e.mortes = nanosAgregados[Fase.MORTES.ordinal()];
+        e.checagensMorte = chamadasAgregadas[Fase.MORTES.ordinal()];
+        e.commit();
+        eventoTick = null;
+
+        TraceChrome t = trace;
+        if (t != null) {
+            t.adicionar(Fase.TICK, tick, inicioTick, fim - inicioTick);
+
+            long posicao = inicioTick;
+            for (Fase f : Fase.values()) {
+                if (f.getAgregada() && chamadasAgregadas[f.ordinal()] > 0) {
+                    t.adicionarAgregada(f, tick, posicao, nanosAgregados[f.ordinal()],
+                            chamadasAgregadas[f.ordinal()]);
+                    posicao += nanosAgregados[f.ordinal()];
+                }
+            }
+            t.terminarTick(tick);
+        }
+    }
+
+    /**
+     * abrir começa a medida de uma fase, que termina quando o escopo retornado
+     * for fechado.
+     *
+     * @param fase a fase
+     * @return o escopo da fase
+     */
+    public static Escopo abrir(Fase fase) {
+        if (!medindo) {
+            return NENHUM;
+        }
+        return new Escopo(fase, tickAtual, System.nanoTime());
+    }
+
+    /**
+     * agora marca o início de uma fase agregada.
+     *
+     * @return o momento atual, ou 0 caso nada esteja sendo medido
+     */
+    public static long agora() {
+        return medindo ? System.nanoTime() : 0;
+    }
+
+    /**
+     * acumular soma o tempo desde {@link agora} ao total de uma fase agregada
+     * no tick atual.
+     *
+     * @param fase   a fase agregada
+     * @param inicio o valor retornado por agora
+     */
+    public static void acumular(Fase fase, long inicio) {
+        if (inicio == 0 || !medindo) {
+            return;
+        }
+        nanosAgregados[fase.ordinal()] += System.nanoTime() - inicio;
+        chamadasAgregadas[fase.ordinal()]++;
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.lucasgpulcinelli.perfil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * TraceChrome guarda os trechos medidos nos últimos ticks e os escreve no
+ * formato trace_event do Chrome, que pode ser aberto em chrome://tracing ou
+ * no Perfetto para ver cada tick como um gráfico de chamas.
+ *
+ * Cada thread vira uma linha do trace; as fases agregadas de cada tick são
+ * colocadas em uma linha própria, uma depois da outra a partir do início do
+ * tick, já que somente o seu total é conhecido.
+ *
+ * Pode ser usado por várias threads ao mesmo tempo.
+ */
+class TraceChrome {
+    /** id da linha das fases agregadas */
+    private static final long LINHA_AGREGADAS = 0;
+
+    /**
+     * Trecho é uma fase medida em uma thread.
+     */
+    private static final class Trecho {
+        private final String nome;
+        private final long tick;
+        private final long inicio;
+        private final long duracao;
+        private final long thread;
+        /** número de chamadas de uma fase agregada, ou -1 */
+        private final int chamadas;
+
+        private Trecho(String nome, long tick, long inicio, long duracao, long thread, int chamadas) {
+            this.nome = nome;
+            this.tick = tick;
+            this.inicio = inicio;
+            this.duracao = duracao;
+            this.thread = thread;
+            this.chamadas = chamadas;
+        }
+    }
+
+    /** quantos ticks são guardados */
+    private final int ticks;
+    private final ArrayDeque<Trecho> trechos = new ArrayDeque<>();
+    private final Map<Long, String> nomesThreads = new LinkedHashMap<>();
+
+    /**
+     * Cria um novo trace vazio.
+     *
+     * @param ticks quantos dos últimos ticks são guardados
+     */
+    TraceChrome(int ticks) {
+        this.ticks = ticks;
+        nomesThreads.put(LINHA_AGREGADAS, "fases agregadas");
+    }
+
+    /**
+     * adicionar guarda um trecho medido pela thread atual.
+     *
+     * @param fase    a fase medida
+     * @param tick    o tick em que a fase aconteceu
+     * @param inicio  o início do trecho, em System.nanoTime()
+     * @param duracao a duração do trecho, em nanossegundos
+     */
+    synchronized void adicionar(Fase fase, long tick, long inicio, long duracao) {
+        Thread t = Thread.currentThread();
+        if (!nomesThreads.containsKey(t.threadId())) {
+            nomesThreads.put(t.threadId(), t.getName());
+        }
+        trechos.addLast(new Trecho(fase.getNome(), tick, inicio, duracao, t.threadId(), -1));
+    }
+
+    /**
+     * adicionarAgregada guarda o total de uma fase agregada em um tick.
+     *
+     * @param fase     a fase medida
+     * @param tick     o tick
+     * @param inicio   onde o trecho é colocado, em System.nanoTime()
+     * @param duracao  o tempo total da fase no tick, em nanossegundos
+     * @param chamadas quantas vezes a fase foi medida no tick
+     */
+    synchronized void adicionarAgregada(Fase fase, long tick, long inicio, long duracao, int chamadas) {
+        trechos.addLast(new Trecho(fase.getNome(), tick, inicio, duracao, LINHA_AGREGADAS, chamadas));
+    }
+
+    /**
+     * terminarTick descarta os trechos que ficaram mais antigos que os últimos
+     * ticks guardados.
+     *
+     * @param tick o tick que acabou de terminar
+     */
+    synchronized void terminarTick(long tick) {
+        while (!trechos.isEmpty() && trechos.peekFirst().tick <= tick - ticks) {
+            trechos.removeFirst();
+        }
+    }
+
+    /**
+     * escrever salva os trechos guardados em um arquivo JSON no formato
+     * trace_event.
+     *
+     * @param arquivo o arquivo
+     * @throws IOException caso a escrita falhe
+     */
+    synchronized void escrever(File arquivo) throws IOException {
+        long origem = trechos.isEmpty() ? 0 : trechos.peekFirst().inicio;
+
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(arquivo), StandardCharsets.UTF_8))) {
+            w.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+
+            boolean primeiro = true;
+            for (Map.Entry<Long, String> e : nomesThreads.entrySet()) {
+                if (!primeiro) {
+                    w.write(",\n");
+                }
+                primeiro = false;
+                w.write(String.format("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,"
+                        + "\"args\":{\"name\":\"%s\"}}", e.getKey(), escapar(e.getValue())));
+            }
+
+            for (Trecho t : trechos) {
+                w.write(",\n");
+                String args = (t.chamadas < 0) ? String.format("{\"tick\":%d}", t.tick)
+                        : String.format("{\"tick\":%d,\"chamadas\":%d}", t.tick, t.chamadas);
+                w.write(String.format(Locale.ROOT,
+                        "{\"name\":\"%s\",\"cat\":\"servidor\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,"
+                                + "\"pid\":1,\"tid\":%d,\"args\":%s}",
+                        escapar(t.nome), (t.inicio - origem) / 1e3, t.duracao / 1e3, t.thread, args));
+            }
+
+            w.write("\n]}\n");
+        }
+    }
+
+    /**
+     * @param s um texto
+     * @return o texto pronto para ficar entre aspas em JSON
+     */
+    private static String escapar(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
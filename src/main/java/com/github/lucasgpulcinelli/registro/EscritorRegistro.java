@@ -0,0 +1,194 @@
+package com.github.lucasgpulcinelli.registro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EscritorRegistro é a thread que escreve os fatos do {@link RegistroPartida}
+ * no disco.
+ *
+ * A thread da lógica de jogo só coloca cada registro em uma fila sem travas;
+ * o escritor esvazia a fila a cada {@link ESPERA} nanossegundos, escreve os
+ * registros em lotes no fim do segmento atual e força os dados para o disco
+ * quando {@link BYTES_POR_FSYNC} bytes ou {@link NANOS_POR_FSYNC} nanossegundos
+ * passaram desde o último fsync. Um segmento que passa de
+ * {@link TAMANHO_SEGMENTO} bytes é fechado e o próximo é criado; segmentos
+ * nunca são reescritos.
+ *
+ * Caso o disco não acompanhe, a fila é limitada a {@link MAXIMO_PENDENTES}
+ * registros, e os registros a mais são descartados e contados, em vez de
+ * atrasar um tick.
+ */
+class EscritorRegistro extends Thread {
+    /** tamanho a partir do qual um segmento é fechado */
+    static final long TAMANHO_SEGMENTO = 8L << 20;
+    /** bytes escritos sem fsync que forçam um fsync */
+    static final int BYTES_POR_FSYNC = 64 << 10;
+    /** tempo máximo que um registro escrito espera por um fsync */
+    static final long NANOS_POR_FSYNC = 1_000_000_000L;
+    /** tempo que o escritor dorme quando a fila está vazia */
+    static final long ESPERA = 10_000_000L;
+    /** número máximo de registros esperando na fila */
+    static final int MAXIMO_PENDENTES = 1 << 16;
+
+    private final ConcurrentLinkedQueue<Registro> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendentes = new AtomicInteger();
+    /** registros descartados com a fila cheia, contados pela thread da lógica de jogo */
+    private volatile long descartados = 0;
+    private volatile boolean encerrando = false;
+
+    private final Path diretorio;
+    private final long semente;
+    /**
+     * momento em que a partida começou, em milissegundos desde 1970; junto com
+     * a semente, identifica a partida de cada segmento
+     */
+    private final long inicio = System.currentTimeMillis();
+    /** lote de registros sendo escrito */
+    private final ByteBuffer lote = ByteBuffer.allocateDirect(BYTES_POR_FSYNC);
+
+    private FileChannel canal;
+    private int numeroSegmento;
+    private long tamanhoSegmento;
+
+    /**
+     * Cria um novo escritor, que continua a numeração dos segmentos que já
+     * existirem no diretório.
+     *
+     * @param diretorio o diretório dos segmentos
+     * @param semente   a semente da partida, escrita em cada segmento
+     * @throws IOException caso o diretório não possa ser lido
+     */
+    EscritorRegistro(Path diretorio, long semente) throws IOException {
+        super("registro-partida");
+        this.diretorio = diretorio;
+        this.semente = semente;
+
+        List<Path> existentes = LeitorRegistro.segmentos(diretorio);
+        numeroSegmento = existentes.isEmpty() ? 0
+                : LeitorRegistro.numeroSegmento(existentes.get(existentes.size() - 1));
+        abrirSegmento();
+
+        setDaemon(true);
+    }
+
+    /**
+     * adicionar coloca um registro na fila de escrita. Nunca bloqueia.
+     *
+     * @param r o registro
+     */
+    void adicionar(Registro r) {
+        if (pendentes.incrementAndGet() > MAXIMO_PENDENTES) {
+            pendentes.decrementAndGet();
+            descartados++;
+            return;
+        }
+        fila.offer(r);
+    }
+
+    /**
+     * @return quantos registros foram descartados por falta de espaço na fila
+     */
+    long getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * encerrar escreve e força para o disco tudo o que está na fila, esperando o
+     * escritor terminar por até um segundo.
+     */
+    void encerrar() {
+        encerrando = true;
+        LockSupport.unpark(this);
+        try {
+            join(1000);
+        } catch (InterruptedException e) {
+        }
+    }
+
+    /**
+     * abrirSegmento cria o próximo segmento e escreve o seu cabeçalho.
+     *
+     * @throws IOException caso o segmento não possa ser criado
+     */
+    private void abrirSegmento() throws IOException {
+        numeroSegmento++;
+        canal = FileChannel.open(diretorio.resolve(LeitorRegistro.nomeSegmento(numeroSegmento)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(LeitorRegistro.CABECALHO);
+        cabecalho.putInt(LeitorRegistro.MAGICA);
+        cabecalho.put((byte) LeitorRegistro.VERSAO);
+        cabecalho.putLong(semente);
+        cabecalho.putLong(inicio);
+        cabecalho.flip();
+        while (cabecalho.hasRemaining()) {
+            canal.write(cabecalho);
+        }
+        tamanhoSegmento = LeitorRegistro.CABECALHO;
+    }
+
+    /**
+     * run esvazia a fila em lotes até o servidor ser encerrado.
+     */
+    @Override
+    public void run() {
+        long ultimoFsync = System.nanoTime();
+        long semFsync = 0;
+
+        try {
+            while (true) {
+                // lido antes de esvaziar a fila, para que tudo o que foi registrado
+                // antes do encerramento seja escrito
+                boolean fim = encerrando;
+
+                Registro r;
+                while (lote.remaining() >= Registro.TAMANHO && (r = fila.poll()) != null) {
+                    pendentes.decrementAndGet();
+                    r.escrever(lote);
+                }
+
+                if (lote.position() > 0) {
+                    lote.flip();
+                    int escritos = lote.remaining();
+                    while (lote.hasRemaining()) {
+                        canal.write(lote);
+                    }
+                    lote.clear();
+                    semFsync += escritos;
+                    tamanhoSegmento += escritos;
+                }
+
+                long agora = System.nanoTime();
+                boolean rodar = tamanhoSegmento >= TAMANHO_SEGMENTO;
+                if (semFsync > 0 && (semFsync >= BYTES_POR_FSYNC || agora - ultimoFsync >= NANOS_POR_FSYNC
+                        || rodar || fim)) {
+                    canal.force(false);
+                    semFsync = 0;
+                    ultimoFsync = agora;
+                }
+                if (rodar) {
+                    canal.close();
+                    abrirSegmento();
+                }
+
+                if (fila.isEmpty()) {
+                    if (fim) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, ESPERA);
+                }
+            }
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Erro escrevendo o registro da partida: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.lucasgpulcinelli.registro;
+
+/**
+ * Fato é cada tipo de acontecimento da partida guardado pelo
+ * {@link RegistroPartida}.
+ *
+ * O ordinal é escrito nos arquivos do registro, então novos fatos só podem ser
+ * adicionados no final.
+ */
+public enum Fato {
+    /** um tiro de um jogador matou um personagem; o valor é a score ganha */
+    ABATE("abate"),
+
+    /** o canhão de um jogador foi destruído; o valor são as vidas restantes */
+    VIDA_PERDIDA("vida perdida"),
+
+    /** os jogadores ganharam um nível; o valor é o novo nível */
+    NIVEL_GANHO("nível ganho"),
+
+    /** a nave especial apareceu */
+    NAVE_ESPECIAL("nave especial");
+
+    private final String nome;
+
+    private Fato(String nome) {
+        this.nome = nome;
+    }
+
+    /**
+     * @return o nome do fato, como mostrado pelo {@link LeitorRegistro}
+     */
+    public String getNome() {
+        return nome;
+    }
+}
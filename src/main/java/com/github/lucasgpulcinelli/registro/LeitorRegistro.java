@@ -0,0 +1,279 @@
+package com.github.lucasgpulcinelli.registro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * LeitorRegistro lê os segmentos escritos pelo {@link RegistroPartida},
+ * imprimindo cada fato e um resumo de cada partida por jogador.
+ *
+ * O registro é um diretório com segmentos numerados
+ * ("eventos-000001.log", "eventos-000002.log", ...), lidos em ordem. Cada
+ * segmento começa com um cabeçalho (número mágico, versão, semente da
+ * partida e o momento em que a partida começou, em milissegundos desde
+ * 1970), seguido de registros de {@link Registro#TAMANHO} bytes. Caso o
+ * servidor tenha morrido no meio de uma escrita, o registro incompleto no
+ * final do último segmento é ignorado.
+ *
+ * A numeração dos segmentos continua entre execuções do servidor, então um
+ * diretório pode ter várias partidas; segmentos seguidos com a mesma semente
+ * e o mesmo início são da mesma partida, e cada partida tem o seu resumo. Na
+ * versão 1 do formato, o cabeçalho tinha o momento da criação do segmento, e
+ * as partidas são separadas somente pela semente.
+ *
+ * Uso: java com.github.lucasgpulcinelli.registro.LeitorRegistro diretorio
+ * [--resumo]
+ *
+ * @see RegistroPartida
+ */
+public final class LeitorRegistro {
+    /** número mágico no início de todo segmento ("SIRE") */
+    public static final int MAGICA = 0x53495245;
+    /** versão atual do formato */
+    public static final int VERSAO = 2;
+    /** tamanho do cabeçalho de cada segmento */
+    static final int CABECALHO = 4 + 1 + 8 + 8;
+
+    private static final String PREFIXO = "eventos-";
+    private static final String SUFIXO = ".log";
+
+    /** a partida de um segmento, lida do seu cabeçalho */
+    public static final class Cabecalho {
+        private final long semente;
+        /** início da partida, ou -1 em segmentos da versão 1 */
+        private final long inicio;
+
+        private Cabecalho(long semente, long inicio) {
+            this.semente = semente;
+            this.inicio = inicio;
+        }
+
+        /**
+         * @return a semente da partida
+         */
+        public long getSemente() {
+            return semente;
+        }
+
+        /**
+         * @return o momento em que a partida começou, em milissegundos desde
+         *         1970, ou -1 caso o segmento não o guarde
+         */
+        public long getInicio() {
+            return inicio;
+        }
+
+        /**
+         * @param outro o cabeçalho de outro segmento
+         * @return se os dois segmentos são da mesma partida
+         */
+        public boolean mesmaPartida(Cabecalho outro) {
+            return semente == outro.semente && inicio == outro.inicio;
+        }
+    }
+
+    /** Resumo soma os fatos de uma partida */
+    private static final class Resumo {
+        // índice 0 é usado para fatos sem jogador
+        private final int[] abates = new int[3];
+        private final int[] scores = new int[3];
+        private final int[] vidasPerdidas = new int[3];
+        private int niveis = 0;
+        private int naves = 0;
+        private long registros = 0;
+
+        /**
+         * @param r um fato da partida
+         */
+        void somar(Registro r) {
+            registros++;
+            int jogador = Math.max(0, Math.min(2, r.getJogador()));
+            switch (r.getFato()) {
+                case ABATE:
+                    abates[jogador]++;
+                    scores[jogador] += r.getValor();
+                    break;
+                case VIDA_PERDIDA:
+                    vidasPerdidas[jogador]++;
+                    break;
+                case NIVEL_GANHO:
+                    niveis++;
+                    break;
+                case NAVE_ESPECIAL:
+                    naves++;
+                    break;
+            }
+        }
+
+        /**
+         * imprimir mostra o resumo da partida.
+         *
+         * @param partida o cabeçalho da partida
+         */
+        void imprimir(Cabecalho partida) {
+            System.out.printf("partida com semente %d%s: %d fatos, %d níveis ganhos, %d naves especiais\n",
+                    partida.semente,
+                    (partida.inicio < 0) ? "" : String.format(", iniciada em %tF %<tT", partida.inicio),
+                    registros, niveis, naves);
+            for (int jogador = 1; jogador <= 2; jogador++) {
+                System.out.printf("  jogador %d: %d abates, score %d, %d vidas perdidas\n", jogador,
+                        abates[jogador], scores[jogador], vidasPerdidas[jogador]);
+            }
+        }
+    }
+
+    /** classe somente com métodos estáticos */
+    private LeitorRegistro() {
+    }
+
+    /**
+     * @param numero o número de um segmento
+     * @return o nome do arquivo do segmento
+     */
+    static String nomeSegmento(int numero) {
+        return String.format("%s%06d%s", PREFIXO, numero, SUFIXO);
+    }
+
+    /**
+     * @param segmento o arquivo de um segmento
+     * @return o número do segmento, ou -1 caso o nome não seja de um segmento
+     */
+    static int numeroSegmento(Path segmento) {
+        String nome = segmento.getFileName().toString();
+        if (!nome.startsWith(PREFIXO) || !nome.endsWith(SUFIXO)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(nome.substring(PREFIXO.length(), nome.length() - SUFIXO.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * segmentos lista os segmentos de um diretório de registro.
+     *
+     * @param diretorio o diretório
+     * @return os segmentos, em ordem
+     * @throws IOException caso o diretório não possa ser lido
+     */
+    public static List<Path> segmentos(Path diretorio) throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            arquivos.filter(p -> numeroSegmento(p) >= 0).forEach(segmentos::add);
+        }
+        Collections.sort(segmentos, (a, b) -> Integer.compare(numeroSegmento(a), numeroSegmento(b)));
+        return segmentos;
+    }
+
+    /**
+     * cabecalho lê e confere o cabeçalho no início de um segmento.
+     *
+     * @param b        o conteúdo do segmento, a partir do início
+     * @param segmento o arquivo do segmento, para as mensagens de erro
+     * @return o cabeçalho
+     * @throws IOException caso o arquivo não seja um segmento
+     */
+    private static Cabecalho cabecalho(ByteBuffer b, Path segmento) throws IOException {
+        if (b.remaining() < CABECALHO || b.getInt() != MAGICA) {
+            throw new IOException(segmento + " não é um segmento de registro");
+        }
+        int versao = b.get();
+        if (versao != VERSAO && versao != 1) {
+            throw new IOException("versão de registro não suportada: " + versao);
+        }
+        long semente = b.getLong();
+        long momento = b.getLong();
+        // na versão 1, o momento é o da criação do segmento, e não identifica a partida
+        return new Cabecalho(semente, (versao == 1) ? -1 : momento);
+    }
+
+    /**
+     * lerCabecalho lê somente o cabeçalho de um segmento.
+     *
+     * @param segmento o arquivo do segmento
+     * @return o cabeçalho, com a partida do segmento
+     * @throws IOException caso o arquivo não possa ser lido ou não seja um
+     *                     segmento
+     */
+    public static Cabecalho lerCabecalho(Path segmento) throws IOException {
+        try (InputStream in = Files.newInputStream(segmento)) {
+            return cabecalho(ByteBuffer.wrap(in.readNBytes(CABECALHO)), segmento);
+        }
+    }
+
+    /**
+     * ler lê todos os registros de um segmento.
+     *
+     * @param segmento   o arquivo do segmento
+     * @param consumidor recebe cada registro, em ordem
+     * @return o cabeçalho do segmento, com a sua partida
+     * @throws IOException caso o arquivo não possa ser lido ou não seja um
+     *                     segmento
+     */
+    public static Cabecalho ler(Path segmento, Consumer<Registro> consumidor) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(segmento));
+        Cabecalho c = cabecalho(b, segmento);
+
+        while (b.remaining() >= Registro.TAMANHO) {
+            try {
+                consumidor.accept(Registro.ler(b));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(segmento + " corrompido na posição " + b.position(), e);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * main imprime todos os fatos de um diretório de registro, ou somente o
+     * resumo de cada partida com "--resumo".
+     *
+     * @param args o diretório e, opcionalmente, "--resumo"
+     * @throws IOException caso o registro não possa ser lido
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || (args.length > 1 && !args[1].equals("--resumo"))) {
+            System.err.println("uso: LeitorRegistro diretorio [--resumo]");
+            System.exit(1);
+        }
+        boolean somenteResumo = args.length > 1;
+
+        Cabecalho partida = null;
+        Resumo resumo = new Resumo();
+        for (Path segmento : segmentos(Paths.get(args[0]))) {
+            Cabecalho cabecalho = lerCabecalho(segmento);
+            if (partida != null && !partida.mesmaPartida(cabecalho)) {
+                // o segmento começa outra partida
+                resumo.imprimir(partida);
+                resumo = new Resumo();
+            }
+            partida = cabecalho;
+
+            Resumo atual = resumo;
+            ler(segmento, r -> {
+                if (!somenteResumo) {
+                    System.out.println(r);
+                }
+                atual.somar(r);
+            });
+            if (!somenteResumo) {
+                System.out.printf("%s: partida com semente %d\n", segmento.getFileName(),
+                        cabecalho.semente);
+            }
+        }
+
+        if (partida != null) {
+            resumo.imprimir(partida);
+        }
+    }
+}
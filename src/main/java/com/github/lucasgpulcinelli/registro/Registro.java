@@ -0,0 +1,123 @@
+package com.github.lucasgpulcinelli.registro;
+
+import java.nio.ByteBuffer;
+
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+
+/**
+ * Registro é um único fato da partida, com tamanho fixo no arquivo: o tipo do
+ * fato, o tick, o jogador, o sprite envolvido e um valor que depende do
+ * {@link Fato}.
+ */
+public final class Registro {
+    /** tamanho de um registro no arquivo */
+    public static final int TAMANHO = 1 + 8 + 1 + 1 + 4;
+
+    /** sprites e fatos pelo ordinal, sem criar um novo array a cada leitura */
+    private static final Sprite[] SPRITES = Sprite.values();
+    private static final Fato[] FATOS = Fato.values();
+
+    private final Fato fato;
+    private final long tick;
+    private final int jogador;
+    private final Sprite sprite;
+    private final int valor;
+
+    /**
+     * Cria um novo registro.
+     *
+     * @param fato    o tipo do fato
+     * @param tick    o tick em que ele aconteceu
+     * @param jogador o jogador envolvido, ou 0
+     * @param sprite  o sprite envolvido, ou null
+     * @param valor   o valor do fato
+     */
+    public Registro(Fato fato, long tick, int jogador, Sprite sprite, int valor) {
+        this.fato = fato;
+        this.tick = tick;
+        this.jogador = jogador;
+        this.sprite = sprite;
+        this.valor = valor;
+    }
+
+    /**
+     * escrever coloca o registro em um buffer.
+     *
+     * @param b o buffer, com pelo menos {@link TAMANHO} bytes livres
+     */
+    void escrever(ByteBuffer b) {
+        b.put((byte) fato.ordinal());
+        b.putLong(tick);
+        b.put((byte) jogador);
+        b.put((byte) ((sprite == null) ? -1 : sprite.ordinal()));
+        b.putInt(valor);
+    }
+
+    /**
+     * ler decodifica um registro de um buffer.
+     *
+     * @param b o buffer, com pelo menos {@link TAMANHO} bytes restantes
+     * @return o registro
+     * @throws IllegalArgumentException caso o tipo ou o sprite sejam inválidos
+     */
+    static Registro ler(ByteBuffer b) {
+        int fato = b.get();
+        long tick = b.getLong();
+        int jogador = b.get();
+        int sprite = b.get();
+        int valor = b.getInt();
+
+        if (fato < 0 || fato >= FATOS.length || sprite < -1 || sprite >= SPRITES.length) {
+            throw new IllegalArgumentException("registro inválido");
+        }
+        return new Registro(FATOS[fato], tick, jogador, (sprite < 0) ? null : SPRITES[sprite], valor);
+    }
+
+    /**
+     * @return o tipo do fato
+     */
+    public Fato getFato() {
+        return fato;
+    }
+
+    /**
+     * @return o tick em que o fato aconteceu
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return o jogador envolvido, ou 0
+     */
+    public int getJogador() {
+        return jogador;
+    }
+
+    /**
+     * @return o sprite envolvido, ou null
+     */
+    public Sprite getSprite() {
+        return sprite;
+    }
+
+    /**
+     * @return o valor do fato, que depende do {@link Fato}
+     */
+    public int getValor() {
+        return valor;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tick ").append(tick).append(": ").append(fato.getNome());
+        if (jogador != 0) {
+            sb.append(", jogador ").append(jogador);
+        }
+        if (sprite != null) {
+            sb.append(", ").append(sprite);
+        }
+        return sb.append(", ").append(valor).toString();
+    }
+}
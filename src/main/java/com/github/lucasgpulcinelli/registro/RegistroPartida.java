@@ -0,0 +1,115 @@
+package com.github.lucasgpulcinelli.registro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+
+/**
+ * RegistroPartida guarda os fatos da partida que interessam para análises:
+ * cada abate com a score ganha, cada vida perdida, cada nível ganho e cada
+ * aparição da nave especial, em um log binário somente de acréscimo, lido
+ * pelo {@link LeitorRegistro}.
+ *
+ * Os fatos são registrados pela lógica de jogo, na thread da lógica de jogo, e
+ * somente colocados em uma fila sem travas; a escrita, os fsyncs e a troca de
+ * segmentos ficam com o {@link EscritorRegistro}, então registrar um fato
+ * nunca bloqueia um tick. Enquanto o registro não for iniciado, cada fato
+ * custa somente a leitura de uma variável.
+ *
+ * @see LeitorRegistro
+ */
+public final class RegistroPartida {
+    /** o escritor do registro, ou null caso o registro esteja desligado */
+    private static volatile EscritorRegistro escritor = null;
+    /** tick atual, usado somente pela thread da lógica de jogo */
+    private static long tick = 0;
+
+    /** classe somente com métodos estáticos */
+    private RegistroPartida() {
+    }
+
+    /**
+     * iniciar liga o registro, escrevendo os segmentos em um diretório. Tudo o
+     * que estiver na fila é escrito quando o servidor for encerrado.
+     *
+     * @param diretorio o diretório dos segmentos, criado caso não exista
+     * @param semente   a semente da partida
+     * @throws IOException caso o diretório ou o primeiro segmento não possam ser
+     *                     criados
+     */
+    public static void iniciar(File diretorio, long semente) throws IOException {
+        Files.createDirectories(diretorio.toPath());
+        EscritorRegistro e = new EscritorRegistro(diretorio.toPath(), semente);
+        e.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(e::encerrar));
+        escritor = e;
+    }
+
+    /**
+     * inicioTick marca o tick dos próximos fatos.
+     *
+     * @param t o tick que está começando
+     */
+    public static void inicioTick(long t) {
+        tick = t;
+    }
+
+    /**
+     * abate registra um personagem morto pelo tiro de um jogador.
+     *
+     * @param jogador o jogador que atirou
+     * @param sprite  o sprite do personagem morto
+     * @param score   a score ganha
+     */
+    public static void abate(int jogador, Sprite sprite, int score) {
+        registrar(Fato.ABATE, jogador, sprite, score);
+    }
+
+    /**
+     * vidaPerdida registra a destruição do canhão de um jogador.
+     *
+     * @param jogador         o jogador
+     * @param vidasRestantes as vidas que sobraram ao jogador
+     */
+    public static void vidaPerdida(int jogador, int vidasRestantes) {
+        registrar(Fato.VIDA_PERDIDA, jogador, Sprite.CANHAO, vidasRestantes);
+    }
+
+    /**
+     * nivelGanho registra a vitória dos jogadores em um nível.
+     *
+     * @param nivel o novo nível
+     */
+    public static void nivelGanho(int nivel) {
+        registrar(Fato.NIVEL_GANHO, 0, null, nivel);
+    }
+
+    /**
+     * naveEspecial registra a aparição da nave especial.
+     */
+    public static void naveEspecial() {
+        registrar(Fato.NAVE_ESPECIAL, 0, Sprite.NAVEESPECIAL, 0);
+    }
+
+    /**
+     * @return quantos fatos foram descartados porque o disco não acompanhou
+     */
+    public static long getDescartados() {
+        EscritorRegistro e = escritor;
+        return (e == null) ? 0 : e.getDescartados();
+    }
+
+    /**
+     * registrar coloca um fato na fila do escritor, caso o registro esteja
+     * ligado.
+     */
+    private static void registrar(Fato fato, int jogador, Sprite sprite, int valor) {
+        EscritorRegistro e = escritor;
+        if (e == null) {
+            return;
+        }
+        e.adicionar(new Registro(fato, tick, jogador, sprite, valor));
+    }
+}
@@ -0,0 +1,498 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+
+/**
+ * ArquivoQuadros lê um arquivo de quadros gravado pelo {@link GravadorQuadros},
+ * permitindo ir para qualquer tick da partida sem reproduzí-la desde o início.
+ *
+ * O arquivo começa com um cabeçalho (número mágico, versão e intervalo entre
+ * quadros chave), seguido de um quadro por tick. Cada quadro tem um byte de
+ * tipo, o tamanho do corpo (4 bytes), o tick, o nível, os scores, as vidas e os
+ * eventos do tick; depois, um quadro chave tem todos os desenhaveis (sprite, x
+ * e y), e um quadro delta tem somente o que mudou desde o tick anterior. No
+ * final do arquivo ficam um índice com o tick e a posição de cada quadro chave
+ * e um rodapé que aponta para o índice. Caso o servidor tenha sido encerrado
+ * sem escrever o índice, ele é reconstruído percorrendo os quadros.
+ *
+ * O arquivo é lido com {@link FileChannel#map}, e os quadros são decodificados
+ * diretamente do buffer mapeado, sem cópias intermediárias. Ir para um tick
+ * custa a decodificação do quadro chave anterior a ele e, no máximo,
+ * {@link INTERVALO_CHAVE} - 1 deltas.
+ *
+ * @see GravadorQuadros
+ */
+public class ArquivoQuadros {
+    /** número mágico no início e no fim de todo arquivo de quadros ("SIQA") */
+    public static final int MAGICA = 0x53495141;
+    /** versão atual do formato */
+    public static final int VERSAO = 1;
+    /** quantos ticks há entre dois quadros chave, um segundo de jogo */
+    public static final int INTERVALO_CHAVE = 60;
+
+    /** tipo de um quadro chave */
+    static final int CHAVE = 0;
+    /** tipo de um quadro delta */
+    static final int DELTA = 1;
+    /** marcador do início do índice, depois do último quadro */
+    static final int INDICE = 2;
+
+    /** tamanho do cabeçalho do arquivo */
+    static final int CABECALHO = 4 + 1 + 2;
+    /** tamanho do cabeçalho de cada quadro: tipo e tamanho do corpo */
+    static final int CABECALHO_QUADRO = 1 + 4;
+    /** tamanho do rodapé: posição do índice, número de quadros chave e número mágico */
+    private static final int RODAPE = 8 + 4 + 4;
+
+    /**
+     * tamanho de cada região mapeada. Um único buffer mapeado não pode passar de
+     * 2GB, então arquivos maiores são mapeados em várias regiões.
+     */
+    private static final long SEGMENTO = 1L << 30;
+    /**
+     * quanto cada região avança sobre a próxima, maior que qualquer quadro
+     * possível; assim, todo quadro que começa em uma região cabe inteiro nela.
+     */
+    private static final long SOBREPOSICAO = 1L << 20;
+
+    /** sprites e eventos pelo ordinal, sem criar um novo array a cada leitura */
+    private static final Sprite[] SPRITES = Sprite.values();
+    private static final Evento[] EVENTOS = Evento.values();
+
+    /**
+     * Quadro é o estado de um tick decodificado do arquivo. O mesmo objeto é
+     * reutilizado a cada quadro lido, então seus valores só são válidos até a
+     * próxima leitura.
+     */
+    public static final class Quadro {
+        private long tick = -1;
+        private int nivel;
+        private int scoreP1, scoreP2;
+        private int vidasP1, vidasP2;
+        private final ArrayList<Evento> eventos = new ArrayList<>();
+
+        /** número de desenhaveis */
+        private int n = 0;
+        /** sprite, x e y de cada desenhavel */
+        private int[] sprites = new int[128];
+        private float[] x = new float[128];
+        private float[] y = new float[128];
+
+        /**
+         * @return o tick do quadro
+         */
+        public long getTick() {
+            return tick;
+        }
+
+        /**
+         * @return o nível do quadro
+         */
+        public int getNivel() {
+            return nivel;
+        }
+
+        /**
+         * @param jogador 1 ou 2
+         * @return o score do jogador
+         */
+        public int getScore(int jogador) {
+            return (jogador == 1) ? scoreP1 : scoreP2;
+        }
+
+        /**
+         * @param jogador 1 ou 2
+         * @return as vidas do jogador
+         */
+        public int getVidas(int jogador) {
+            return (jogador == 1) ? vidasP1 : vidasP2;
+        }
+
+        /**
+         * @return uma lista não modificável dos eventos do tick
+         */
+        public List<Evento> getEventos() {
+            return Collections.unmodifiableList(eventos);
+        }
+
+        /**
+         * @return o número de desenhaveis do quadro
+         */
+        public int getNumeroDesenhaveis() {
+            return n;
+        }
+
+        /**
+         * @param i índice do desenhavel
+         * @return o sprite do desenhavel
+         */
+        public Sprite getSprite(int i) {
+            return SPRITES[sprites[i]];
+        }
+
+        /**
+         * @param i índice do desenhavel
+         * @return a posição do desenhavel no eixo x
+         */
+        public float getX(int i) {
+            return x[i];
+        }
+
+        /**
+         * @param i índice do desenhavel
+         * @return a posição do desenhavel no eixo y
+         */
+        public float getY(int i) {
+            return y[i];
+        }
+
+        /**
+         * garantirCapacidade aumenta os arrays de desenhaveis se necessário.
+         *
+         * @param capacidade número de desenhaveis que deve caber
+         */
+        private void garantirCapacidade(int capacidade) {
+            if (capacidade > sprites.length) {
+                int novo = Math.max(capacidade, sprites.length * 2);
+                sprites = Arrays.copyOf(sprites, novo);
+                x = Arrays.copyOf(x, novo);
+                y = Arrays.copyOf(y, novo);
+            }
+        }
+    }
+
+    /** regiões mapeadas do arquivo */
+    private final MappedByteBuffer[] segmentos;
+    /** posição onde os quadros terminam */
+    private final long fimQuadros;
+    /** tick e posição de cada quadro chave, em ordem */
+    private final long[] ticksChave;
+    private final long[] posicoesChave;
+    /** tick do último quadro do arquivo */
+    private final long ultimoTick;
+    /** se o índice foi reconstruído por falta do rodapé */
+    private final boolean indiceReconstruido;
+
+    /** o quadro atual */
+    private final Quadro quadro = new Quadro();
+    /** posição do quadro seguinte ao atual */
+    private long proximaPosicao = CABECALHO;
+    /** quantos quadros foram decodificados desde a criação do leitor */
+    private long quadrosDecodificados = 0;
+
+    /** região e posição dentro dela de onde a próxima leitura é feita */
+    private MappedByteBuffer buffer;
+    private int cursor;
+
+    /**
+     * Abre e mapeia um arquivo de quadros, lendo (ou reconstruindo) o índice.
+     *
+     * @param arquivo caminho do arquivo
+     * @throws IOException caso o arquivo não possa ser lido ou seja inválido
+     */
+    public ArquivoQuadros(Path arquivo) throws IOException {
+        long tamanho;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            tamanho = canal.size();
+            if (tamanho < CABECALHO) {
+                throw new IOException("arquivo de quadros vazio: " + arquivo);
+            }
+
+            // o mapeamento continua válido depois que o canal é fechado
+            segmentos = new MappedByteBuffer[(int) ((tamanho - 1) / SEGMENTO + 1)];
+            for (int i = 0; i < segmentos.length; i++) {
+                long inicio = i * SEGMENTO;
+                segmentos[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio,
+                        Math.min(SEGMENTO + SOBREPOSICAO, tamanho - inicio));
+            }
+        }
+
+        posicionar(0);
+        if (lerInt() != MAGICA) {
+            throw new IOException("não é um arquivo de quadros: " + arquivo);
+        }
+        int versao = lerByte();
+        if (versao != VERSAO) {
+            throw new IOException("versão de arquivo não suportada: " + versao);
+        }
+        lerShort(); // intervalo entre quadros chave, só informativo para o leitor
+
+        ArrayList<long[]> chaves = new ArrayList<>();
+        long fim = -1;
+
+        if (tamanho >= CABECALHO + RODAPE) {
+            posicionar(tamanho - RODAPE);
+            long posicaoIndice = lerLong();
+            int numeroChaves = lerInt();
+            if (lerInt() == MAGICA && posicaoIndice + 1 + 16L * numeroChaves + RODAPE == tamanho) {
+                posicionar(posicaoIndice + 1);
+                for (int i = 0; i < numeroChaves; i++) {
+                    chaves.add(new long[] { lerLong(), lerLong() });
+                }
+                fim = posicaoIndice;
+            }
+        }
+
+        indiceReconstruido = fim < 0;
+        if (indiceReconstruido) {
+            fim = reconstruirIndice(tamanho, chaves);
+        }
+        if (chaves.isEmpty()) {
+            throw new IOException("arquivo de quadros sem nenhum quadro: " + arquivo);
+        }
+
+        fimQuadros = fim;
+        ticksChave = new long[chaves.size()];
+        posicoesChave = new long[chaves.size()];
+        for (int i = 0; i < chaves.size(); i++) {
+            ticksChave[i] = chaves.get(i)[0];
+            posicoesChave[i] = chaves.get(i)[1];
+        }
+
+        // o último tick é o do último quadro, que está no máximo um intervalo
+        // depois do último quadro chave
+        irParaChave(ticksChave.length - 1);
+        while (proximo()) {
+        }
+        ultimoTick = quadro.tick;
+        quadrosDecodificados = 0;
+    }
+
+    /**
+     * reconstruirIndice percorre os cabeçalhos dos quadros do arquivo, anotando
+     * os quadros chave, até o índice ou o primeiro quadro incompleto.
+     *
+     * @param tamanho tamanho do arquivo
+     * @param chaves  lista onde o tick e a posição dos quadros chave são colocados
+     * @return a posição onde os quadros terminam
+     */
+    private long reconstruirIndice(long tamanho, ArrayList<long[]> chaves) {
+        long posicao = CABECALHO;
+        while (posicao + CABECALHO_QUADRO + 8 <= tamanho) {
+            posicionar(posicao);
+            int tipo = lerByte();
+            long fim = posicao + CABECALHO_QUADRO + lerInt();
+            if ((tipo != CHAVE && tipo != DELTA) || fim > tamanho) {
+                break;
+            }
+            if (tipo == CHAVE) {
+                chaves.add(new long[] { lerLong(), posicao });
+            }
+            posicao = fim;
+        }
+        return posicao;
+    }
+
+    /**
+     * buscar vai para um tick da partida, decodificando o quadro chave anterior a
+     * ele e os deltas até ele. Caso o tick esteja depois do quadro atual e antes
+     * do próximo quadro chave, a decodificação continua do quadro atual.
+     *
+     * @param tick o tick desejado
+     * @return o quadro do tick
+     * @throws IllegalArgumentException caso o tick não esteja no arquivo
+     */
+    public Quadro buscar(long tick) {
+        if (tick < ticksChave[0] || tick > ultimoTick) {
+            throw new IllegalArgumentException("tick fora do arquivo: " + tick);
+        }
+
+        int chave = Arrays.binarySearch(ticksChave, tick);
+        if (chave < 0) {
+            chave = -chave - 2;
+        }
+
+        boolean continuar = quadro.tick >= ticksChave[chave] && quadro.tick <= tick
+                && (chave + 1 == ticksChave.length || quadro.tick < ticksChave[chave + 1]);
+        if (!continuar) {
+            irParaChave(chave);
+        }
+
+        while (quadro.tick < tick && proximo()) {
+        }
+        return quadro;
+    }
+
+    /**
+     * proximo decodifica o quadro seguinte ao atual, para reprodução sequencial.
+     *
+     * @return se havia um próximo quadro
+     */
+    public boolean proximo() {
+        if (proximaPosicao >= fimQuadros) {
+            return false;
+        }
+        proximaPosicao = decodificar(proximaPosicao);
+        return true;
+    }
+
+    /**
+     * @return o quadro atual, que é o mesmo objeto retornado por {@link buscar}
+     */
+    public Quadro getQuadro() {
+        return quadro;
+    }
+
+    /**
+     * @return o tick do primeiro quadro do arquivo
+     */
+    public long getPrimeiroTick() {
+        return ticksChave[0];
+    }
+
+    /**
+     * @return o tick do último quadro do arquivo
+     */
+    public long getUltimoTick() {
+        return ultimoTick;
+    }
+
+    /**
+     * @return o número de quadros chave do arquivo
+     */
+    public int getNumeroChaves() {
+        return ticksChave.length;
+    }
+
+    /**
+     * @return se o índice teve de ser reconstruído por falta do rodapé
+     */
+    public boolean getIndiceReconstruido() {
+        return indiceReconstruido;
+    }
+
+    /**
+     * @return quantos quadros foram decodificados desde a abertura do arquivo
+     */
+    public long getQuadrosDecodificados() {
+        return quadrosDecodificados;
+    }
+
+    /**
+     * irParaChave decodifica um quadro chave.
+     *
+     * @param chave índice do quadro chave
+     */
+    private void irParaChave(int chave) {
+        proximaPosicao = decodificar(posicoesChave[chave]);
+    }
+
+    /**
+     * decodificar lê um quadro do buffer mapeado para o quadro atual. Um quadro
+     * delta é aplicado sobre o quadro atual, que deve ser o do tick anterior.
+     *
+     * @param posicao posição do quadro no arquivo
+     * @return a posição do quadro seguinte
+     */
+    private long decodificar(long posicao) {
+        posicionar(posicao);
+        Quadro q = quadro;
+
+        int tipo = lerByte();
+        long fim = posicao + CABECALHO_QUADRO + lerInt();
+
+        q.tick = lerLong();
+        q.nivel = lerShort();
+        q.scoreP1 = lerInt();
+        q.scoreP2 = lerInt();
+        q.vidasP1 = lerByte();
+        q.vidasP2 = lerByte();
+
+        q.eventos.clear();
+        for (int i = lerByte(); i > 0; i--) {
+            q.eventos.add(EVENTOS[lerByte()]);
+        }
+
+        if (tipo == CHAVE) {
+            q.n = lerShort();
+            q.garantirCapacidade(q.n);
+            for (int i = 0; i < q.n; i++) {
+                lerDesenhavel(i);
+            }
+        } else {
+            // remove os desenhaveis que saíram, mantendo a ordem dos outros
+            int removidos = lerShort();
+            int proximoRemovido = (removidos > 0) ? lerShort() : -1;
+            int mantidos = 0;
+            for (int i = 0; i < q.n; i++) {
+                if (i == proximoRemovido) {
+                    proximoRemovido = (--removidos > 0) ? lerShort() : -1;
+                    continue;
+                }
+                q.sprites[mantidos] = q.sprites[i];
+                q.x[mantidos] = q.x[i];
+                q.y[mantidos] = q.y[i];
+                mantidos++;
+            }
+            q.n = mantidos;
+
+            for (int i = lerShort(); i > 0; i--) {
+                lerDesenhavel(lerShort());
+            }
+
+            int novos = lerShort();
+            q.garantirCapacidade(q.n + novos);
+            for (int i = 0; i < novos; i++) {
+                lerDesenhavel(q.n++);
+            }
+        }
+
+        quadrosDecodificados++;
+        return fim;
+    }
+
+    /**
+     * lerDesenhavel lê o sprite e a posição de um desenhavel para o quadro atual.
+     *
+     * @param i índice do desenhavel no quadro
+     */
+    private void lerDesenhavel(int i) {
+        quadro.sprites[i] = lerByte();
+        quadro.x[i] = buffer.getFloat(cursor);
+        quadro.y[i] = buffer.getFloat(cursor + 4);
+        cursor += 8;
+    }
+
+    /**
+     * posicionar escolhe a região mapeada que contém uma posição do arquivo.
+     *
+     * @param posicao posição no arquivo
+     */
+    private void posicionar(long posicao) {
+        buffer = segmentos[(int) (posicao / SEGMENTO)];
+        cursor = (int) (posicao % SEGMENTO);
+    }
+
+    private int lerByte() {
+        return buffer.get(cursor++) & 0xff;
+    }
+
+    private int lerShort() {
+        int v = buffer.getShort(cursor) & 0xffff;
+        cursor += 2;
+        return v;
+    }
+
+    private int lerInt() {
+        int v = buffer.getInt(cursor);
+        cursor += 4;
+        return v;
+    }
+
+    private long lerLong() {
+        long v = buffer.getLong(cursor);
+        cursor += 8;
+        return v;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * BenchmarkArquivo mede o tempo de ir para um tick qualquer de um arquivo de
+ * quadros, além do tempo de abertura e da velocidade de leitura sequencial.
+ *
+ * Caso um número de horas seja passado, o arquivo é antes gerado com uma
+ * partida simulada sem interface gráfica, na velocidade máxima, com dois
+ * jogadores fazendo ações aleatórias; assim é possível medir arquivos de
+ * várias horas de jogo sem ter de jogá-las.
+ *
+ * @see ArquivoQuadros
+ */
+public class BenchmarkArquivo {
+    /** número de buscas aleatórias medidas */
+    private static final int BUSCAS = 2000;
+
+    /**
+     * main gera o arquivo caso necessário e imprime as medidas.
+     *
+     * @param args caminho do arquivo e, opcionalmente, horas de jogo a gerar
+     * @throws IOException caso o arquivo não possa ser gerado ou lido
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("uso: BenchmarkArquivo <arquivo de quadros> [horas a gerar]");
+            System.exit(1);
+        }
+
+        if (args.length >= 2) {
+            gerar(args[0], Double.parseDouble(args[1]));
+        }
+
+        long inicio = System.nanoTime();
+        ArquivoQuadros arquivo = new ArquivoQuadros(Paths.get(args[0]));
+        double abertura = (System.nanoTime() - inicio) / 1e6;
+
+        long primeiro = arquivo.getPrimeiroTick();
+        long ultimo = arquivo.getUltimoTick();
+        double horas = (ultimo - primeiro + 1) / 60.0 / 3600.0;
+        double megabytes = new File(args[0]).length() / 1048576.0;
+
+        System.out.printf("%d ticks (%.2f horas de jogo), %d quadros chave, %.1f MiB (%.1f MiB/hora)%s\n",
+                ultimo - primeiro + 1, horas, arquivo.getNumeroChaves(), megabytes,
+                megabytes / horas, arquivo.getIndiceReconstruido() ? ", índice reconstruído" : "");
+        System.out.printf("abertura: %.2fms\n", abertura);
+
+        // aquece o código de decodificação antes de medir
+        Random aleatorio = new Random(1);
+        for (int i = 0; i < BUSCAS; i++) {
+            arquivo.buscar(primeiro + (long) (aleatorio.nextDouble() * (ultimo - primeiro)));
+        }
+
+        long[] tempos = new long[BUSCAS];
+        long decodificadosAntes = arquivo.getQuadrosDecodificados();
+        for (int i = 0; i < BUSCAS; i++) {
+            long tick = primeiro + (long) (aleatorio.nextDouble() * (ultimo - primeiro));
+            long antes = System.nanoTime();
+            ArquivoQuadros.Quadro q = arquivo.buscar(tick);
+            tempos[i] = System.nanoTime() - antes;
+
+            if (q.getTick() != tick) {
+                throw new IllegalStateException("busca pelo tick " + tick + " parou no " + q.getTick());
+            }
+        }
+        double decodificadosPorBusca = (arquivo.getQuadrosDecodificados() - decodificadosAntes)
+                / (double) BUSCAS;
+
+        Arrays.sort(tempos);
+        System.out.printf("busca aleatória (us): p50 %.1f  p90 %.1f  p99 %.1f  max %.1f  (%.1f quadros por busca)\n",
+                percentil(tempos, 50) / 1e3, percentil(tempos, 90) / 1e3,
+                percentil(tempos, 99) / 1e3, tempos[tempos.length - 1] / 1e3,
+                decodificadosPorBusca);
+
+        inicio = System.nanoTime();
+        arquivo.buscar(primeiro);
+        long quadros = 1;
+        while (arquivo.proximo()) {
+            quadros++;
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("leitura sequencial: %d quadros em %.2fs (%.0f quadros/s)\n",
+                quadros, segundos, quadros / segundos);
+    }
+
+    /**
+     * percentil calcula um percentil de um array ordenado pelo método do posto
+     * mais próximo.
+     *
+     * @param ordenados valores em ordem crescente
+     * @param p         percentil entre 0 e 100
+     * @return o valor do percentil
+     */
+    private static long percentil(long[] ordenados, double p) {
+        int posto = (int) Math.ceil(p / 100 * ordenados.length);
+        return ordenados[Math.max(0, posto - 1)];
+    }
+
+    /**
+     * gerar simula uma {@link PartidaAleatoria} e grava os quadros dela.
+     *
+     * @param caminho caminho do arquivo de quadros
+     * @param horas   horas de jogo a simular
+     * @throws IOException caso o arquivo não possa ser criado
+     */
+    private static void gerar(String caminho, double horas) throws IOException {
+        long ticks = (long) (horas * 3600 * 60);
+
+        PartidaAleatoria partida = new PartidaAleatoria(1);
+        GravadorQuadros gravador = new GravadorQuadros(caminho);
+        gravador.start();
+
+        long inicio = System.nanoTime();
+        for (long t = 0; t < ticks; t++) {
+            partida.tick();
+            gravador.registrarQuadro(partida.getEstado(), Personagem.getDesenhaveis());
+        }
+        gravador.encerrar();
+        try {
+            // o arquivo só pode ser lido depois que o índice for escrito
+            gravador.join();
+        } catch (InterruptedException e) {
+        }
+
+        System.out.printf("gerados %d ticks em %.1fs\n", ticks, (System.nanoTime() - inicio) / 1e9);
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import com.github.lucasgpulcinelli.comunicacao.EntradaComprimida;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.SaidaComprimida;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * BenchmarkCompressao compara o custo de CPU por estado com os bytes
+ * economizados pela compressão negociada entre o {@link ComunicadorJogo} e os
+ * clientes, para vários níveis de compressão.
+ *
+ * Os estados vêm de uma {@link PartidaAleatoria} e são codificados exatamente
+ * como o ComunicadorJogo faz (um estado seguido de um reset por flush); cada
+ * nível comprime a sequência inteira em uma única {@link SaidaComprimida},
+ * como em uma conexão real, e a descompressão é conferida byte a byte.
+ */
+public class BenchmarkCompressao {
+    /** estados enviados por segundo, usado para estimar a banda economizada */
+    private static final int ESTADOS_POR_SEGUNDO = 30;
+
+    /**
+     * main gera os estados e imprime uma linha por nível de compressão.
+     *
+     * @param args número de estados a comprimir, 3000 por padrão
+     * @throws IOException caso haja um erro na codificação
+     */
+    public static void main(String[] args) throws IOException {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 3000;
+
+        PartidaAleatoria partida = new PartidaAleatoria(1);
+        EstadoJogo ej = partida.getEstado();
+
+        // codifica os estados como o ComunicadorJogo, guardando os bytes de cada um
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream saida = new ObjectOutputStream(bytes);
+        saida.flush();
+        bytes.reset();
+
+        ArrayList<byte[]> estados = new ArrayList<>();
+        long nanosCodificacao = 0;
+        for (int i = 0; i < n; i++) {
+            // um estado a cada dois ticks, como na taxa inicial de 30 estados/s
+            partida.tick();
+            partida.tick();
+
+            long inicio = System.nanoTime();
+            synchronized (Personagem.getPersonagens()) {
+                saida.writeObject(ej);
+            }
+            saida.reset();
+            saida.flush();
+            nanosCodificacao += System.nanoTime() - inicio;
+
+            estados.add(bytes.toByteArray());
+            bytes.reset();
+        }
+
+        long totalOriginal = 0;
+        for (byte[] e : estados) {
+            totalOriginal += e.length;
+        }
+        System.out.printf("%d estados, %.0f bytes por estado, codificação %.1fus por estado\n",
+                n, totalOriginal / (double) n, nanosCodificacao / 1e3 / n);
+        System.out.printf("%-6s %12s %8s %16s %16s %14s\n", "nível", "bytes/estado", "razão",
+                "comprime p50/p99", "descomprime", "economia");
+
+        int[] niveis = { Deflater.BEST_SPEED, 3, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION };
+        for (int nivel : niveis) {
+            // a primeira passada só aquece o código, a segunda é medida
+            medir(estados, nivel);
+            long[] resultado = medir(estados, nivel);
+
+            long comprimidos = resultado[0];
+            long[] tempos = Arrays.copyOfRange(resultado, 2, resultado.length);
+            Arrays.sort(tempos);
+
+            double economiaKiB = (totalOriginal - comprimidos) / (double) n
+                    * ESTADOS_POR_SEGUNDO / 1024;
+            System.out.printf("%-6s %12.0f %7.1fx %8.1f/%-7.1f %13.1fus %9.1f KiB/s\n",
+                    (nivel == Deflater.DEFAULT_COMPRESSION) ? "6" : Integer.toString(nivel),
+                    comprimidos / (double) n, totalOriginal / (double) comprimidos,
+                    tempos[tempos.length / 2] / 1e3, tempos[(int) (tempos.length * 0.99)] / 1e3,
+                    resultado[1] / 1e3 / n, economiaKiB);
+        }
+    }
+
+    /**
+     * medir comprime todos os estados em uma única stream e depois os
+     * descomprime, conferindo o resultado.
+     *
+     * @param estados os estados codificados
+     * @param nivel   nível de compressão
+     * @return os bytes comprimidos, o tempo total de descompressão e o tempo de
+     *         compressão de cada estado, em nanossegundos
+     * @throws IOException caso a descompressão não reproduza os estados
+     */
+    private static long[] medir(ArrayList<byte[]> estados, int nivel) throws IOException {
+        long[] resultado = new long[2 + estados.size()];
+
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        SaidaComprimida comprimida = new SaidaComprimida(destino, nivel);
+        comprimida.ativar();
+        for (int i = 0; i < estados.size(); i++) {
+            long inicio = System.nanoTime();
+            comprimida.write(estados.get(i));
+            comprimida.flush();
+            resultado[2 + i] = System.nanoTime() - inicio;
+        }
+        comprimida.terminar();
+        resultado[0] = destino.size();
+
+        EntradaComprimida entrada = new EntradaComprimida(new ByteArrayInputStream(destino.toByteArray()));
+        entrada.ativar();
+        DataInputStream leitor = new DataInputStream(entrada);
+        long inicio = System.nanoTime();
+        for (byte[] original : estados) {
+            byte[] lido = new byte[original.length];
+            leitor.readFully(lido);
+            if (!Arrays.equals(lido, original)) {
+                throw new IOException("a descompressão não reproduziu o estado original");
+            }
+        }
+        resultado[1] = System.nanoTime() - inicio;
+        entrada.close();
+
+        return resultado;
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferCompartilhado guarda um estado codificado em um ByteBuffer direto,
+ * compartilhado entre todos os espectadores e jogadores que precisam enviá-lo.
+ *
+ * O buffer tem uma contagem de referências: quem o obtém do
+ * {@link PoolBuffers} tem a primeira, cada fila de espectador onde ele é
+ * colocado ganha mais uma com {@link #reter()}, e cada uma é devolvida com
+ * {@link #liberar()}. Quando a última referência é liberada, o buffer volta ao
+ * pool e pode ser reutilizado para o próximo estado.
+ *
+ * Enquanto o buffer é escrito, somente quem o obteve pode usá-lo; depois de
+ * {@link #concluir()}, o conteúdo nunca mais muda até voltar ao pool, então
+ * cada thread pode lê-lo por uma visão própria, criada com {@link #visao()}.
+ *
+ * @see PoolBuffers
+ */
+public final class BufferCompartilhado extends OutputStream {
+    private final PoolBuffers pool;
+    private final AtomicInteger referencias = new AtomicInteger();
+    private ByteBuffer buffer;
+
+    /**
+     * Cria um novo buffer, usado somente pelo pool.
+     *
+     * @param pool       o pool para onde o buffer volta
+     * @param capacidade a capacidade inicial do buffer, em bytes
+     */
+    BufferCompartilhado(PoolBuffers pool, int capacidade) {
+        this.pool = pool;
+        this.buffer = ByteBuffer.allocateDirect(capacidade);
+    }
+
+    /**
+     * preparar esvazia o buffer para uma nova escrita, com uma única referência.
+     */
+    void preparar() {
+        buffer.clear();
+        referencias.set(1);
+    }
+
+    /**
+     * garantir aumenta o buffer caso não caibam mais bytes nele. Isso só
+     * acontece enquanto os estados crescem; depois o pool fica somente com
+     * buffers grandes o suficiente.
+     *
+     * @param bytes quantos bytes serão escritos
+     */
+    private void garantir(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        int capacidade = buffer.capacity();
+        while (capacidade - buffer.position() < bytes) {
+            capacidade *= 2;
+        }
+
+        ByteBuffer maior = ByteBuffer.allocateDirect(capacidade);
+        buffer.flip();
+        maior.put(buffer);
+        buffer = maior;
+    }
+
+    @Override
+    public void write(int b) {
+        garantir(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        garantir(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * concluir termina a escrita: a partir de agora o conteúdo pode ser lido
+     * por qualquer thread que tenha uma referência.
+     */
+    void concluir() {
+        buffer.flip();
+    }
+
+    /**
+     * @return o tamanho do conteúdo, em bytes
+     */
+    public int getTamanho() {
+        return buffer.limit();
+    }
+
+    /**
+     * @return a capacidade atual do buffer, em bytes
+     */
+    public int getCapacidade() {
+        return buffer.capacity();
+    }
+
+    /**
+     * visao cria uma visão independente do conteúdo, com posição e limite
+     * próprios, para que várias threads possam escrevê-lo ao mesmo tempo. A
+     * visão continua válida enquanto a capacidade do buffer não mudar, e pode ser
+     * reutilizada com {@link #rebobinar(ByteBuffer)} para os próximos conteúdos.
+     *
+     * @return a nova visão
+     */
+    public ByteBuffer visao() {
+        return rebobinar(buffer.duplicate());
+    }
+
+    /**
+     * rebobinar prepara uma visão criada por {@link #visao()} para ler o
+     * conteúdo atual do começo.
+     *
+     * @param visao a visão deste buffer
+     * @return a própria visão
+     */
+    public ByteBuffer rebobinar(ByteBuffer visao) {
+        visao.limit(buffer.limit());
+        visao.position(0);
+        return visao;
+    }
+
+    /**
+     * escreverEm copia o conteúdo para uma stream, passando por um array
+     * auxiliar de quem chama. Não altera o buffer, então várias threads podem
+     * copiá-lo ao mesmo tempo.
+     *
+     * @param out      a stream de destino
+     * @param auxiliar array usado para a cópia, de qualquer tamanho
+     * @throws IOException caso a escrita na stream falhe
+     */
+    public void escreverEm(OutputStream out, byte[] auxiliar) throws IOException {
+        int tamanho = buffer.limit();
+        for (int i = 0; i < tamanho; i += auxiliar.length) {
+            int n = Math.min(auxiliar.length, tamanho - i);
+            buffer.get(i, auxiliar, 0, n);
+            out.write(auxiliar, 0, n);
+        }
+    }
+
+    /**
+     * reter adiciona uma referência ao buffer, que deverá ser liberada depois.
+     */
+    public void reter() {
+        referencias.incrementAndGet();
+    }
+
+    /**
+     * liberar devolve uma referência ao buffer; a última devolve o buffer ao
+     * pool.
+     */
+    public void liberar() {
+        int restantes = referencias.decrementAndGet();
+        if (restantes == 0) {
+            pool.devolver(this);
+        } else if (restantes < 0) {
+            throw new IllegalStateException("buffer liberado mais vezes do que foi retido");
+        }
+    }
+}
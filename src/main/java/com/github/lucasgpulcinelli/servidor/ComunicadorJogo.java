@@ -1,49 +1,125 @@
 package com.github.lucasgpulcinelli.servidor;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+import com.github.lucasgpulcinelli.comunicacao.ContadorEntrada;
+import com.github.lucasgpulcinelli.comunicacao.ContadorSaida;
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
-import com.github.lucasgpulcinelli.sistema.Canhao;
+import com.github.lucasgpulcinelli.comunicacao.PedidoClassificacao;
+import com.github.lucasgpulcinelli.comunicacao.Ping;
+import com.github.lucasgpulcinelli.comunicacao.SaidaComprimida;
+import com.github.lucasgpulcinelli.comunicacao.Saudacao;
+import com.github.lucasgpulcinelli.comunicacao.Telemetria;
+import com.github.lucasgpulcinelli.perfil.Fase;
+import com.github.lucasgpulcinelli.perfil.Perfil;
 import com.github.lucasgpulcinelli.sistema.Personagem;
-import com.github.lucasgpulcinelli.sistema.TelaJogo;
 
 /**
  * ComunicadorJogo implementa a forma de receber e enviar informações do
  * servidor para um cliente e vice-versa.
  *
- * Ele funciona criando uma nova thread que escuta em um ServerSocket e espera
- * uma conexão, enviando o estado do jogo a cada 1/30s e recebendo ações do
- * jogador.
+ * Ele funciona em uma thread própria (do sistema ou virtual, de acordo com o
+ * modo do servidor) que espera uma conexão entregue pelo
+ * {@link Recepcionista}, enviando o estado do jogo em uma taxa escolhida por um
+ * {@link ControleTaxa} (entre 10 e 60 estados por segundo, de acordo com a
+ * qualidade da conexão) e recebendo ações do jogador.
  *
- * A thread, depois de conectada a um cliente, pode criar novos canhões e os
- * conectar às ações do jogador.
+ * Os envios são guiados pela simulação: a thread espera no {@link RelogioTicks}
+ * até o próximo tick múltiplo do número de ticks por envio, então todo estado
+ * enviado é o de um tick completo, e jogadores com a mesma taxa recebem o
+ * mesmo tick.
  *
- * @see sistema.Canhao
+ * A thread, depois de conectada a um cliente, não altera a lógica do jogo
+ * diretamente: as entradas no jogo e as ações do jogador são enfileiradas na
+ * {@link Simulacao}, que as aplica no próximo tick.
+ *
+ * Ao se conectar, o jogador recebe um token de sessão. Se a conexão cair, o
+ * lugar do jogador e o seu canhão ficam reservados por
+ * {@link TEMPO_RECONEXAO}; um cliente que se reconecta com o mesmo token volta
+ * ao jogo recebendo o estado completo atual, sem afetar o outro jogador. Só se
+ * ele não voltar a tempo o jogo é perdido. Caso o canhão tenha morrido nesse
+ * meio tempo, o cliente recebe a perda de vida de novo, e o novo canhão só
+ * entra com a sua confirmação, como em qualquer perda de vida.
+ *
+ * Cada conexão mantém uma {@link Telemetria}, com o tempo de ida e volta medido
+ * por um {@link comunicacao.Ping} a cada segundo, os bytes de cada direção, o
+ * tempo de envio de cada estado e o jitter da chegada das ações.
+ *
+ * Caso o servidor tenha um {@link Placar}, o jogador pode pedir a
+ * {@link Classificacao} no lugar de uma ação depois do fim do jogo.
+ *
+ * @see Simulacao
  * @see comunicacao.Acao
  * @see comunicacao.EstadoJogo
  */
-public class ComunicadorJogo extends Thread {
-    private final ServerSocket servidor;
-    private boolean conectado = false;
+public class ComunicadorJogo implements Runnable {
+    private volatile boolean conectado = false;
+    private Socket proximaConexao = null;
+    /** saudação do cliente da próxima conexão e da conexão atual */
+    private Saudacao proximoPedido = null;
+    private Saudacao pedido = null;
     private final int jogador;
+    private final Simulacao simulacao;
+    private final RelogioTicks relogio;
+    /** de onde vem o estado codificado de cada tick, o mesmo dos espectadores */
+    private final Transmissao transmissao;
+    private final boolean permitirCompressao;
+    private final Placar placar;
+    private volatile ControleTaxa controleTaxa;
+    private volatile Telemetria telemetria;
+    /** bytes enviados em todas as conexões, que nunca recomeça do zero */
+    private final AtomicLong bytesEnviados = new AtomicLong();
+    /** bytes da conexão atual já somados em bytesEnviados */
+    private long bytesContabilizados = 0;
+
+    /** token da sessão do jogador, 0 enquanto o lugar está livre */
+    private long token = 0;
+    /** socket da conexão sendo cuidada, fechada caso o jogador se reconecte */
+    private Socket atual = null;
+    /** até quando o lugar fica reservado depois de uma desconexão */
+    private long reservadoAte = 0;
+
+    /** tempo que um jogador desconectado tem para voltar antes de perder o jogo */
+    public static final long TEMPO_RECONEXAO = 10_000_000_000L;
+    private static final SecureRandom GERADOR_TOKENS = new SecureRandom();
 
+    /** atraso máximo acumulado antes de a conexão voltar ao ritmo normal */
+    private static final long ATRASO_MAXIMO = 1_000_000_000L;
+    /** intervalo entre dois pings enviados ao cliente */
+    private static final long INTERVALO_PING = 1_000_000_000L;
 
     /**
      * Cria um novo comunicador de jogo para um determinado jogador.
      *
-     * @param servidor socket do servidor para que a thread comunicadora aceite
-     *                 conexões
-     * @param jogador  número associado ao jogador, pode ser 1 ou 2
+     * @param jogador   número associado ao jogador, pode ser 1 ou 2
+     * @param simulacao          simulação que recebe as entradas do jogador
+     * @param relogio            relógio publicado pela simulação a cada tick
+     * @param transmissao        transmissão que codifica o estado de cada tick
+     * @param permitirCompressao se o servidor aceita comprimir os estados quando
+     *                           o cliente pede
+     * @param placar             o placar do servidor, ou null caso ele não guarde
+     *                           um
      */
-    public ComunicadorJogo(ServerSocket servidor, int jogador) {
-        this.servidor = servidor;
+    public ComunicadorJogo(int jogador, Simulacao simulacao, RelogioTicks relogio,
+            Transmissao transmissao, boolean permitirCompressao, Placar placar) {
         this.jogador = jogador;
+        this.simulacao = simulacao;
+        this.relogio = relogio;
+        this.transmissao = transmissao;
+        this.permitirCompressao = permitirCompressao;
+        this.placar = placar;
     }
 
     /**
@@ -55,49 +131,170 @@ public class ComunicadorJogo extends Thread {
     }
 
     /**
-     * dormirFrame dorme durante 1/30 segundos, e, caso o jogador seja o jogador 1,
-     * limpa o buffer de Eventos.
+     * oferecerConexao entrega uma conexão recém aceita para a thread
+     * comunicadora, caso o lugar do jogador esteja livre (sem cliente e sem uma
+     * reserva para reconexão).
+     *
+     * @param s      a socket da nova conexão
+     * @param pedido a saudação do cliente
+     * @return se a conexão foi aceita por esse comunicador
+     */
+    synchronized public boolean oferecerConexao(Socket s, Saudacao pedido) {
+        if (token != 0) {
+            return false;
+        }
+        do {
+            token = GERADOR_TOKENS.nextLong();
+        } while (token == 0);
+
+        conectado = true;
+        proximaConexao = s;
+        proximoPedido = pedido;
+        notify();
+        return true;
+    }
+
+    /**
+     * oferecerReconexao entrega a conexão de um cliente que já foi esse jogador,
+     * caso o token seja o da sessão atual. Se o servidor ainda não percebeu que a
+     * conexão anterior caiu, ela é fechada e substituída.
      *
-     * Isso é feito para manter consistência nos eventos de cada frame entre todos
-     * os jogadores.
+     * @param s      a socket da nova conexão
+     * @param pedido a saudação do cliente, com o token da sessão
+     * @return se a conexão foi aceita por esse comunicador
+     */
+    synchronized public boolean oferecerReconexao(Socket s, Saudacao pedido) {
+        if (pedido.getToken() == 0 || pedido.getToken() != token) {
+            return false;
+        }
+        fecharSemErro(proximaConexao);
+        fecharSemErro(atual);
+
+        conectado = true;
+        proximaConexao = s;
+        proximoPedido = pedido;
+        notify();
+        return true;
+    }
+
+    /**
+     * esperarConexao espera até que o {@link Recepcionista} entregue uma conexão,
+     * ou até o fim da reserva do lugar de um jogador desconectado.
      *
-     * @throws InterruptedException caso Thread.Sleep() seja interrompida
+     * @return a socket da nova conexão, ou null caso a reserva tenha acabado
+     * @throws InterruptedException caso a espera seja interrompida
      */
-    private void dormirFrame() throws InterruptedException {
-        Thread.sleep(33, 333);
+    synchronized private Socket esperarConexao() throws InterruptedException {
+        while (proximaConexao == null) {
+            if (token == 0) {
+                wait();
+                continue;
+            }
 
-        if (jogador == 1) {
-            EstadoJogo.pegarUnicoEstado().clearEventos();
+            long restante = reservadoAte - System.nanoTime();
+            if (restante <= 0) {
+                token = 0;
+                return null;
+            }
+            wait(restante / 1_000_000 + 1);
         }
+        Socket s = proximaConexao;
+        proximaConexao = null;
+        pedido = proximoPedido;
+        atual = s;
+        return s;
+    }
+
+    /**
+     * terminarConexao registra o fim da conexão atual, reservando o lugar do
+     * jogador caso ele ainda não tenha se reconectado.
+     */
+    synchronized private void terminarConexao() {
+        atual = null;
+        if (proximaConexao == null) {
+            conectado = false;
+            reservadoAte = System.nanoTime() + TEMPO_RECONEXAO;
+        }
+    }
+
+    /**
+     * @return o token da sessão atual
+     */
+    synchronized private long getToken() {
+        return token;
+    }
+
+    /**
+     * fecharSemErro fecha uma socket que não vai mais ser usada.
+     *
+     * @param s a socket, ou null
+     */
+    private static void fecharSemErro(Socket s) {
+        if (s == null) {
+            return;
+        }
+        try {
+            s.close();
+        } catch (IOException e) {
+            // a socket já estava fechada ou quebrada
+        }
+    }
+
+    /**
+     * @return o controle de taxa da conexão atual, ou null caso nenhum cliente
+     *         tenha se conectado ainda.
+     */
+    public ControleTaxa getControleTaxa() {
+        return this.controleTaxa;
+    }
+
+    /**
+     * @return a telemetria da conexão atual (ou da última conexão), ou null caso
+     *         nenhum cliente tenha se conectado ainda.
+     */
+    public Telemetria getTelemetria() {
+        return this.telemetria;
+    }
+
+    /**
+     * @return o total de bytes enviados a esse jogador, somando todas as suas
+     *         conexões
+     */
+    public long getBytesEnviados() {
+        return bytesEnviados.get();
     }
 
     /**
      * run espera até que um cliente esteja conectado e inicia o método de conexão.
      *
-     * O Space Invaders Multiplayer não é implementado tendo em mente o caso que os
-     * jogadores se desconectem e reconectem livremente do jogo, então, caso um
-     * cliente se desconcte, um evento de perda de jogo será registrado e tratado
-     * como desistência.
+     * Caso um cliente se desconecte, o seu lugar fica reservado por
+     * {@link TEMPO_RECONEXAO}; se ele não se reconectar nesse tempo, um evento
+     * de perda de jogo será registrado e tratado como desistência.
      */
     @Override
     public void run() {
         while (true) {
-            Socket s;
+            Socket s = null;
             try {
-                s = this.servidor.accept();
-                this.conectado = true;
+                s = esperarConexao();
+                if (s == null) {
+                    System.err.printf("jogador %d não se reconectou a tempo\n", jogador);
+                    simulacao.enfileirar(Entrada.desconectar(jogador));
+                    continue;
+                }
                 cuidarConexao(s);
-                s.close();
             } catch (IOException e) {
-                //ignora, mas perde o jogo da mesma forma
+                System.err.printf("jogador %d desconectado (%s): %s\n", jogador, e, telemetria);
             } catch (InterruptedException e) {
                 System.err.println("Interrompido");
             } catch (ClassNotFoundException e) {
                 System.err.println("Erro grave de conexão");
             }
 
-            EstadoJogo.pegarUnicoEstado().perderJogo();
-            this.conectado = false;
+            if (s != null) {
+                fecharSemErro(s);
+                terminarConexao();
+            }
         }
     }
 
@@ -105,9 +302,16 @@ public class ComunicadorJogo extends Thread {
      * cuidarConexao faz todas as ações de conectividade com um cliente, até que ele
      * se desconecte.
      *
-     * A conexão funciona da seguinte forma: primeiro envia-se o id do jogador
-     * associado ao cliente, depois, a cada frame, envia-se o estado atual de jogo
-     * e, após dormir, recebe-se a ação do frame.
+     * A conexão funciona da seguinte forma: primeiro responde-se a
+     * {@link Saudacao} do cliente com o id do jogador, o token da sessão e as
+     * capacidades negociadas (como a compressão dos estados), depois, a cada
+     * intervalo de ticks definido pelo {@link ControleTaxa}, envia-se o estado
+     * atual de jogo e recebe-se a ação do frame, esperando o próximo tick de
+     * envio no {@link RelogioTicks}.
+     *
+     * Os eventos de cada estado são lidos com base no tick do último estado
+     * enviado, da mesma forma que o cliente faz, então os dois lados sempre
+     * concordam sobre quais eventos já foram vistos.
      *
      * @param s a socket relacionada a conexão
      * @throws IOException            caso o cliente tenha se desconectado.
@@ -118,13 +322,75 @@ public class ComunicadorJogo extends Thread {
     public void cuidarConexao(Socket s)
             throws IOException, InterruptedException, ClassNotFoundException {
 
-        Canhao canhao = new Canhao(TelaJogo.MAX_X * 0.2f + 0.5f,
-                TelaJogo.MAX_Y - 0.5f, jogador);
+        // o estado e o reset da saída são enviados em uma única escrita, sem esperar
+        // pela confirmação do pacote anterior, para que o tempo de escrita medido
+        // seja o da própria conexão
+        s.setTcpNoDelay(true);
+        // os bytes são contados como passam pela rede, depois da compressão
+        ContadorSaida contadorSaida = new ContadorSaida(s.getOutputStream());
+        SaidaComprimida comprimida = new SaidaComprimida(
+                new BufferedOutputStream(contadorSaida), SaidaComprimida.NIVEL_PADRAO);
+        bytesContabilizados = 0;
+        try {
+            cuidarConexao(s, comprimida, contadorSaida);
+        } finally {
+            comprimida.terminar();
+            contabilizarBytes(contadorSaida);
+        }
+    }
+
+    /**
+     * contabilizarBytes soma ao total de todas as conexões os bytes enviados na
+     * conexão atual desde a última contagem.
+     *
+     * @param contadorSaida contador dos bytes enviados na conexão atual
+     */
+    private void contabilizarBytes(ContadorSaida contadorSaida) {
+        long bytes = contadorSaida.getBytes();
+        bytesEnviados.addAndGet(bytes - bytesContabilizados);
+        bytesContabilizados = bytes;
+    }
+
+    /**
+     * cuidarConexao continua {@link cuidarConexao(Socket)} depois que a saída foi
+     * criada, para que o compressor sempre seja liberado.
+     *
+     * @param s             a socket relacionada a conexão
+     * @param comprimida    a saída para o cliente, comprimida caso negociado
+     * @param contadorSaida contador dos bytes enviados ao cliente
+     * @throws IOException            caso o cliente tenha se desconectado.
+     * @throws InterruptedException   caso o processo seja interrompido
+     * @throws ClassNotFoundException caso o cliente envie uma classe inesperada
+     */
+    @SuppressWarnings("try")
+    private void cuidarConexao(Socket s, SaidaComprimida comprimida, ContadorSaida contadorSaida)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        Telemetria t = new Telemetria();
+        this.telemetria = t;
+
+        // a saudação vai antes de qualquer stream de objetos. Uma reconexão não
+        // precisa de nada especial: todo estado enviado é completo, então o
+        // primeiro já sincroniza o cliente
+        int capacidades = (permitirCompressao ? Saudacao.COMPRESSAO : 0)
+                | (placar != null ? Saudacao.PLACAR : 0);
+        Saudacao resposta = pedido.responder(capacidades, jogador, getToken(),
+                ControleTaxa.TICKS_POR_SEGUNDO, relogio.getTick());
+        resposta.escreverResposta(new DataOutputStream(comprimida));
 
-        ObjectOutputStream saida = new ObjectOutputStream(s.getOutputStream());
-        ObjectInputStream entrada = new ObjectInputStream(s.getInputStream());
+        ObjectOutputStream saida = new ObjectOutputStream(comprimida);
+        // o cabeçalho da stream deve chegar antes que o cliente crie a sua entrada
+        saida.flush();
+        if (resposta.possui(Saudacao.COMPRESSAO)) {
+            // a partir daqui tudo o que é enviado ao cliente é comprimido
+            comprimida.ativar();
+        }
+        ContadorEntrada contadorEntrada = new ContadorEntrada(s.getInputStream());
+        ObjectInputStream entrada = new ObjectInputStream(contadorEntrada);
 
         EstadoJogo ej = EstadoJogo.pegarUnicoEstado();
+        ControleTaxa controle = new ControleTaxa();
+        this.controleTaxa = controle;
 
         // qual evento representa a perda de vida para esse jogador.
         Evento perdaDeVida;
@@ -133,36 +399,152 @@ public class ComunicadorJogo extends Thread {
         else
             perdaDeVida = Evento.PERDEU_VIDA_P2;
 
-        // no primeiro frame, envia o id do jogador
-        saida.writeObject(jogador);
+        // último tick enviado ao cliente, -1 antes do primeiro envio
+        long ultimoTick = -1;
+        // tick em que o próximo envio deveria acontecer; o primeiro é imediato
+        long proximoTick = relogio.getTick();
+        // momento e número do último ping enviado
+        long ultimoPing = 0;
+        long pings = 0;
+        // array usado para copiar cada estado codificado para a saída
+        byte[] auxiliar = new byte[8192];
 
         while (true) {
-            // comunicação deve também ser sincronizada com relação aos personagens pois
-            // EstadoJogo contém apenas uma cópia de leitura dos desenhaveis.
-            synchronized (Personagem.getPersonagens()) {
-                synchronized (ej) {
-                    // envia o estado atual de jogo
-                    saida.writeObject(ej);
+            relogio.esperar(proximoTick);
+            long inicioEscrita = System.nanoTime();
+            List<Evento> eventos;
+            boolean primeiroEnvio;
+
+            if (inicioEscrita - ultimoPing >= INTERVALO_PING) {
+                // o ping é enviado sozinho, antes das travas e da serialização do
+                // estado, para que o tempo medido seja somente o da rede; o cliente
+                // o devolve antes de decodificar o estado
+                saida.writeObject(new Ping(pings++, System.nanoTime(), t.getRtt()));
+                saida.flush();
+                ultimoPing = inicioEscrita;
+            }
+
+            try (Perfil.Escopo envio = Perfil.abrir(Fase.ENVIO)) {
+                // comunicação deve também ser sincronizada com relação aos personagens
+                // pois EstadoJogo contém apenas uma cópia de leitura dos desenhaveis.
+                Perfil.Escopo trava = Perfil.abrir(Fase.TRAVA);
+                BufferCompartilhado quadro;
+                synchronized (Personagem.getPersonagens()) {
+                    synchronized (ej) {
+                        trava.close();
+
+                        // o estado atual de jogo, serializado uma única vez por tick para
+                        // todos os jogadores e espectadores
+                        quadro = transmissao.codificado(ej);
+
+                        // o primeiro estado não tem eventos novos para o cliente
+                        eventos = (ultimoTick < 0) ? Collections.<Evento>emptyList()
+                                : ej.getEventosDesde(ultimoTick);
+                        primeiroEnvio = ultimoTick < 0;
+                        ultimoTick = ej.getTick();
+                    }
+                }
+                if (primeiroEnvio) {
+                    // a conexão só entra no jogo depois do primeiro estado, para que uma
+                    // perda de vida avisada de novo caia em um tick que o cliente ainda
+                    // vai ver como novo
+                    simulacao.enfileirar(Entrada.conectar(jogador));
+                }
+
+                // os bytes codificados começam com um reset e continuam a stream de
+                // objetos da saída; ela é esvaziada antes para manter a ordem
+                saida.flush();
+                try {
+                    quadro.escreverEm(comprimida, auxiliar);
+                } finally {
+                    quadro.liberar();
                 }
+
+                // o cliente numerou os objetos do estado, que a saída não conhece:
+                // o reset faz os dois lados esquecerem tudo, para que os próximos
+                // objetos da saída, como o ping, tenham a mesma numeração dos dois
+                // lados
+                saida.reset();
+                saida.flush();
             }
+            long fimEscrita = System.nanoTime();
+            long rtt = -1;
 
             // se o jogador perdeu uma vida, espera até ele entrar novamente
-            if (ej.getEventos().contains(perdaDeVida)) {
-                while ((Acao) entrada.readObject() != Acao.ENTRAR_JOGO) {
-                    dormirFrame();
+            if (eventos.contains(perdaDeVida)) {
+                while (lerAcao(entrada, saida, t) != Acao.ENTRAR_JOGO) {
+                    // descarta ações até o jogador confirmar a volta
                 }
                 // como o canhão anterior foi destruido, cria um novo
-                canhao = new Canhao(
-                        TelaJogo.MAX_X * 0.2f + 0.5f,
-                        TelaJogo.MAX_Y - 0.5f, jogador);
+                simulacao.enfileirar(Entrada.entrar(jogador));
+                simulacao.enfileirar(Entrada.acao(jogador, lerAcao(entrada, saida, t),
+                        controle.getTicksPorEnvio()));
+            } else {
+                simulacao.enfileirar(Entrada.acao(jogador, lerAcao(entrada, saida, t),
+                        controle.getTicksPorEnvio()));
+                // na vitória de um nível o cliente mostra a tela de transição antes de
+                // responder, e essa espera não é da conexão
+                if (!eventos.contains(Evento.GANHOU_NIVEL)) {
+                    rtt = System.nanoTime() - fimEscrita;
+                }
+            }
+
+            t.registrarEnvio(fimEscrita - inicioEscrita);
+            t.registrarBytes(contadorSaida.getBytes(), contadorEntrada.getBytes());
+            contabilizarBytes(contadorSaida);
+
+            // o atraso é o quanto o tick enviado está depois do tick em que o envio
+            // deveria ter acontecido; ele só cresce se o cliente não dá conta da taxa
+            long atraso = Math.max(0, ultimoTick - proximoTick) * RelogioTicks.NANOS_POR_TICK;
+            int mudancas = controle.getMudancas();
+            controle.registrar(fimEscrita - inicioEscrita, rtt, atraso);
+
+            if (controle.getMudancas() != mudancas || atraso > ATRASO_MAXIMO) {
+                // a taxa mudou ou o cliente ficou muito para trás: o atraso
+                // acumulado é perdoado em vez de enviar estados em rajada
+                proximoTick = ultimoTick;
+            }
+            // o próximo envio é no próximo múltiplo dos ticks por envio, para que
+            // jogadores com a mesma taxa recebam o mesmo tick
+            int ticksPorEnvio = controle.getTicksPorEnvio();
+            proximoTick = (proximoTick / ticksPorEnvio + 1) * ticksPorEnvio;
+        }
+    }
+
+    /**
+     * lerAcao lê a próxima ação do cliente, registrando os pings devolvidos e
+     * respondendo os pedidos de classificação que chegarem antes dela.
+     *
+     * @param entrada a stream de entrada do cliente
+     * @param saida   a stream de saída para o cliente
+     * @param t       a telemetria da conexão
+     * @return a ação lida
+     * @throws IOException            caso o cliente tenha se desconectado
+     * @throws ClassNotFoundException caso o cliente envie uma classe inesperada
+     */
+    private Acao lerAcao(ObjectInputStream entrada, ObjectOutputStream saida, Telemetria t)
+            throws IOException, ClassNotFoundException {
+        while (true) {
+            Object lido = entrada.readObject();
+            long chegada = System.nanoTime();
+
+            if (lido instanceof Ping) {
+                t.registrarRtt(chegada - ((Ping) lido).getMomento());
+                continue;
+            }
+            if (lido instanceof PedidoClassificacao) {
+                if (placar == null) {
+                    throw new IOException("o cliente pediu um placar que não foi negociado");
+                }
+                saida.writeObject(placar.classificacao(jogador,
+                        ((PedidoClassificacao) lido).getQuantidade()));
+                saida.reset();
+                saida.flush();
+                continue;
             }
 
-            // reseta a saida, pois, caso contrário, o cliente sempre receberia o mesmo
-            // estado: o objeto enviado sempre é o mesmo, então ObjectOutputStream tenta
-            // otimizar a comunicação mandando uma versão em cache do EstadoJogo.
-            saida.reset();
-            dormirFrame();
-            canhao.agir((Acao) entrada.readObject());
+            t.registrarChegada(chegada);
+            return (Acao) lido;
         }
     }
 }
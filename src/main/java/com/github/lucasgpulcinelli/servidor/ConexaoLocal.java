@@ -0,0 +1,206 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+import com.github.lucasgpulcinelli.comunicacao.Conexao;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+import com.github.lucasgpulcinelli.comunicacao.Telemetria;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * ConexaoLocal roda uma partida de um jogador no próprio processo do cliente,
+ * sem sockets e sem serialização: esta thread executa a {@link Simulacao} como
+ * o {@link Main} do servidor faria, e o cliente a usa como uma
+ * {@link Conexao} qualquer.
+ *
+ * A cada tick, a thread copia o estado de jogo uma única vez, com
+ * {@link EstadoJogo#copiar}, e publica a cópia, que não muda mais; o cliente
+ * recebe essa mesma cópia por referência, sempre a mais nova, pulando as que
+ * não teve tempo de ler. As ações do cliente são enfileiradas direto na
+ * simulação, valendo pelos ticks que passaram entre os dois últimos estados
+ * recebidos, como o {@link ComunicadorJogo} faz com a taxa de cada conexão.
+ *
+ * Como nada passa pela rede, a partida local não aceita um segundo jogador nem
+ * espectadores, e não guarda um placar.
+ *
+ * @see comunicacao.ConexaoCliente
+ */
+public class ConexaoLocal extends Thread implements Conexao {
+    /** o jogador local */
+    private static final int JOGADOR = 1;
+
+    private final EstadoJogo ej;
+    private final Simulacao simulacao;
+    private final Telemetria telemetria = new Telemetria();
+
+    /** última cópia do estado publicada pela simulação, ou null */
+    private EstadoJogo publicado = null;
+    /** se a conexão foi fechada pelo cliente */
+    private volatile boolean fechada = false;
+
+    /** tick do último estado recebido pelo cliente, -1 antes do primeiro */
+    private long ultimoTick = -1;
+    /** ticks entre os dois últimos estados recebidos pelo cliente */
+    private int ticksPorEstado = 1;
+    /** eventos novos do último estado recebido */
+    private List<Evento> eventos = Collections.emptyList();
+
+    /**
+     * Cria uma partida local, que só começa quando o cliente recebe o seu
+     * jogador.
+     *
+     * @param semente semente da partida
+     */
+    public ConexaoLocal(long semente) {
+        super("partida-local");
+        setDaemon(true);
+        ej = EstadoJogo.criar(Personagem.getDesenhaveis());
+        simulacao = new Simulacao(semente, ej, null);
+    }
+
+    /**
+     * receberJogador coloca o jogador no jogo e começa a partida.
+     *
+     * @return sempre o jogador 1
+     */
+    @Override
+    public int receberJogador() {
+        simulacao.enfileirar(Entrada.entrar(JOGADOR));
+        start();
+        return JOGADOR;
+    }
+
+    /**
+     * run executa a lógica de jogo em 60 ticks por segundo, publicando uma cópia
+     * do estado depois de cada tick, até a conexão ser fechada.
+     */
+    @Override
+    public void run() {
+        simulacao.iniciar();
+        try {
+            while (!fechada) {
+                boolean ganhouNivel = simulacao.tick();
+                publicar();
+                if (ganhouNivel) {
+                    Thread.sleep(1000, 0);
+                    simulacao.proximoNivel();
+                    continue;
+                }
+                Thread.sleep(16, 666); // a lógica do jogo roda em 60 fps
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Partida local interrompida");
+        }
+    }
+
+    /**
+     * publicar copia o estado do tick que acabou de terminar e acorda o cliente.
+     */
+    private void publicar() {
+        EstadoJogo copia;
+        synchronized (Personagem.getPersonagens()) {
+            copia = ej.copiar();
+        }
+        synchronized (this) {
+            publicado = copia;
+            notifyAll();
+        }
+    }
+
+    /**
+     * esperarEstado espera uma cópia mais nova que a última recebida.
+     *
+     * @return a cópia mais nova
+     * @throws IOException caso a conexão seja fechada ou a espera interrompida
+     */
+    synchronized private EstadoJogo esperarEstado() throws IOException {
+        while (publicado == null || publicado.getTick() <= ultimoTick) {
+            if (fechada) {
+                throw new IOException("conexão local fechada");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("espera do estado interrompida");
+            }
+        }
+        return publicado;
+    }
+
+    /**
+     * receberEstado espera o próximo tick da partida e devolve a cópia
+     * publicada, sem copiá-la de novo.
+     *
+     * @return o estado de jogo mais novo
+     * @throws IOException caso a conexão seja fechada
+     */
+    @Override
+    public EstadoJogo receberEstado() throws IOException {
+        EstadoJogo estadoJogo = esperarEstado();
+        telemetria.registrarChegada(System.nanoTime());
+
+        // o primeiro estado não tem eventos novos
+        if (ultimoTick < 0) {
+            eventos = Collections.emptyList();
+        } else {
+            eventos = estadoJogo.getEventosDesde(ultimoTick);
+            ticksPorEstado = (int) Math.max(1, estadoJogo.getTick() - ultimoTick);
+        }
+        ultimoTick = estadoJogo.getTick();
+        return estadoJogo;
+    }
+
+    @Override
+    public List<Evento> getEventos() {
+        return eventos;
+    }
+
+    /**
+     * enviarAcao enfileira a ação do jogador na simulação; a confirmação de
+     * volta depois de uma vida perdida recria o canhão.
+     *
+     * @param acao a ação a ser enviada
+     */
+    @Override
+    public void enviarAcao(Acao acao) {
+        if (acao == Acao.ENTRAR_JOGO) {
+            simulacao.enfileirar(Entrada.entrar(JOGADOR));
+        } else {
+            simulacao.enfileirar(Entrada.acao(JOGADOR, acao, ticksPorEstado));
+        }
+    }
+
+    /**
+     * @return sempre null, já que a partida local não guarda um placar
+     */
+    @Override
+    public Classificacao pedirClassificacao(int quantidade) {
+        return null;
+    }
+
+    /**
+     * @return as medidas da conexão; somente as chegadas dos estados são medidas
+     */
+    @Override
+    public Telemetria getTelemetria() {
+        return telemetria;
+    }
+
+    /**
+     * fechar tira o jogador do jogo e para a partida.
+     */
+    @Override
+    public void fechar() {
+        simulacao.enfileirar(Entrada.desconectar(JOGADOR));
+        synchronized (this) {
+            fechada = true;
+            notifyAll();
+        }
+    }
+}
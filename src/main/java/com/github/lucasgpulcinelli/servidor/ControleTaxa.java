@@ -0,0 +1,275 @@
+package com.github.lucasgpulcinelli.servidor;
+
+/**
+ * ControleTaxa escolhe a taxa de envio de estados de jogo para um único
+ * cliente com base na qualidade medida da conexão.
+ *
+ * A cada estado enviado, o {@link ComunicadorJogo} registra quanto tempo a
+ * escrita do estado levou, o tempo de ida e volta (entre o fim da escrita e a
+ * chegada da ação do jogador) e o atraso acumulado com relação ao intervalo
+ * esperado entre envios. Caso a conexão passe a ocupar quase todo o intervalo,
+ * ou o atraso comece a crescer, a taxa desce um degrau; caso a conexão fique
+ * folgada por um tempo, a taxa sobe um degrau.
+ *
+ * As taxas possíveis dividem os 60 ticks por segundo da lógica do jogo, assim
+ * cada estado enviado sempre corresponde a um número inteiro de ticks.
+ *
+ * A taxa atual, as medidas, o número de mudanças por {@link Causa} e a causa
+ * da última mudança são exportados pelo {@link ServidorMetricas}.
+ *
+ * @see ComunicadorJogo
+ */
+public class ControleTaxa {
+    /**
+     * Causa é o que levou a uma mudança de taxa. O conjunto é pequeno e fixo, para
+     * que possa ser o rótulo de uma métrica.
+     */
+    public enum Causa {
+        /** redução por atraso crescente */
+        ATRASO("atraso"),
+        /** redução por conexão saturada */
+        SATURADA("saturada"),
+        /** aumento por conexão folgada */
+        FOLGADA("folgada");
+
+        private final String nome;
+
+        /**
+         * @param nome nome da causa nas métricas
+         */
+        private Causa(String nome) {
+            this.nome = nome;
+        }
+
+        /**
+         * @return o nome da causa nas métricas
+         */
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /** taxas de envio possíveis, em estados por segundo, da maior para a menor */
+    public static final int[] TAXAS = { 60, 30, 20, 10 };
+
+    /** número de ticks da lógica de jogo por segundo */
+    public static final int TICKS_POR_SEGUNDO = 60;
+
+    /** índice da taxa inicial em TAXAS (30 estados por segundo) */
+    private static final int TAXA_INICIAL = 1;
+
+    /** fração do intervalo acima da qual a conexão é considerada saturada */
+    private static final double OCUPACAO_ALTA = 0.9;
+
+    /** fração do intervalo abaixo da qual a conexão é considerada folgada */
+    private static final double OCUPACAO_BAIXA = 0.4;
+
+    /** número de envios seguidos com atraso crescente para reduzir a taxa */
+    private static final int ENVIOS_ATRASO_CRESCENTE = 5;
+
+    /** tempo mínimo entre duas mudanças de taxa */
+    private static final long NANOS_ENTRE_MUDANCAS = 1_000_000_000L;
+
+    /** tempo que a conexão deve ficar folgada antes de a taxa subir */
+    private static final long NANOS_FOLGA_PARA_SUBIR = 3_000_000_000L;
+
+    /** índice da taxa atual em TAXAS */
+    private volatile int indiceTaxa = TAXA_INICIAL;
+
+    /** média móvel do tempo de escrita de um estado, em nanossegundos */
+    private volatile double mediaEscrita = 0;
+
+    /** média móvel do tempo de ida e volta, em nanossegundos */
+    private volatile double mediaRtt = 0;
+
+    /** atraso acumulado atual com relação ao intervalo esperado */
+    private volatile long atraso = 0;
+
+    /** número de envios seguidos em que o atraso cresceu */
+    private int enviosAtrasoCrescente = 0;
+
+    /** momento da última mudança de taxa */
+    private long ultimaMudanca = System.nanoTime();
+
+    /** momento desde quando a conexão está folgada, ou -1 */
+    private long folgadaDesde = -1;
+
+    /** número de mudanças de taxa desde o início da conexão */
+    private volatile int mudancas = 0;
+
+    /** número de mudanças de taxa de cada causa, indexado pelo ordinal */
+    private final long[] mudancasPorCausa = new long[Causa.values().length];
+
+    /** causa da última mudança de taxa, ou null antes da primeira */
+    private volatile Causa ultimaCausa = null;
+    /** motivo da última mudança de taxa, com as medidas */
+    private volatile String motivo = "taxa inicial";
+
+    /**
+     * Cria um novo controle de taxa, iniciando em 30 estados por segundo.
+     */
+    public ControleTaxa() {
+    }
+
+    /**
+     * @return a taxa atual em estados por segundo
+     */
+    public int getTaxa() {
+        return TAXAS[indiceTaxa];
+    }
+
+    /**
+     * @return o intervalo entre dois envios na taxa atual, em nanossegundos
+     */
+    public long getIntervaloNanos() {
+        return 1_000_000_000L / getTaxa();
+    }
+
+    /**
+     * @return quantos ticks da lógica de jogo passam entre dois envios
+     */
+    public int getTicksPorEnvio() {
+        return TICKS_POR_SEGUNDO / getTaxa();
+    }
+
+    /**
+     * @return a média móvel do tempo de escrita, em milissegundos
+     */
+    public double getMediaEscritaMs() {
+        return mediaEscrita / 1e6;
+    }
+
+    /**
+     * @return a média móvel do tempo de ida e volta, em milissegundos
+     */
+    public double getMediaRttMs() {
+        return mediaRtt / 1e6;
+    }
+
+    /**
+     * @return o atraso acumulado atual, em milissegundos
+     */
+    public double getAtrasoMs() {
+        return atraso / 1e6;
+    }
+
+    /**
+     * @return a fração do intervalo entre envios ocupada pela escrita e pelo
+     *         tempo de ida e volta
+     */
+    public double getOcupacao() {
+        return (mediaEscrita + mediaRtt) / getIntervaloNanos();
+    }
+
+    /**
+     * @return o número de mudanças de taxa desde o início da conexão
+     */
+    public int getMudancas() {
+        return mudancas;
+    }
+
+    /**
+     * @param causa uma causa de mudança
+     * @return o número de mudanças de taxa dessa causa
+     */
+    public synchronized long getMudancas(Causa causa) {
+        return mudancasPorCausa[causa.ordinal()];
+    }
+
+    /**
+     * @return a causa da última mudança de taxa, ou null caso a taxa nunca tenha
+     *         mudado
+     */
+    public Causa getUltimaCausa() {
+        return ultimaCausa;
+    }
+
+    /**
+     * @return o motivo da última mudança de taxa, com as medidas
+     */
+    public String getMotivo() {
+        return motivo;
+    }
+
+    /**
+     * registrar adiciona as medidas de um envio e, se necessário, muda a taxa.
+     *
+     * @param nanosEscrita tempo que a escrita do estado levou
+     * @param nanosRtt     tempo entre o fim da escrita e a chegada da ação, ou -1
+     *                     caso o envio não tenha uma medida válida (como quando o
+     *                     jogador está esperando para voltar ao jogo)
+     * @param nanosAtraso  atraso acumulado com relação ao intervalo esperado
+     */
+    public synchronized void registrar(long nanosEscrita, long nanosRtt, long nanosAtraso) {
+        mediaEscrita += (nanosEscrita - mediaEscrita) / 8;
+        if (nanosRtt >= 0) {
+            mediaRtt += (nanosRtt - mediaRtt) / 8;
+        }
+
+        // atrasos menores que meio intervalo são só imprecisão do sleep
+        if (nanosAtraso > atraso && nanosAtraso > getIntervaloNanos() / 2) {
+            enviosAtrasoCrescente++;
+        } else {
+            enviosAtrasoCrescente = 0;
+        }
+        atraso = nanosAtraso;
+
+        long agora = System.nanoTime();
+        double ocupacao = getOcupacao();
+
+        if (ocupacao < OCUPACAO_BAIXA) {
+            if (folgadaDesde < 0) {
+                folgadaDesde = agora;
+            }
+        } else {
+            folgadaDesde = -1;
+        }
+
+        if (agora - ultimaMudanca < NANOS_ENTRE_MUDANCAS) {
+            return;
+        }
+
+        if (enviosAtrasoCrescente >= ENVIOS_ATRASO_CRESCENTE) {
+            mudarTaxa(+1, Causa.ATRASO, String.format("atraso crescendo por %d envios (%.1fms)",
+                    enviosAtrasoCrescente, getAtrasoMs()), agora);
+        } else if (ocupacao > OCUPACAO_ALTA) {
+            mudarTaxa(+1, Causa.SATURADA, String.format("escrita %.1fms + rtt %.1fms ocupam %.0f%% do intervalo",
+                    getMediaEscritaMs(), getMediaRttMs(), ocupacao * 100), agora);
+        } else if (folgadaDesde >= 0 && agora - folgadaDesde >= NANOS_FOLGA_PARA_SUBIR) {
+            mudarTaxa(-1, Causa.FOLGADA, String.format("escrita %.1fms + rtt %.1fms ocupam %.0f%% do intervalo",
+                    getMediaEscritaMs(), getMediaRttMs(), ocupacao * 100), agora);
+        }
+    }
+
+    /**
+     * mudarTaxa move a taxa atual em TAXAS, caso ainda exista uma taxa na direção
+     * pedida.
+     *
+     * @param direcao +1 para uma taxa menor, -1 para uma taxa maior
+     * @param causa   a causa da mudança
+     * @param motivo  o motivo da mudança, com as medidas
+     * @param agora   o momento atual
+     */
+    private void mudarTaxa(int direcao, Causa causa, String motivo, long agora) {
+        int novoIndice = indiceTaxa + direcao;
+        if (novoIndice < 0 || novoIndice >= TAXAS.length) {
+            return;
+        }
+
+        int taxaAnterior = getTaxa();
+        indiceTaxa = novoIndice;
+        this.motivo = String.format("%d -> %d estados/s: %s", taxaAnterior, getTaxa(), motivo);
+        mudancasPorCausa[causa.ordinal()]++;
+        ultimaCausa = causa;
+        mudancas++;
+        ultimaMudanca = agora;
+        folgadaDesde = -1;
+        enviosAtrasoCrescente = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d estados/s, escrita %.2fms, rtt %.2fms, atraso %.1fms, %d mudanças (%s)",
+                getTaxa(), getMediaEscritaMs(), getMediaRttMs(), getAtrasoMs(), mudancas, motivo);
+    }
+}
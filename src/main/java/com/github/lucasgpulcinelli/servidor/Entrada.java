@@ -0,0 +1,165 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+
+/**
+ * Entrada é algo que um jogador fez e que muda a lógica do jogo: uma ação, a
+ * conexão do cliente, a entrada de um novo canhão no jogo ou a desconexão do
+ * cliente.
+ *
+ * As entradas são criadas pelas threads de conexão e aplicadas somente pela
+ * thread da lógica de jogo, no início de um tick, pela {@link Simulacao}. Elas
+ * também são exatamente o que o {@link GravadorPartida} guarda para que a
+ * partida possa ser reproduzida.
+ *
+ * @see Simulacao
+ */
+public final class Entrada {
+    /** o jogador fez uma ação com o seu canhão */
+    public static final int ACAO = 0;
+    /** o jogador entrou no jogo com um novo canhão */
+    public static final int ENTRAR = 1;
+    /** o cliente do jogador se desconectou, o que faz os jogadores perderem */
+    public static final int DESCONECTAR = 2;
+    /**
+     * o cliente do jogador se conectou ou se reconectou; somente um jogador novo
+     * ganha um canhão, e um que perdeu o seu volta com a confirmação do cliente
+     */
+    public static final int CONECTAR = 3;
+
+    /** o tipo da entrada: ACAO, ENTRAR, DESCONECTAR ou CONECTAR */
+    private final int tipo;
+    /** o jogador associado, 1 ou 2 */
+    private final int jogador;
+    /** a ação, somente para entradas do tipo ACAO */
+    private final Acao acao;
+    /** por quantos frames a ação vale, somente para entradas do tipo ACAO */
+    private final int framesPorAcao;
+
+    /**
+     * Cria uma nova entrada, privado pois as entradas são criadas pelos métodos
+     * estáticos de cada tipo.
+     *
+     * @param tipo          o tipo da entrada
+     * @param jogador       o jogador associado
+     * @param acao          a ação, ou null
+     * @param framesPorAcao por quantos frames a ação vale
+     */
+    private Entrada(int tipo, int jogador, Acao acao, int framesPorAcao) {
+        this.tipo = tipo;
+        this.jogador = jogador;
+        this.acao = acao;
+        this.framesPorAcao = framesPorAcao;
+    }
+
+    /**
+     * @param jogador       o jogador associado
+     * @param acao          a ação do jogador
+     * @param framesPorAcao por quantos frames a ação vale
+     * @return uma nova entrada de ação
+     */
+    public static Entrada acao(int jogador, Acao acao, int framesPorAcao) {
+        return new Entrada(ACAO, jogador, acao, framesPorAcao);
+    }
+
+    /**
+     * @param jogador o jogador associado
+     * @return uma nova entrada de entrada no jogo
+     */
+    public static Entrada entrar(int jogador) {
+        return new Entrada(ENTRAR, jogador, null, 0);
+    }
+
+    /**
+     * @param jogador o jogador associado
+     * @return uma nova entrada de desconexão
+     */
+    public static Entrada desconectar(int jogador) {
+        return new Entrada(DESCONECTAR, jogador, null, 0);
+    }
+
+    /**
+     * @param jogador o jogador associado
+     * @return uma nova entrada de conexão
+     */
+    public static Entrada conectar(int jogador) {
+        return new Entrada(CONECTAR, jogador, null, 0);
+    }
+
+    /**
+     * @return o tipo da entrada: ACAO, ENTRAR, DESCONECTAR ou CONECTAR
+     */
+    public int getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @return o jogador associado
+     */
+    public int getJogador() {
+        return jogador;
+    }
+
+    /**
+     * @return a ação, somente para entradas do tipo ACAO
+     */
+    public Acao getAcao() {
+        return acao;
+    }
+
+    /**
+     * @return por quantos frames a ação vale, somente para entradas do tipo ACAO
+     */
+    public int getFramesPorAcao() {
+        return framesPorAcao;
+    }
+
+    /**
+     * escrever guarda a entrada em um ou dois bytes: o primeiro tem o tipo nos 4
+     * bits altos e o jogador nos 4 bits baixos; entradas de ação têm um segundo
+     * byte com a ação nos 4 bits altos e os frames por ação nos 4 bits baixos.
+     *
+     * @param saida onde a entrada será escrita
+     * @throws IOException caso a escrita falhe
+     */
+    public void escrever(DataOutput saida) throws IOException {
+        saida.writeByte(tipo << 4 | jogador);
+        if (tipo == ACAO) {
+            saida.writeByte(acao.ordinal() << 4 | framesPorAcao);
+        }
+    }
+
+    /**
+     * ler lê uma entrada escrita por {@link escrever}.
+     *
+     * @param entrada de onde a entrada será lida
+     * @return a entrada lida
+     * @throws IOException caso a leitura falhe ou a entrada seja inválida
+     */
+    public static Entrada ler(DataInput entrada) throws IOException {
+        int b = entrada.readUnsignedByte();
+        int tipo = b >> 4;
+        int jogador = b & 0xf;
+
+        switch (tipo) {
+            case ACAO:
+                int a = entrada.readUnsignedByte();
+                if ((a >> 4) >= Acao.values().length) {
+                    throw new IOException("ação inválida: " + (a >> 4));
+                }
+                return acao(jogador, Acao.values()[a >> 4], a & 0xf);
+            case ENTRAR:
+                return entrar(jogador);
+            case DESCONECTAR:
+                return desconectar(jogador);
+            case CONECTAR:
+                return conectar(jogador);
+            default:
+                throw new IOException("tipo de entrada inválido: " + tipo);
+        }
+    }
+}
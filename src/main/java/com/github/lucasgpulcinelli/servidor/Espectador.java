@@ -0,0 +1,216 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.github.lucasgpulcinelli.comunicacao.ConexaoCliente;
+import com.github.lucasgpulcinelli.comunicacao.Saudacao;
+
+/**
+ * Espectador cuida, em uma thread própria, de uma conexão somente de leitura:
+ * ela recebe os mesmos estados de jogo que os jogadores, mas nunca cria um
+ * canhão nem lê ações.
+ *
+ * A thread só bloqueia na fila e na escrita do canal, sem travas de monitor,
+ * então funciona bem como uma thread virtual: milhares de espectadores ocupam
+ * somente algumas threads do sistema.
+ *
+ * Os estados já codificados pela {@link Transmissao} chegam por uma fila
+ * limitada; caso o espectador não consiga acompanhar, os estados mais antigos
+ * são descartados, pois somente o mais recente importa.
+ *
+ * Todos os estados que estiverem na fila são escritos de uma vez no canal, com
+ * uma escrita agrupada, e cada {@link BufferCompartilhado} é liberado assim
+ * que foi escrito por inteiro. As visões usadas para escrever cada buffer são
+ * guardadas e reutilizadas, para que o envio não crie lixo.
+ *
+ * @see Transmissao
+ */
+public class Espectador implements Runnable {
+    /** número máximo de estados esperando para serem enviados */
+    private static final int TAMANHO_FILA = 3;
+    /**
+     * número máximo de visões guardadas; só é atingido caso o pool tenha
+     * descartado e recriado muitos buffers
+     */
+    private static final int MAXIMO_VISOES = 256;
+
+    private final SocketChannel canal;
+    private final Saudacao pedido;
+    private final Transmissao transmissao;
+    private final ArrayBlockingQueue<BufferCompartilhado> fila = new ArrayBlockingQueue<>(TAMANHO_FILA);
+
+    /** visão de cada buffer já escrito por este espectador */
+    private final IdentityHashMap<BufferCompartilhado, ByteBuffer> visoes = new IdentityHashMap<>();
+    /** buffers sendo escritos e suas visões, reutilizados a cada escrita */
+    private final BufferCompartilhado[] pendentes = new BufferCompartilhado[TAMANHO_FILA];
+    private final ByteBuffer[] escritas = new ByteBuffer[TAMANHO_FILA];
+
+    /** número de estados descartados por falta de espaço na fila */
+    private volatile long descartados = 0;
+    /**
+     * se a thread do espectador já terminou; a partir daí, estados que ainda
+     * chegarem são liberados por quem os enfileirou
+     */
+    private volatile boolean fechado = false;
+
+    /**
+     * Cria um novo espectador, que só começa a enviar estados quando a thread for
+     * iniciada.
+     *
+     * @param canal       o canal do espectador
+     * @param pedido      a saudação do cliente
+     * @param transmissao a transmissão de onde os estados vêm
+     */
+    public Espectador(SocketChannel canal, Saudacao pedido, Transmissao transmissao) {
+        this.canal = canal;
+        this.pedido = pedido;
+        this.transmissao = transmissao;
+    }
+
+    /**
+     * enfileirar coloca um estado codificado na fila do espectador, descartando
+     * o mais antigo caso a fila esteja cheia. Nunca bloqueia.
+     *
+     * A {@link Transmissao} pode enfileirar um estado depois que o espectador
+     * se desconectou e esvaziou a fila; nesse caso, a fila é esvaziada de novo
+     * aqui, para que todo buffer volte ao pool.
+     *
+     * @param quadro o estado codificado, com uma referência que passa a ser do
+     *               espectador
+     */
+    void enfileirar(BufferCompartilhado quadro) {
+        while (!fila.offer(quadro)) {
+            BufferCompartilhado antigo = fila.poll();
+            if (antigo != null) {
+                antigo.liberar();
+                descartados++;
+            }
+        }
+        if (fechado) {
+            liberarFila();
+        }
+    }
+
+    /**
+     * liberarFila devolve ao pool todos os estados da fila. Cada estado é tirado
+     * da fila uma única vez, então pode ser chamado por mais de uma thread.
+     */
+    private void liberarFila() {
+        BufferCompartilhado quadro;
+        while ((quadro = fila.poll()) != null) {
+            quadro.liberar();
+        }
+    }
+
+    /**
+     * @return o número de estados descartados por falta de espaço na fila
+     */
+    public long getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * visao retorna a visão deste espectador para um buffer, pronta para ser
+     * escrita do começo.
+     *
+     * @param quadro o buffer
+     * @return a visão
+     */
+    private ByteBuffer visao(BufferCompartilhado quadro) {
+        ByteBuffer v = visoes.get(quadro);
+        if (v == null || v.capacity() != quadro.getCapacidade()) {
+            if (visoes.size() >= MAXIMO_VISOES) {
+                visoes.clear();
+            }
+            v = quadro.visao();
+            visoes.put(quadro, v);
+            return v;
+        }
+
+        return quadro.rebobinar(v);
+    }
+
+    /**
+     * escreverPendentes escreve os estados tirados da fila com escritas
+     * agrupadas, liberando cada um.
+     *
+     * @param n quantos estados estão pendentes
+     * @throws IOException caso a escrita falhe
+     */
+    private void escreverPendentes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            escritas[i] = visao(pendentes[i]);
+        }
+
+        int primeiro = 0;
+        while (primeiro < n) {
+            transmissao.registrarEnviados(canal.write(escritas, primeiro, n - primeiro));
+            while (primeiro < n && !escritas[primeiro].hasRemaining()) {
+                pendentes[primeiro].liberar();
+                pendentes[primeiro] = null;
+                escritas[primeiro] = null;
+                primeiro++;
+            }
+        }
+    }
+
+    /**
+     * run envia a saudação e o cabeçalho da stream, e depois escreve os estados
+     * da fila até o espectador se desconectar.
+     */
+    @Override
+    public void run() {
+        try {
+            canal.socket().setTcpNoDelay(true);
+
+            // espectadores nunca usam compressão nem outra capacidade, pois o mesmo
+            // estado codificado é enviado para todos eles
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            pedido.responder(0, ConexaoCliente.ESPECTADOR, 0, ControleTaxa.TICKS_POR_SEGUNDO,
+                    transmissao.getUltimoTick()).escreverResposta(new DataOutputStream(bytes));
+            ObjectOutputStream cabecalho = new ObjectOutputStream(bytes);
+            cabecalho.flush();
+            ByteBuffer inicio = ByteBuffer.wrap(bytes.toByteArray());
+            while (inicio.hasRemaining()) {
+                transmissao.registrarEnviados(canal.write(inicio));
+            }
+
+            while (true) {
+                // espera um estado e leva junto todos os outros que já estão na fila
+                int n = 0;
+                pendentes[n++] = fila.take();
+                BufferCompartilhado proximo;
+                while (n < pendentes.length && (proximo = fila.poll()) != null) {
+                    pendentes[n++] = proximo;
+                }
+
+                escreverPendentes(n);
+            }
+        } catch (IOException | InterruptedException e) {
+            // o espectador se desconectou
+        }
+
+        transmissao.removerEspectador(this);
+        fechado = true;
+        try {
+            canal.close();
+        } catch (IOException e) {
+        }
+
+        // devolve ao pool tudo o que não chegou a ser escrito
+        for (int i = 0; i < pendentes.length; i++) {
+            if (pendentes[i] != null) {
+                pendentes[i].liberar();
+                pendentes[i] = null;
+            }
+        }
+        liberarFila();
+    }
+}
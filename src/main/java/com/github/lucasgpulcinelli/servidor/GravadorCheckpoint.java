@@ -0,0 +1,241 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.github.lucasgpulcinelli.sistema.Checkpoint;
+
+/**
+ * GravadorCheckpoint salva periodicamente o estado completo da partida em um
+ * arquivo, para que o servidor possa voltar à mesma partida depois de morrer.
+ *
+ * A thread da lógica de jogo, em {@link salvar}, somente copia o estado com
+ * {@link Checkpoint} para um de dois buffers reutilizados, sem esperar; esta
+ * thread calcula o CRC, escreve o checkpoint em um arquivo temporário, força os dados para o disco e troca o arquivo
+ * anterior pelo novo com um rename atômico. Assim, o arquivo sempre contém um
+ * checkpoint completo, mesmo que o processo morra no meio de uma escrita. Caso
+ * um novo checkpoint chegue antes do anterior ser escrito, somente o mais novo
+ * é escrito.
+ *
+ * O arquivo tem um cabeçalho com a mágica, a versão, o tamanho e o CRC32 do
+ * estado, conferidos por {@link ler}.
+ *
+ * @see Checkpoint
+ */
+public class GravadorCheckpoint extends Thread {
+    /** "SICP", identifica um arquivo de checkpoint */
+    public static final int MAGICA = 0x53494350;
+    /** versão do formato do arquivo */
+    public static final byte VERSAO = 1;
+    /** a cada quantos ticks um checkpoint é salvo, um por segundo */
+    public static final int TICKS_POR_CHECKPOINT = 60;
+
+    /**
+     * Estado é um buffer reutilizado para um estado capturado, que expõe o seu
+     * array para que o estado seja escrito sem cópias.
+     */
+    private static final class Estado extends ByteArrayOutputStream {
+        private final DataOutputStream dados = new DataOutputStream(this);
+
+        private Estado() {
+            super(64 * 1024);
+        }
+
+        /**
+         * @return os bytes escritos até agora, sem cópia
+         */
+        private ByteBuffer conteudo() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private final Path arquivo;
+    private final Path temporario;
+
+    /**
+     * os dois buffers de estado: enquanto um é escrito por esta thread, o outro
+     * recebe a próxima captura; livre é o buffer que ninguém está usando, e
+     * pendente o próximo a ser escrito, e no máximo um dos dois não é null
+     */
+    private Estado livre = new Estado();
+    private Estado pendente = null;
+    /** o buffer sendo escrito por esta thread */
+    private Estado escrevendo = new Estado();
+    /** quantos checkpoints foram escritos */
+    private volatile long escritos = 0;
+
+    /**
+     * Cria um novo gravador, que só começa a escrever quando a thread for
+     * iniciada.
+     *
+     * @param arquivo o arquivo de checkpoint
+     */
+    public GravadorCheckpoint(File arquivo) {
+        this.arquivo = arquivo.toPath().toAbsolutePath();
+        this.temporario = this.arquivo.resolveSibling(arquivo.getName() + ".tmp");
+        setDaemon(true);
+    }
+
+    /**
+     * salvar captura o estado da simulação e o entrega para ser escrito. Nunca
+     * espera pela escrita; caso o checkpoint anterior ainda não tenha começado a
+     * ser escrito, o seu buffer é reaproveitado e somente o novo é escrito.
+     *
+     * @param simulacao a simulação, entre dois ticks
+     */
+    public void salvar(Simulacao simulacao) {
+        Estado e;
+        synchronized (this) {
+            e = (livre != null) ? livre : pendente;
+            livre = null;
+            pendente = null;
+        }
+
+        e.reset();
+        try {
+            simulacao.capturar(e.dados);
+        } catch (IOException ex) {
+            // um ByteArrayOutputStream nunca falha
+            throw new IllegalStateException(ex);
+        }
+
+        synchronized (this) {
+            pendente = e;
+            notify();
+        }
+    }
+
+    /**
+     * @return quantos checkpoints foram escritos
+     */
+    public long getEscritos() {
+        return escritos;
+    }
+
+    /**
+     * esperarPendente espera até que haja um checkpoint para ser escrito, e
+     * devolve o buffer do último checkpoint escrito para ser reutilizado.
+     *
+     * @return o checkpoint
+     * @throws InterruptedException caso a thread seja interrompida
+     */
+    synchronized private Estado esperarPendente() throws InterruptedException {
+        while (pendente == null) {
+            wait();
+        }
+        Estado estado = pendente;
+        pendente = null;
+        livre = escrevendo;
+        escrevendo = estado;
+        return estado;
+    }
+
+    /**
+     * run escreve cada checkpoint entregue, para sempre.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            Estado estado;
+            try {
+                estado = esperarPendente();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                escrever(estado);
+                escritos++;
+            } catch (IOException e) {
+                System.err.println("Erro salvando checkpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * escrever salva um checkpoint no arquivo temporário e o troca pelo arquivo
+     * de checkpoint.
+     *
+     * @param estado o estado capturado
+     * @throws IOException caso a escrita falhe
+     */
+    private void escrever(Estado estado) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(estado.conteudo());
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(13);
+        cabecalho.putInt(MAGICA);
+        cabecalho.put(VERSAO);
+        cabecalho.putInt(estado.size());
+        cabecalho.putInt((int) crc.getValue());
+        cabecalho.flip();
+        ByteBuffer[] partes = { cabecalho, estado.conteudo() };
+
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (partes[1].hasRemaining()) {
+                canal.write(partes);
+            }
+            canal.force(true);
+        }
+
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // o rename só é durável depois que o diretório também vai para o disco; nem
+        // todo sistema permite abrir um diretório, então uma falha aqui é ignorada
+        try (FileChannel diretorio = FileChannel.open(arquivo.getParent(), StandardOpenOption.READ)) {
+            diretorio.force(true);
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * ler lê e confere um arquivo de checkpoint.
+     *
+     * @param arquivo o arquivo de checkpoint
+     * @return o estado salvo, para ser restaurado com {@link Checkpoint}
+     * @throws IOException caso o arquivo não possa ser lido ou esteja corrompido
+     */
+    public static byte[] ler(File arquivo) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(arquivo.toPath()));
+        if (b.remaining() < 13 || b.getInt() != MAGICA) {
+            throw new IOException("não é um arquivo de checkpoint");
+        }
+        byte versao = b.get();
+        if (versao != VERSAO) {
+            throw new IOException("versão de checkpoint não suportada: " + versao);
+        }
+
+        // o tamanho é conferido antes de qualquer alocação, já que o CRC só pode
+        // ser conferido depois
+        int tamanho = b.getInt();
+        int crcEsperado = b.getInt();
+        if (tamanho < 0 || tamanho != b.remaining()) {
+            throw new IOException("checkpoint corrompido");
+        }
+        byte[] estado = new byte[tamanho];
+        b.get(estado);
+
+        CRC32 crc = new CRC32();
+        crc.update(estado);
+        if ((int) crc.getValue() != crcEsperado) {
+            throw new IOException("checkpoint corrompido");
+        }
+        return estado;
+    }
+}
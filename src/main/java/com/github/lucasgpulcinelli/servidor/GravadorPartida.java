@@ -0,0 +1,164 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * GravadorPartida grava uma partida em um arquivo binário compacto, para que
+ * ela possa ser reproduzida depois com {@link Replay}.
+ *
+ * O arquivo tem um cabeçalho com um número mágico, a versão do formato, a
+ * semente da partida e o primeiro tick gravado. Depois, para cada tick, em
+ * ordem: o número de entradas aplicadas no tick (um byte, ou 0xff seguido de
+ * dois bytes caso sejam 255 ou mais), cada {@link Entrada} e o hash do estado
+ * no fim do tick (4 bytes).
+ *
+ * A thread da lógica de jogo somente codifica o tick no fim de um de dois
+ * buffers reutilizados; a thread do gravador troca os buffers e escreve no
+ * arquivo todos os ticks acumulados de uma vez, sem nenhuma alocação por tick.
+ *
+ * @see Replay
+ * @see Simulacao
+ */
+public class GravadorPartida extends Thread {
+    /** número mágico no início de todo arquivo de partida ("SIMR") */
+    public static final int MAGICA = 0x53494d52;
+    /** versão atual do formato */
+    public static final int VERSAO = 1;
+
+    /**
+     * Ticks é um buffer reutilizado de ticks codificados.
+     */
+    private static final class Ticks extends ByteArrayOutputStream {
+        private final DataOutputStream dados = new DataOutputStream(this);
+
+        private Ticks() {
+            super(64 * 1024);
+        }
+    }
+
+    /**
+     * os dois buffers de ticks: pendente recebe os ticks codificados, e
+     * escrevendo é o que esta thread escreve no arquivo; os dois são trocados
+     * com a trava do gravador
+     */
+    private Ticks pendente = new Ticks();
+    private Ticks escrevendo = new Ticks();
+    /** se o gravador deve parar depois de escrever os ticks pendentes */
+    private boolean fim = false;
+    /** arquivo da partida */
+    private final DataOutputStream saida;
+
+    /**
+     * Cria um novo gravador, escrevendo o cabeçalho do arquivo imediatamente.
+     *
+     * @param arquivo     caminho do arquivo da partida
+     * @param semente     semente da partida
+     * @param tickInicial tick do estado de jogo antes do primeiro tick gravado
+     * @throws IOException caso o arquivo não possa ser criado
+     */
+    public GravadorPartida(String arquivo, long semente, long tickInicial) throws IOException {
+        saida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivo), 65536));
+        saida.writeInt(MAGICA);
+        saida.writeByte(VERSAO);
+        saida.writeLong(semente);
+        saida.writeLong(tickInicial);
+        saida.flush();
+
+        setDaemon(true);
+
+        // o que ainda estiver na fila é escrito quando o servidor for encerrado
+        Runtime.getRuntime().addShutdownHook(new Thread(this::encerrar));
+    }
+
+    /**
+     * registrarTick codifica um tick no buffer pendente. Nunca espera pela
+     * escrita no arquivo, somente pela troca dos buffers.
+     *
+     * @param entradas entradas aplicadas no tick, em ordem
+     * @param hash     hash do estado no fim do tick
+     */
+    synchronized public void registrarTick(List<Entrada> entradas, int hash) {
+        DataOutputStream tick = pendente.dados;
+
+        try {
+            if (entradas.size() < 0xff) {
+                tick.writeByte(entradas.size());
+            } else {
+                tick.writeByte(0xff);
+                tick.writeShort(entradas.size());
+            }
+            for (int i = 0; i < entradas.size(); i++) {
+                entradas.get(i).escrever(tick);
+            }
+            tick.writeInt(hash);
+        } catch (IOException e) {
+            // impossível, a escrita é feita em memória
+            throw new IllegalStateException(e);
+        }
+
+        notify();
+    }
+
+    /**
+     * esperarTicks espera até que haja ticks para serem escritos ou que o
+     * gravador seja encerrado, e troca os buffers.
+     *
+     * @return os ticks a serem escritos, possivelmente nenhum caso o gravador
+     *         tenha sido encerrado
+     * @throws InterruptedException caso a thread seja interrompida
+     */
+    synchronized private Ticks esperarTicks() throws InterruptedException {
+        while (pendente.size() == 0 && !fim) {
+            wait();
+        }
+        Ticks ticks = pendente;
+        pendente = escrevendo;
+        escrevendo = ticks;
+        return ticks;
+    }
+
+    /**
+     * run escreve os ticks acumulados no arquivo, esvaziando o buffer do arquivo
+     * a cada troca, até que o gravador seja encerrado.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Ticks ticks = esperarTicks();
+                ticks.writeTo(saida);
+                ticks.reset();
+                saida.flush();
+
+                synchronized (this) {
+                    if (fim && pendente.size() == 0) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro gravando partida: " + e.getMessage());
+        } catch (InterruptedException e) {
+        }
+    }
+
+    /**
+     * encerrar avisa a thread do gravador para parar e espera que ela escreva
+     * todos os ticks registrados até aqui.
+     */
+    public void encerrar() {
+        synchronized (this) {
+            fim = true;
+            notify();
+        }
+        try {
+            join(1000);
+        } catch (InterruptedException e) {
+        }
+    }
+}
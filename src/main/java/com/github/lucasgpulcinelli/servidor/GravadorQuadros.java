@@ -0,0 +1,311 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+
+/**
+ * GravadorQuadros grava o que é visto em cada tick de uma partida em um
+ * arquivo no formato descrito por {@link ArquivoQuadros}: quadros chave com
+ * todos os desenhaveis a cada {@link ArquivoQuadros#INTERVALO_CHAVE} ticks e,
+ * entre eles, quadros delta somente com o que mudou desde o tick anterior.
+ *
+ * Como a lista de desenhaveis do jogo só recebe novos elementos no final e
+ * nunca muda a ordem dos que ficam, o delta é calculado pela identidade dos
+ * objetos: os que saíram da lista, os que continuam mas mudaram de sprite ou
+ * posição, e os novos no final.
+ *
+ * Assim como no {@link GravadorPartida}, a thread da lógica de jogo somente
+ * codifica o quadro; a escrita no arquivo e o índice de quadros chave, escrito
+ * no final do arquivo quando o servidor é encerrado, ficam com a thread do
+ * gravador.
+ *
+ * @see ArquivoQuadros
+ */
+public class GravadorQuadros extends Thread {
+    /** quadros codificados esperando para serem escritos */
+    private final LinkedBlockingQueue<byte[]> fila = new LinkedBlockingQueue<>();
+    /** marcador colocado na fila para que o gravador escreva o índice e pare */
+    private static final byte[] FIM = new byte[0];
+    /** arquivo dos quadros */
+    private final DataOutputStream saida;
+
+    /** desenhaveis do quadro anterior, na ordem da lista do jogo */
+    private Desenhavel[] anteriores = new Desenhavel[0];
+    private int numeroAnteriores = 0;
+    /** sprite, x e y de cada desenhavel do quadro anterior */
+    private int[] spritesAnteriores = new int[0];
+    private float[] xAnteriores = new float[0];
+    private float[] yAnteriores = new float[0];
+    /**
+     * índices dos desenhaveis que saíram e dos que mudaram no delta sendo
+     * escrito, com a mesma capacidade dos arrays do quadro anterior
+     */
+    private int[] removidos = new int[0];
+    private int[] alterados = new int[0];
+    /** quadros codificados até agora */
+    private long quadros = 0;
+
+    /** buffer reutilizado para codificar cada quadro */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    private final DataOutputStream quadro = new DataOutputStream(bytes);
+
+    /** posição no arquivo e tick de cada quadro chave, mantidos pela thread do gravador */
+    private final ArrayList<long[]> indice = new ArrayList<>();
+
+    /**
+     * Cria um novo gravador, escrevendo o cabeçalho do arquivo imediatamente.
+     *
+     * @param arquivo caminho do arquivo de quadros
+     * @throws IOException caso o arquivo não possa ser criado
+     */
+    public GravadorQuadros(String arquivo) throws IOException {
+        saida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivo), 65536));
+        saida.writeInt(ArquivoQuadros.MAGICA);
+        saida.writeByte(ArquivoQuadros.VERSAO);
+        saida.writeShort(ArquivoQuadros.INTERVALO_CHAVE);
+        saida.flush();
+
+        setDaemon(true);
+
+        // o índice é escrito quando o servidor for encerrado
+        Runtime.getRuntime().addShutdownHook(new Thread(this::encerrar));
+    }
+
+    /**
+     * registrarQuadro codifica o estado do tick atual e o coloca na fila de
+     * escrita. Deve ser chamado pela thread da lógica de jogo, depois de cada
+     * tick, e nunca bloqueia.
+     *
+     * @param ej          estado de jogo do tick
+     * @param desenhaveis desenhaveis do tick
+     */
+    public void registrarQuadro(EstadoJogo ej, List<Desenhavel> desenhaveis) {
+        boolean chave = quadros++ % ArquivoQuadros.INTERVALO_CHAVE == 0;
+        bytes.reset();
+
+        try {
+            quadro.writeByte(chave ? ArquivoQuadros.CHAVE : ArquivoQuadros.DELTA);
+            quadro.writeInt(0); // tamanho, preenchido no final
+            quadro.writeLong(ej.getTick());
+            quadro.writeShort(ej.getNivel());
+            quadro.writeInt(ej.getScore(1));
+            quadro.writeInt(ej.getScore(2));
+            quadro.writeByte(ej.getVidas(1));
+            quadro.writeByte(ej.getVidas(2));
+
+            List<Evento> eventos = ej.getEventos();
+            quadro.writeByte(eventos.size());
+            for (Evento e : eventos) {
+                quadro.writeByte(e.ordinal());
+            }
+
+            if (chave) {
+                escreverChave(desenhaveis);
+            } else {
+                escreverDelta(desenhaveis);
+            }
+        } catch (IOException e) {
+            // impossível, a escrita é feita em memória
+            throw new IllegalStateException(e);
+        }
+
+        lembrar(desenhaveis);
+
+        byte[] codificado = bytes.toByteArray();
+        int tamanho = codificado.length - ArquivoQuadros.CABECALHO_QUADRO;
+        codificado[1] = (byte) (tamanho >>> 24);
+        codificado[2] = (byte) (tamanho >>> 16);
+        codificado[3] = (byte) (tamanho >>> 8);
+        codificado[4] = (byte) tamanho;
+        fila.add(codificado);
+    }
+
+    /**
+     * escreverChave escreve todos os desenhaveis do quadro.
+     *
+     * @param desenhaveis desenhaveis do tick
+     * @throws IOException caso a escrita falhe
+     */
+    private void escreverChave(List<Desenhavel> desenhaveis) throws IOException {
+        quadro.writeShort(desenhaveis.size());
+        for (int i = 0; i < desenhaveis.size(); i++) {
+            Desenhavel d = desenhaveis.get(i);
+            escreverDesenhavel(d.getSprite().ordinal(), d.getX(), d.getY());
+        }
+    }
+
+    /**
+     * escreverDelta escreve o que mudou desde o quadro anterior: os índices
+     * (no quadro anterior) dos desenhaveis que saíram, os índices (no quadro
+     * atual) e valores dos que mudaram, e os novos desenhaveis no final da
+     * lista.
+     *
+     * @param desenhaveis desenhaveis do tick
+     * @throws IOException caso a escrita falhe
+     */
+    private void escreverDelta(List<Desenhavel> desenhaveis) throws IOException {
+        int numeroRemovidos = 0;
+        int numeroAlterados = 0;
+
+        int j = 0;
+        for (int i = 0; i < numeroAnteriores; i++) {
+            if (j < desenhaveis.size() && desenhaveis.get(j) == anteriores[i]) {
+                Desenhavel d = desenhaveis.get(j);
+                if (d.getSprite().ordinal() != spritesAnteriores[i]
+                        || d.getX() != xAnteriores[i] || d.getY() != yAnteriores[i]) {
+                    alterados[numeroAlterados++] = j;
+                }
+                j++;
+            } else {
+                removidos[numeroRemovidos++] = i;
+            }
+        }
+
+        quadro.writeShort(numeroRemovidos);
+        for (int k = 0; k < numeroRemovidos; k++) {
+            quadro.writeShort(removidos[k]);
+        }
+
+        quadro.writeShort(numeroAlterados);
+        for (int k = 0; k < numeroAlterados; k++) {
+            int i = alterados[k];
+            Desenhavel d = desenhaveis.get(i);
+            quadro.writeShort(i);
+            escreverDesenhavel(d.getSprite().ordinal(), d.getX(), d.getY());
+        }
+
+        quadro.writeShort(desenhaveis.size() - j);
+        for (; j < desenhaveis.size(); j++) {
+            Desenhavel d = desenhaveis.get(j);
+            escreverDesenhavel(d.getSprite().ordinal(), d.getX(), d.getY());
+        }
+    }
+
+    /**
+     * escreverDesenhavel escreve um desenhavel em 9 bytes: o sprite e a posição.
+     *
+     * @param sprite ordinal do sprite
+     * @param x      posição no eixo x
+     * @param y      posição no eixo y
+     * @throws IOException caso a escrita falhe
+     */
+    private void escreverDesenhavel(int sprite, float x, float y) throws IOException {
+        quadro.writeByte(sprite);
+        quadro.writeFloat(x);
+        quadro.writeFloat(y);
+    }
+
+    /**
+     * lembrar guarda os desenhaveis do quadro atual para calcular o próximo
+     * delta. Os arrays só são recriados quando o número de desenhaveis passa
+     * da sua capacidade.
+     *
+     * @param desenhaveis desenhaveis do tick
+     */
+    private void lembrar(List<Desenhavel> desenhaveis) {
+        int n = desenhaveis.size();
+        if (anteriores.length < n) {
+            anteriores = new Desenhavel[n * 2];
+            spritesAnteriores = new int[n * 2];
+            xAnteriores = new float[n * 2];
+            yAnteriores = new float[n * 2];
+            removidos = new int[n * 2];
+            alterados = new int[n * 2];
+        }
+        for (int i = 0; i < n; i++) {
+            Desenhavel d = desenhaveis.get(i);
+            anteriores[i] = d;
+            spritesAnteriores[i] = d.getSprite().ordinal();
+            xAnteriores[i] = d.getX();
+            yAnteriores[i] = d.getY();
+        }
+        // não segura os desenhaveis que já saíram do jogo
+        for (int i = n; i < numeroAnteriores; i++) {
+            anteriores[i] = null;
+        }
+        numeroAnteriores = n;
+    }
+
+    /**
+     * run escreve os quadros da fila no arquivo, anotando a posição de cada
+     * quadro chave, até encontrar o marcador de fim; nesse momento escreve o
+     * índice no final do arquivo.
+     */
+    @Override
+    public void run() {
+        try {
+            long posicao = ArquivoQuadros.CABECALHO;
+            while (true) {
+                byte[] q = fila.take();
+                if (q == FIM) {
+                    escreverIndice(posicao);
+                    return;
+                }
+
+                if (q[0] == ArquivoQuadros.CHAVE) {
+                    indice.add(new long[] { lerTick(q), posicao });
+                }
+                saida.write(q);
+                posicao += q.length;
+                if (fila.isEmpty()) {
+                    saida.flush();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro gravando quadros: " + e.getMessage());
+        } catch (InterruptedException e) {
+        }
+    }
+
+    /**
+     * escreverIndice escreve o índice de quadros chave e o rodapé do arquivo.
+     *
+     * @param posicao posição no arquivo onde o índice começa
+     * @throws IOException caso a escrita falhe
+     */
+    private void escreverIndice(long posicao) throws IOException {
+        saida.writeByte(ArquivoQuadros.INDICE);
+        for (long[] chave : indice) {
+            saida.writeLong(chave[0]);
+            saida.writeLong(chave[1]);
+        }
+        saida.writeLong(posicao);
+        saida.writeInt(indice.size());
+        saida.writeInt(ArquivoQuadros.MAGICA);
+        saida.close();
+    }
+
+    /**
+     * @param q um quadro codificado
+     * @return o tick do quadro
+     */
+    private static long lerTick(byte[] q) {
+        long tick = 0;
+        for (int i = 0; i < 8; i++) {
+            tick = (tick << 8) | (q[ArquivoQuadros.CABECALHO_QUADRO + i] & 0xff);
+        }
+        return tick;
+    }
+
+    /**
+     * encerrar coloca o marcador de fim na fila e espera a thread do gravador
+     * escrever tudo o que veio antes dele, junto com o índice.
+     */
+    public void encerrar() {
+        fila.add(FIM);
+        try {
+            join(2000);
+        } catch (InterruptedException e) {
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ListaRanking é uma skip list indexável: além de manter os valores em ordem,
+ * cada ligação guarda quantos valores ela pula, então a posição de qualquer
+ * valor é calculada somando as larguras do caminho até ele.
+ *
+ * Inserir, remover e calcular uma posição levam tempo O(log n) esperado, e os
+ * k primeiros são lidos em O(k), sem percorrer o resto da lista.
+ *
+ * Não é thread-safe; quem a usa deve sincronizar os acessos.
+ *
+ * @param <T> o tipo dos valores
+ * @see Placar
+ */
+class ListaRanking<T> {
+    /** número máximo de níveis, suficiente para milhões de valores */
+    private static final int NIVEIS = 24;
+
+    private static final class No<T> {
+        final T valor;
+        /** próximo nó em cada nível */
+        final No<T>[] proximos;
+        /**
+         * quantas posições a ligação de cada nível avança; só tem significado
+         * quando o próximo nó do nível existe
+         */
+        final int[] larguras;
+
+        @SuppressWarnings("unchecked")
+        No(T valor, int niveis) {
+            this.valor = valor;
+            this.proximos = (No<T>[]) new No<?>[niveis];
+            this.larguras = new int[niveis];
+        }
+    }
+
+    private final Comparator<? super T> ordem;
+    private final No<T> cabeca = new No<>(null, NIVEIS);
+    /** usado somente para sortear a altura dos nós */
+    private final Random aleatorio = new Random();
+    private int niveis = 1;
+    private int tamanho = 0;
+
+    /**
+     * Cria uma nova lista vazia.
+     *
+     * @param ordem a ordem dos valores; o primeiro da ordem tem a posição 1
+     */
+    ListaRanking(Comparator<? super T> ordem) {
+        this.ordem = ordem;
+    }
+
+    /**
+     * @return quantos valores estão na lista
+     */
+    int getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * inserir coloca um valor na lista, depois dos valores iguais a ele.
+     *
+     * @param valor o valor
+     * @return a posição do valor, a partir de 1
+     */
+    int inserir(T valor) {
+        @SuppressWarnings("unchecked")
+        No<T>[] anteriores = (No<T>[]) new No<?>[NIVEIS];
+        int[] posicoes = new int[NIVEIS];
+
+        No<T> x = cabeca;
+        int posicao = 0;
+        for (int i = niveis - 1; i >= 0; i--) {
+            while (x.proximos[i] != null && ordem.compare(x.proximos[i].valor, valor) <= 0) {
+                posicao += x.larguras[i];
+                x = x.proximos[i];
+            }
+            anteriores[i] = x;
+            posicoes[i] = posicao;
+        }
+
+        int altura = sortearAltura();
+        for (int i = niveis; i < altura; i++) {
+            anteriores[i] = cabeca;
+            posicoes[i] = 0;
+        }
+        niveis = Math.max(niveis, altura);
+
+        int nova = posicao + 1;
+        No<T> no = new No<>(valor, altura);
+        for (int i = 0; i < niveis; i++) {
+            No<T> a = anteriores[i];
+            if (i < altura) {
+                no.proximos[i] = a.proximos[i];
+                no.larguras[i] = a.larguras[i] - (nova - posicoes[i]) + 1;
+                a.proximos[i] = no;
+                a.larguras[i] = nova - posicoes[i];
+            } else {
+                // a ligação passa por cima do novo nó
+                a.larguras[i]++;
+            }
+        }
+        tamanho++;
+        return nova;
+    }
+
+    /**
+     * remover tira da lista um valor igual ao dado.
+     *
+     * @param valor o valor
+     * @return se um valor foi removido
+     */
+    boolean remover(T valor) {
+        @SuppressWarnings("unchecked")
+        No<T>[] anteriores = (No<T>[]) new No<?>[NIVEIS];
+
+        No<T> x = cabeca;
+        for (int i = niveis - 1; i >= 0; i--) {
+            while (x.proximos[i] != null && ordem.compare(x.proximos[i].valor, valor) < 0) {
+                x = x.proximos[i];
+            }
+            anteriores[i] = x;
+        }
+
+        No<T> alvo = x.proximos[0];
+        if (alvo == null || ordem.compare(alvo.valor, valor) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < niveis; i++) {
+            No<T> a = anteriores[i];
+            if (a.proximos[i] == alvo) {
+                a.larguras[i] += alvo.larguras[i] - 1;
+                a.proximos[i] = alvo.proximos[i];
+            } else {
+                a.larguras[i]--;
+            }
+        }
+        while (niveis > 1 && cabeca.proximos[niveis - 1] == null) {
+            niveis--;
+        }
+        tamanho--;
+        return true;
+    }
+
+    /**
+     * posicao calcula a posição que um valor tem ou teria na lista: um a mais
+     * que o número de valores antes dele na ordem.
+     *
+     * @param valor o valor, que não precisa estar na lista
+     * @return a posição, a partir de 1
+     */
+    int posicao(T valor) {
+        No<T> x = cabeca;
+        int posicao = 0;
+        for (int i = niveis - 1; i >= 0; i--) {
+            while (x.proximos[i] != null && ordem.compare(x.proximos[i].valor, valor) < 0) {
+                posicao += x.larguras[i];
+                x = x.proximos[i];
+            }
+        }
+        return posicao + 1;
+    }
+
+    /**
+     * @return o último valor da ordem, ou null caso a lista esteja vazia
+     */
+    T ultimo() {
+        No<T> x = cabeca;
+        for (int i = niveis - 1; i >= 0; i--) {
+            while (x.proximos[i] != null) {
+                x = x.proximos[i];
+            }
+        }
+        return x.valor;
+    }
+
+    /**
+     * primeiros lê os primeiros valores da ordem.
+     *
+     * @param quantidade quantos valores ler, no máximo
+     * @return os valores, em ordem
+     */
+    List<T> primeiros(int quantidade) {
+        List<T> valores = new ArrayList<>(Math.min(quantidade, tamanho));
+        for (No<T> x = cabeca.proximos[0]; x != null && valores.size() < quantidade; x = x.proximos[0]) {
+            valores.add(x.valor);
+        }
+        return valores;
+    }
+
+    /**
+     * sortearAltura escolhe em quantos níveis um novo nó fica: cada nível a mais
+     * tem metade da chance do anterior.
+     *
+     * @return a altura, entre 1 e {@link NIVEIS}
+     */
+    private int sortearAltura() {
+        int altura = 1;
+        while (altura < NIVEIS && aleatorio.nextBoolean()) {
+            altura++;
+        }
+        return altura;
+    }
+}
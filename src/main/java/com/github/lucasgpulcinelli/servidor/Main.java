@@ -1,107 +1,259 @@
 package com.github.lucasgpulcinelli.servidor;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.util.List;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
 
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
-import com.github.lucasgpulcinelli.comunicacao.Sprite;
-import com.github.lucasgpulcinelli.sistema.Base;
-import com.github.lucasgpulcinelli.sistema.Inimigo;
-import com.github.lucasgpulcinelli.sistema.NaveEspecial;
+import com.github.lucasgpulcinelli.perfil.Fase;
+import com.github.lucasgpulcinelli.perfil.Perfil;
+import com.github.lucasgpulcinelli.registro.LeitorRegistro;
+import com.github.lucasgpulcinelli.registro.RegistroPartida;
 import com.github.lucasgpulcinelli.sistema.Personagem;
-import com.github.lucasgpulcinelli.sistema.TelaJogo;
 
 /**
  * Main é a classe principal do jogo Space Invaders Multiplayer, criando uma
- * sessão do servidor de jogo para dois jogadores em 0.0.0.0:8080.
+ * sessão do servidor de jogo para dois jogadores e quantos espectadores
+ * quiserem assistir em 0.0.0.0:8080.
  */
 public class Main {
     /**
      * main inicializa o código de execução principal, criando duas threads: uma
-     * para cuidar dos inputs de cada jogador, e controlando na própria thread a
-     * lógica do jogo.
+     * para cuidar dos inputs de cada jogador, além da thread que aceita as
+     * conexões, e controlando na própria thread a lógica do jogo.
+     *
+     * Com "--gravar arquivo", todas as entradas da partida são gravadas para que
+     * ela possa ser reproduzida depois com {@link Replay}; com "--semente n", a
+     * partida usa uma semente fixa em vez de uma aleatória; com "--quadros
+     * arquivo", o que é visto em cada tick é gravado em um arquivo de quadros
+     * que pode ser lido a partir de qualquer tick com {@link ArquivoQuadros};
+     * com "--sem-compressao", o servidor recusa os pedidos de compressão dos
+     * clientes; com "--telemetria n", a saúde da conexão de cada jogador é
+     * impressa a cada n segundos; com "--perfil arquivo", as fases dos últimos
+     * ticks (600 ou o número dado por "--perfil-ticks n") são salvas como um
+     * trace do Chrome quando o servidor termina; com "--metricas porta", a
+     * saúde do servidor pode ser lida em http://127.0.0.1:porta/metricas; com
+     * "--threads-virtuais", cada conexão de jogador ou espectador roda em uma
+     * thread virtual em vez de uma thread do sistema; com "--checkpoint
+     * arquivo", o estado da partida é salvo a cada segundo, e com "--restaurar"
+     * a partida salva nesse arquivo é continuada, caso ele exista; com
+     * "--eventos diretorio", os abates, vidas perdidas, níveis ganhos e naves
+     * especiais são guardados em um log lido pelo {@link LeitorRegistro}; com
+     * "--placar arquivo", a score final de cada jogador entra em um
+     * {@link Placar} guardado nesse arquivo, que os jogadores recebem no fim
+     * do jogo.
      * 
-     * @param _args inutilizado
+     * @param args argumentos opcionais, "--gravar arquivo", "--semente n",
+     *             "--quadros arquivo", "--sem-compressao", "--telemetria n",
+     *             "--perfil arquivo", "--perfil-ticks n", "--metricas porta",
+     *             "--threads-virtuais", "--checkpoint arquivo", "--restaurar",
+     *             "--eventos diretorio" e "--placar arquivo"
      * @throws InterruptedException caso a thread tenha sido interrompida
-     * @throws IOException          caso a socket do servidor não possa ser criada
+     * @throws IOException          caso a socket do servidor ou o arquivo de
+     *                              gravação não possam ser criados
      */
-    public static void main(String[] _args) throws InterruptedException, IOException {
-        ServerSocket server = new ServerSocket(8080);
+    @SuppressWarnings("try")
+    public static void main(String[] args) throws InterruptedException, IOException {
+        String arquivoGravacao = null;
+        String arquivoQuadros = null;
+        boolean compressao = true;
+        int periodoTelemetria = 0;
+        String arquivoPerfil = null;
+        int ticksPerfil = 600;
+        int portaMetricas = 0;
+        boolean threadsVirtuais = false;
+        String arquivoCheckpoint = null;
+        boolean restaurar = false;
+        String diretorioEventos = null;
+        String arquivoPlacar = null;
+        long semente = new Random().nextLong();
 
-        EstadoJogo ej = EstadoJogo.criar(Personagem.getDesenhaveis());
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--gravar") && i + 1 < args.length) {
+                arquivoGravacao = args[++i];
+            } else if (args[i].equals("--semente") && i + 1 < args.length) {
+                semente = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--quadros") && i + 1 < args.length) {
+                arquivoQuadros = args[++i];
+            } else if (args[i].equals("--sem-compressao")) {
+                compressao = false;
+            } else if (args[i].equals("--telemetria") && i + 1 < args.length) {
+                periodoTelemetria = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--perfil") && i + 1 < args.length) {
+                arquivoPerfil = args[++i];
+            } else if (args[i].equals("--perfil-ticks") && i + 1 < args.length) {
+                ticksPerfil = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--metricas") && i + 1 < args.length) {
+                portaMetricas = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads-virtuais")) {
+                threadsVirtuais = true;
+            } else if (args[i].equals("--checkpoint") && i + 1 < args.length) {
+                arquivoCheckpoint = args[++i];
+            } else if (args[i].equals("--restaurar")) {
+                restaurar = true;
+            } else if (args[i].equals("--eventos") && i + 1 < args.length) {
+                diretorioEventos = args[++i];
+            } else if (args[i].equals("--placar") && i + 1 < args.length) {
+                arquivoPlacar = args[++i];
+            } else {
+                System.err.println("uso: servidor [--gravar arquivo] [--semente n] "
+                        + "[--quadros arquivo] [--sem-compressao] [--telemetria n] "
+                        + "[--perfil arquivo] [--perfil-ticks n] [--metricas porta] "
+                        + "[--threads-virtuais] [--checkpoint arquivo] [--restaurar] "
+                        + "[--eventos diretorio] [--placar arquivo]");
+                System.exit(1);
+            }
+        }
 
-        ComunicadorJogo cj1 = new ComunicadorJogo(server, 1);
-        cj1.start();
+        if (restaurar && (arquivoCheckpoint == null || arquivoGravacao != null)) {
+            // uma gravação precisa do início da partida para ser reproduzida
+            System.err.println("--restaurar precisa de --checkpoint e não pode ser usado com --gravar");
+            System.exit(1);
+        }
 
-        while (!cj1.getConectado()) {
-            // espera o jogador 1 se conectar
-            Thread.sleep(16, 666);
+        byte[] checkpoint = null;
+        if (restaurar && new File(arquivoCheckpoint).exists()) {
+            checkpoint = GravadorCheckpoint.ler(new File(arquivoCheckpoint));
         }
 
-        // o jogador 2 é opcional, então não precisa esperar ele se conectar para
-        // começar o jogo
-        ComunicadorJogo cj2 = new ComunicadorJogo(server, 2);
-        cj2.start();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(8080));
 
-        System.out.println("Jogo iniciado");
+        EstadoJogo ej = EstadoJogo.criar(Personagem.getDesenhaveis());
 
-        initBases();
+        GravadorPartida gravador = null;
+        if (arquivoGravacao != null) {
+            gravador = new GravadorPartida(arquivoGravacao, semente, ej.getTick());
+            gravador.start();
+        }
+        Simulacao simulacao = new Simulacao(semente, ej, gravador);
 
-        while (true) {
-            initInimigos(ej.getNivel());
-            while (true) {
-                boolean ganhouNivel = frameTodos();
-                if (ganhouNivel) {
-                    ej.ganhouNivel();
-                    Thread.sleep(1000, 0);
-                    Inimigo.resetarInimigos();
-                    break;
+        if (arquivoPerfil != null) {
+            Perfil.gravarTrace(ticksPerfil);
+            File destinoPerfil = new File(arquivoPerfil);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Perfil.exportarTrace(destinoPerfil);
+                } catch (IOException e) {
+                    System.err.println("Erro salvando o perfil: " + e.getMessage());
                 }
-                Thread.sleep(16, 666); // a lógica do jogo roda em 60 fps
-            }
+            }));
         }
-    }
 
-    private static void initBases() {
-        for (int i = 0; i < 4; i++) {
-            new Base(7 * i + 4 + 0.5f, TelaJogo.MAX_Y - 3 + 0.5f);
+        if (diretorioEventos != null) {
+            RegistroPartida.iniciar(new File(diretorioEventos), semente);
         }
-    }
 
-    private static void initInimigos(int nivel) {
-        Sprite sprite = Sprite.INIMIGO1;
+        GravadorCheckpoint gravadorCheckpoint = null;
+        if (arquivoCheckpoint != null) {
+            gravadorCheckpoint = new GravadorCheckpoint(new File(arquivoCheckpoint));
+            gravadorCheckpoint.start();
+        }
 
-        for (int i = 0; i < 5; i++) {
-            if (i >= 3) {
-                sprite = Sprite.INIMIGO3;
-            } else if (i >= 1) {
-                sprite = Sprite.INIMIGO2;
-            }
+        Placar placar = null;
+        if (arquivoPlacar != null) {
+            placar = new Placar(new File(arquivoPlacar));
+            placar.start();
+        }
 
-            for (int j = 0; j < 11; j++) {
-                new Inimigo(j * 2 + 1 + 0.5f, i * 2 + 2 + nivel + 0.5f, sprite);
-            }
+        GravadorQuadros quadros = null;
+        if (arquivoQuadros != null) {
+            quadros = new GravadorQuadros(arquivoQuadros);
+            quadros.start();
         }
-    }
 
-    private static boolean frameTodos() {
-        List<Personagem> personagens = Personagem.getPersonagens();
+        // cada conexão faz somente I/O bloqueante simples, então pode rodar em uma
+        // thread virtual, que custa muito menos memória que uma thread do sistema
+        ThreadFactory conexoes = threadsVirtuais
+                ? Thread.ofVirtual().name("conexão-", 1).factory()
+                : Thread.ofPlatform().name("conexão-", 1).daemon().factory();
+
+        // o estado de cada tick é codificado uma única vez, para os espectadores e
+        // os jogadores
+        Transmissao transmissao = new Transmissao(conexoes);
+
+        // os jogadores enviam o estado quando a lógica de jogo termina um tick
+        RelogioTicks relogio = new RelogioTicks(ej.getTick());
+        ComunicadorJogo cj1 = new ComunicadorJogo(1, simulacao, relogio, transmissao, compressao, placar);
+        conexoes.newThread(cj1).start();
+        ComunicadorJogo cj2 = new ComunicadorJogo(2, simulacao, relogio, transmissao, compressao, placar);
+        conexoes.newThread(cj2).start();
 
-        for (int i = 0, mortos = 0; i + mortos < personagens.size(); i++) {
-            // roda o método frame, e caso o desenhavel tenha morrido, a List personagens
-            // vai ter get(i) com o valor do próximo Personagem (pois o personagem anterior
-            // foi removido)
+        // a primeira conexão é do jogador 1, a segunda do jogador 2, e todas as
+        // outras são de espectadores
+        new Recepcionista(server, conexoes, transmissao, cj1, cj2).start();
 
-            Personagem p = personagens.get(i + mortos);
-            mortos += (p.frame()) ? 1 : 0;
+        if (periodoTelemetria > 0) {
+            new RelatorioTelemetria(periodoTelemetria, transmissao, cj1, cj2).start();
         }
 
-        // tenta criar uma nave especial
-        if (Math.random() < 0.0003)
-            NaveEspecial.tentarGerar();
+        MetricasTick metricas = null;
+        if (portaMetricas > 0) {
+            metricas = new MetricasTick();
+            new ServidorMetricas(portaMetricas, metricas, transmissao, cj1, cj2).iniciar();
+        }
+
+        while (!cj1.getConectado()) {
+            // espera o jogador 1 se conectar; o jogador 2 é opcional, então não
+            // precisa esperar ele se conectar para começar o jogo
+            Thread.sleep(16, 666);
+        }
 
-        // finaliza o frame dos inimigos e retorna se o jogador ganhou
-        return Inimigo.finalFrameInimigos();
+        if (checkpoint != null) {
+            simulacao.restaurar(checkpoint);
+            relogio.publicar(ej.getTick());
+            System.out.println("Jogo restaurado no tick " + ej.getTick());
+        } else {
+            System.out.println("Jogo iniciado, semente " + semente);
+            simulacao.iniciar();
+        }
+
+        boolean placarRegistrado = false;
+        while (true) {
+            long inicioTick = System.nanoTime();
+            Perfil.inicioTick(ej.getTick() + 1);
+            boolean ganhouNivel = simulacao.tick();
+            if (placar != null && !placarRegistrado && ej.getPerdeuJogo()) {
+                // registrado antes de publicar o tick, para que o jogador que vê o
+                // fim do jogo já encontre a sua score no placar
+                placarRegistrado = true;
+                for (int jogador = 1; jogador <= 2; jogador++) {
+                    if (simulacao.participou(jogador)) {
+                        placar.registrar(jogador, ej.getScore(jogador));
+                    }
+                }
+            }
+            relogio.publicar(ej.getTick());
+            if (quadros != null) {
+                try (Perfil.Escopo escopo = Perfil.abrir(Fase.QUADROS)) {
+                    quadros.registrarQuadro(ej, Personagem.getDesenhaveis());
+                }
+            }
+            if (ej.getTick() % Transmissao.TICKS_POR_ENVIO == 0) {
+                try (Perfil.Escopo escopo = Perfil.abrir(Fase.TRANSMISSAO)) {
+                    transmissao.publicar(ej);
+                }
+            }
+            // no tick em que o nível é ganho, os inimigos do próximo nível ainda não
+            // existem, e um checkpoint restaurado pularia o nível inteiro
+            if (gravadorCheckpoint != null && !ganhouNivel
+                    && ej.getTick() % GravadorCheckpoint.TICKS_POR_CHECKPOINT == 0) {
+                // só a cópia do estado é feita aqui; a escrita fica com o gravador
+                gravadorCheckpoint.salvar(simulacao);
+            }
+            Perfil.fimTick(Personagem.getPersonagens().size());
+            if (metricas != null) {
+                metricas.registrar(inicioTick, System.nanoTime(), Personagem.getPersonagens());
+            }
+            if (ganhouNivel) {
+                Thread.sleep(1000, 0);
+                simulacao.proximoNivel();
+                continue;
+            }
+            Thread.sleep(16, 666); // a lógica do jogo roda em 60 fps
+        }
     }
-}
\ No newline at end of file
+}
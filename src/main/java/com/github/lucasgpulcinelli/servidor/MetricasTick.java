@@ -0,0 +1,101 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * MetricasTick guarda a duração dos últimos ticks e quantos personagens de
+ * cada {@link Sprite} existiam no fim do último tick.
+ *
+ * Somente a thread da lógica de jogo registra ticks, e os valores são
+ * publicados em arrays atômicos; assim o {@link ServidorMetricas} pode lê-los
+ * a qualquer momento sem pegar as travas da simulação.
+ */
+public class MetricasTick {
+    /** quantos ticks são guardados, 10 segundos a 60 ticks por segundo */
+    private static final int JANELA = 600;
+
+    /** duração de cada tick, em nanossegundos, em um buffer circular */
+    private final AtomicLongArray duracoes = new AtomicLongArray(JANELA);
+    /** momento do fim de cada tick, em System.nanoTime() */
+    private final AtomicLongArray fins = new AtomicLongArray(JANELA);
+    /** quantos ticks foram registrados desde o início */
+    private volatile long ticks = 0;
+
+    /** personagens de cada sprite no fim do último tick */
+    private final AtomicIntegerArray porSprite = new AtomicIntegerArray(Sprite.values().length);
+    /** contagem do tick atual, usada somente pela thread da lógica de jogo */
+    private final int[] contagem = new int[Sprite.values().length];
+
+    /**
+     * registrar guarda a duração de um tick e conta os personagens vivos. Deve
+     * ser chamado somente pela thread da lógica de jogo, que é a única que altera
+     * a lista de personagens, então ela pode ser lida sem trava.
+     *
+     * @param inicio      o início do tick, em System.nanoTime()
+     * @param fim         o fim do tick, em System.nanoTime()
+     * @param personagens os personagens vivos
+     */
+    void registrar(long inicio, long fim, List<Personagem> personagens) {
+        int i = (int) (ticks % JANELA);
+        duracoes.set(i, fim - inicio);
+        fins.set(i, fim);
+        ticks++;
+
+        Arrays.fill(contagem, 0);
+        for (int j = 0; j < personagens.size(); j++) {
+            contagem[personagens.get(j).getSprite().ordinal()]++;
+        }
+        for (int j = 0; j < contagem.length; j++) {
+            porSprite.set(j, contagem[j]);
+        }
+    }
+
+    /**
+     * @return quantos ticks foram registrados desde o início
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return as durações dos últimos ticks, em nanossegundos, ordenadas
+     */
+    public long[] getDuracoesOrdenadas() {
+        int n = (int) Math.min(ticks, JANELA);
+        long[] copia = new long[n];
+        for (int i = 0; i < n; i++) {
+            copia[i] = duracoes.get(i);
+        }
+        Arrays.sort(copia);
+        return copia;
+    }
+
+    /**
+     * @return quantos ticks terminaram no último segundo
+     */
+    public int getTicksPorSegundo() {
+        long limite = System.nanoTime() - 1_000_000_000L;
+        int n = (int) Math.min(ticks, JANELA);
+        int contados = 0;
+        for (int i = 0; i < n; i++) {
+            if (fins.get(i) - limite > 0) {
+                contados++;
+            }
+        }
+        return contados;
+    }
+
+    /**
+     * @param s um sprite
+     * @return quantos personagens com esse sprite existiam no fim do último tick
+     */
+    public int getEntidades(Sprite s) {
+        return porSprite.get(s.ordinal());
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.util.List;
+import java.util.Random;
+
+import com.github.lucasgpulcinelli.comunicacao.Acao;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * PartidaAleatoria simula, sem rede e na velocidade máxima, uma partida em que
+ * os dois jogadores fazem ações aleatórias e voltam ao jogo sempre que perdem
+ * uma vida. É usada pelas ferramentas de benchmark para gerar estados de jogo
+ * parecidos com os de uma partida real.
+ *
+ * Como a lógica do jogo usa variáveis estáticas, somente uma partida pode
+ * existir por execução.
+ */
+class PartidaAleatoria {
+    private final EstadoJogo ej;
+    private final Simulacao simulacao;
+    private final Random aleatorio;
+    private final Acao[] acoes = Acao.values();
+
+    /**
+     * Cria e inicia uma nova partida aleatória.
+     *
+     * @param semente semente da partida e das ações dos jogadores
+     */
+    PartidaAleatoria(long semente) {
+        ej = EstadoJogo.criar(Personagem.getDesenhaveis());
+        simulacao = new Simulacao(semente, ej, null);
+        aleatorio = new Random(semente);
+
+        simulacao.iniciar();
+        simulacao.enfileirar(Entrada.entrar(1));
+        simulacao.enfileirar(Entrada.entrar(2));
+    }
+
+    /**
+     * @return o estado de jogo da partida
+     */
+    EstadoJogo getEstado() {
+        return ej;
+    }
+
+    /**
+     * tick executa um tick da partida com uma ação aleatória de cada jogador.
+     */
+    void tick() {
+        for (int jogador = 1; jogador <= 2; jogador++) {
+            simulacao.enfileirar(Entrada.acao(jogador,
+                    acoes[aleatorio.nextInt(acoes.length)], 1));
+        }
+
+        boolean ganhouNivel = simulacao.tick();
+
+        // os jogadores voltam sempre que perdem uma vida, para que a partida
+        // continue movimentada durante todo o benchmark
+        List<Evento> eventos = ej.getEventos();
+        if (eventos.contains(Evento.PERDEU_VIDA_P1)) {
+            simulacao.enfileirar(Entrada.entrar(1));
+        }
+        if (eventos.contains(Evento.PERDEU_VIDA_P2)) {
+            simulacao.enfileirar(Entrada.entrar(2));
+        }
+        if (ganhouNivel) {
+            simulacao.proximoNivel();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.github.lucasgpulcinelli.comunicacao.Classificacao;
+
+/**
+ * Placar guarda as maiores scores finais de todas as partidas do servidor,
+ * mesmo entre execuções.
+ *
+ * As scores ficam em memória em uma {@link ListaRanking}, limitada a
+ * {@link CAPACIDADE} scores, então registrar uma score e calcular a posição de
+ * um jogador levam tempo O(log n), e as maiores scores são lidas sem percorrer
+ * o placar inteiro.
+ *
+ * O placar é salvo em um arquivo compacto, com as scores já em ordem, para que
+ * a carga no início do servidor seja uma única leitura. Como o
+ * {@link GravadorCheckpoint}, a lógica de jogo só registra as scores em
+ * memória; esta thread escreve o placar em um arquivo temporário, força os
+ * dados para o disco e troca o arquivo anterior com um rename atômico.
+ *
+ * <pre>
+ * arquivo: int mágica, byte versão, int quantidade, int CRC32 das scores,
+ *          e para cada score: int score, byte jogador, long momento
+ * </pre>
+ *
+ * @see comunicacao.Classificacao
+ */
+public class Placar extends Thread {
+    /** "SIPL", identifica um arquivo de placar */
+    public static final int MAGICA = 0x5349504c;
+    /** versão do formato do arquivo */
+    public static final byte VERSAO = 1;
+    /** quantas scores o placar guarda, no máximo */
+    public static final int CAPACIDADE = 10_000;
+    /** quantas das maiores scores um cliente pode pedir, no máximo */
+    public static final int MAXIMO_PEDIDO = 100;
+    /** tamanho de uma score no arquivo */
+    private static final int TAMANHO_SCORE = 4 + 1 + 8;
+
+    /** uma score final guardada no placar */
+    private static final class Recorde {
+        final int score;
+        final int jogador;
+        final long momento;
+        /** ordem de chegada, que desempata scores iguais a favor da mais antiga */
+        final long numero;
+
+        Recorde(int score, int jogador, long momento, long numero) {
+            this.score = score;
+            this.jogador = jogador;
+            this.momento = momento;
+            this.numero = numero;
+        }
+    }
+
+    private static final Comparator<Recorde> ORDEM = (a, b) -> (a.score != b.score)
+            ? Integer.compare(b.score, a.score)
+            : Long.compare(a.numero, b.numero);
+
+    private final Path arquivo;
+    private final Path temporario;
+
+    private final ListaRanking<Recorde> ranking = new ListaRanking<>(ORDEM);
+    private long proximoNumero = 0;
+    /** a score da partida atual de cada jogador, ou null */
+    private final Recorde[] partidaAtual = new Recorde[3];
+    /** se há scores que ainda não foram escritas */
+    private boolean pendente = false;
+
+    /**
+     * Cria um placar, carregando o arquivo caso ele exista. O placar só é
+     * escrito depois que a thread for iniciada.
+     *
+     * @param arquivo o arquivo do placar
+     * @throws IOException caso o arquivo exista mas não possa ser lido ou esteja
+     *                     corrompido
+     */
+    public Placar(File arquivo) throws IOException {
+        super("placar");
+        this.arquivo = arquivo.toPath().toAbsolutePath();
+        this.temporario = this.arquivo.resolveSibling(arquivo.getName() + ".tmp");
+        if (arquivo.exists()) {
+            carregar();
+        }
+        setDaemon(true);
+    }
+
+    /**
+     * registrar guarda a score final de um jogador na partida atual. Nunca
+     * bloqueia esperando o disco.
+     *
+     * @param jogador o jogador, 1 ou 2
+     * @param score   a score final
+     * @return a posição da score no placar, a partir de 1
+     */
+    synchronized public int registrar(int jogador, int score) {
+        Recorde r = new Recorde(score, jogador, System.currentTimeMillis(), proximoNumero++);
+        int posicao = ranking.inserir(r);
+        if (ranking.getTamanho() > CAPACIDADE) {
+            ranking.remover(ranking.ultimo());
+        }
+        partidaAtual[jogador] = r;
+        pendente = true;
+        notify();
+        return posicao;
+    }
+
+    /**
+     * @return quantas scores o placar guarda
+     */
+    synchronized public int getTamanho() {
+        return ranking.getTamanho();
+    }
+
+    /**
+     * classificacao monta a resposta ao pedido de um jogador: as maiores scores
+     * e a posição da sua score na partida atual.
+     *
+     * @param jogador    o jogador, 1 ou 2
+     * @param quantidade quantas das maiores scores enviar, limitado a
+     *                   {@link MAXIMO_PEDIDO}
+     * @return a classificação
+     */
+    synchronized public Classificacao classificacao(int jogador, int quantidade) {
+        List<Recorde> primeiros = ranking.primeiros(Math.max(0, Math.min(quantidade, MAXIMO_PEDIDO)));
+        int[] scores = new int[primeiros.size()];
+        byte[] jogadores = new byte[primeiros.size()];
+        long[] momentos = new long[primeiros.size()];
+        for (int i = 0; i < primeiros.size(); i++) {
+            Recorde r = primeiros.get(i);
+            scores[i] = r.score;
+            jogadores[i] = (byte) r.jogador;
+            momentos[i] = r.momento;
+        }
+
+        // uma score que saiu do placar ainda tem a posição que teria nele
+        Recorde atual = partidaAtual[jogador];
+        int score = (atual == null) ? -1 : atual.score;
+        int posicao = (atual == null) ? -1 : ranking.posicao(atual);
+        return new Classificacao(scores, jogadores, momentos, score, posicao, ranking.getTamanho());
+    }
+
+    /**
+     * esperarPendente espera até que haja scores novas e copia o placar no
+     * formato do arquivo.
+     *
+     * @return o conteúdo do arquivo
+     * @throws InterruptedException caso a thread seja interrompida
+     */
+    synchronized private byte[] esperarPendente() throws InterruptedException {
+        while (!pendente) {
+            wait();
+        }
+        pendente = false;
+
+        List<Recorde> todos = ranking.primeiros(ranking.getTamanho());
+        ByteBuffer scores = ByteBuffer.allocate(todos.size() * TAMANHO_SCORE);
+        for (Recorde r : todos) {
+            scores.putInt(r.score);
+            scores.put((byte) r.jogador);
+            scores.putLong(r.momento);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(scores.array());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(scores.capacity() + 13);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGICA);
+            out.writeByte(VERSAO);
+            out.writeInt(todos.size());
+            out.writeInt((int) crc.getValue());
+            out.write(scores.array());
+        } catch (IOException e) {
+            // não acontece escrevendo em memória
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * run escreve o placar sempre que uma score nova é registrada, para sempre.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            byte[] conteudo;
+            try {
+                conteudo = esperarPendente();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                escrever(conteudo);
+            } catch (IOException e) {
+                System.err.println("Erro salvando o placar: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * escrever salva o placar no arquivo temporário e o troca pelo arquivo do
+     * placar.
+     *
+     * @param conteudo o conteúdo do arquivo
+     * @throws IOException caso a escrita falhe
+     */
+    private void escrever(byte[] conteudo) throws IOException {
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(conteudo);
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(true);
+        }
+
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * carregar lê e confere o arquivo do placar, colocando as scores em memória.
+     *
+     * @throws IOException caso o arquivo não possa ser lido ou esteja corrompido
+     */
+    private void carregar() throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+        if (b.remaining() < 13 || b.getInt() != MAGICA) {
+            throw new IOException(arquivo + " não é um arquivo de placar");
+        }
+        byte versao = b.get();
+        if (versao != VERSAO) {
+            throw new IOException("versão de placar não suportada: " + versao);
+        }
+        int quantidade = b.getInt();
+        int crcEsperado = b.getInt();
+        if (quantidade < 0 || b.remaining() != (long) quantidade * TAMANHO_SCORE) {
+            throw new IOException("placar corrompido");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b.duplicate());
+        if ((int) crc.getValue() != crcEsperado) {
+            throw new IOException("placar corrompido");
+        }
+
+        // as scores estão em ordem, então a ordem de chegada dada aqui mantém os
+        // desempates do arquivo
+        for (int i = 0; i < quantidade && i < CAPACIDADE; i++) {
+            int score = b.getInt();
+            int jogador = b.get();
+            long momento = b.getLong();
+            ranking.inserir(new Recorde(score, jogador, momento, proximoNumero++));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * PoolBuffers guarda os {@link BufferCompartilhado}s livres, para que os
+ * estados enviados aos espectadores não criem um novo buffer a cada envio.
+ *
+ * O pool cria buffers conforme a necessidade, até que haja o suficiente para
+ * todos os estados que ainda esperam nas filas dos espectadores; a partir daí,
+ * todo buffer usado vem do pool e volta para ele. Buffers devolvidos além do
+ * máximo de livres são deixados para o coletor de lixo.
+ *
+ * A fila de livres é um ArrayBlockingQueue, que não aloca nada ao colocar ou
+ * tirar elementos.
+ */
+public class PoolBuffers {
+    private final ArrayBlockingQueue<BufferCompartilhado> livres;
+    private final int capacidade;
+
+    /** número de buffers criados desde o início */
+    private volatile long criados = 0;
+
+    /**
+     * Cria um novo pool vazio.
+     *
+     * @param maximoLivres número máximo de buffers guardados no pool
+     * @param capacidade   capacidade inicial de cada buffer, em bytes
+     */
+    public PoolBuffers(int maximoLivres, int capacidade) {
+        this.livres = new ArrayBlockingQueue<>(maximoLivres);
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * obter retira um buffer vazio do pool, ou cria um novo caso não haja
+     * nenhum livre. O buffer vem com uma referência, de quem o obteve.
+     *
+     * @return o buffer
+     */
+    public BufferCompartilhado obter() {
+        BufferCompartilhado b = livres.poll();
+        if (b == null) {
+            b = new BufferCompartilhado(this, capacidade);
+            criados++;
+        }
+
+        b.preparar();
+        return b;
+    }
+
+    /**
+     * devolver coloca um buffer sem referências de volta no pool.
+     *
+     * @param b o buffer
+     */
+    void devolver(BufferCompartilhado b) {
+        livres.offer(b);
+    }
+
+    /**
+     * @return o número de buffers criados desde o início
+     */
+    public long getCriados() {
+        return criados;
+    }
+
+    /**
+     * @return o número de buffers livres no pool agora
+     */
+    public int getLivres() {
+        return livres.size();
+    }
+}
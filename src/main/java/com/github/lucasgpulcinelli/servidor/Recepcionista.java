@@ -0,0 +1,137 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadFactory;
+
+import com.github.lucasgpulcinelli.comunicacao.Saudacao;
+
+/**
+ * Recepcionista é a única thread que aceita conexões no ServerSocket do
+ * servidor, distribuindo cada nova conexão: enquanto houver um jogador sem
+ * cliente, a conexão vai para o {@link ComunicadorJogo} daquele jogador (o
+ * jogador 1 sempre tem prioridade); caso contrário, o cliente entra como
+ * espectador pela {@link Transmissao}.
+ *
+ * Todo cliente começa enviando uma {@link Saudacao}, com a versão do
+ * protocolo, as suas capacidades e um token de sessão (0 para uma conexão
+ * nova); um token de um jogador que caiu devolve a conexão ao lugar desse
+ * jogador, que estava reservado. Clientes com uma versão que o servidor não
+ * aceita são recusados.
+ *
+ * Esta thread somente aceita as conexões: a saudação de cada uma é lida, com um
+ * tempo limite curto, em uma thread própria da conexão, para que um cliente
+ * lento nunca atrase a chegada dos outros. Os lugares são decididos pela ordem
+ * em que as saudações terminam de chegar.
+ *
+ * As conexões são aceitas como SocketChannels bloqueantes: os jogadores usam as
+ * streams da socket do canal, e os espectadores escrevem diretamente no canal.
+ *
+ * @see ComunicadorJogo
+ * @see Espectador
+ */
+public class Recepcionista extends Thread {
+    private final ServerSocketChannel servidor;
+    private final ComunicadorJogo[] jogadores;
+    private final Transmissao transmissao;
+    /** cria a thread que lê a saudação de cada conexão */
+    private final ThreadFactory threads;
+
+    /** tempo máximo para um cliente enviar a saudação, em milissegundos */
+    private static final int TEMPO_SAUDACAO = 1000;
+
+    /**
+     * Cria uma nova recepcionista.
+     *
+     * @param servidor    canal do servidor onde as conexões são aceitas
+     * @param threads     cria a thread que lê a saudação de cada conexão
+     * @param transmissao transmissão que recebe os espectadores
+     * @param jogadores   comunicadores de cada jogador, em ordem de prioridade
+     */
+    public Recepcionista(ServerSocketChannel servidor, ThreadFactory threads, Transmissao transmissao,
+            ComunicadorJogo... jogadores) {
+        this.servidor = servidor;
+        this.threads = threads;
+        this.transmissao = transmissao;
+        this.jogadores = jogadores;
+        setDaemon(true);
+    }
+
+    /**
+     * run aceita conexões para sempre, iniciando a thread que recebe cada uma.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            SocketChannel s;
+            try {
+                s = servidor.accept();
+            } catch (IOException e) {
+                System.err.println("Erro aceitando conexão: " + e.getMessage());
+                continue;
+            }
+            threads.newThread(() -> receber(s)).start();
+        }
+    }
+
+    /**
+     * receber lê a saudação de uma conexão recém aceita e a entrega a um jogador
+     * ou a transmissão de espectadores. Roda na thread da própria conexão.
+     *
+     * @param s a conexão
+     */
+    private void receber(SocketChannel s) {
+        Saudacao pedido;
+        try {
+            Socket socket = s.socket();
+            socket.setSoTimeout(TEMPO_SAUDACAO);
+            pedido = Saudacao.lerPedido(new DataInputStream(socket.getInputStream()));
+            socket.setSoTimeout(0);
+
+            if (pedido.getVersao() < Saudacao.VERSAO_MINIMA) {
+                Saudacao.recusar().escreverResposta(new DataOutputStream(socket.getOutputStream()));
+                s.close();
+                return;
+            }
+        } catch (IOException e) {
+            // o cliente não enviou uma saudação válida a tempo
+            try {
+                s.close();
+            } catch (IOException e2) {
+            }
+            return;
+        }
+
+        distribuir(s, pedido);
+    }
+
+    /**
+     * distribuir entrega uma conexão com a saudação já lida: a reconexão de um
+     * jogador volta ao seu lugar, uma conexão nova fica com o primeiro lugar
+     * livre, e as demais são de espectadores. Uma conexão é distribuída por vez,
+     * para que duas nunca disputem o mesmo lugar.
+     *
+     * @param s      a conexão
+     * @param pedido a saudação do cliente
+     */
+    synchronized private void distribuir(SocketChannel s, Saudacao pedido) {
+        boolean entregue = false;
+        for (ComunicadorJogo cj : jogadores) {
+            if (cj.oferecerReconexao(s.socket(), pedido)) {
+                entregue = true;
+                break;
+            }
+        }
+        for (int i = 0; i < jogadores.length && !entregue; i++) {
+            entregue = jogadores[i].oferecerConexao(s.socket(), pedido);
+        }
+
+        if (!entregue) {
+            transmissao.adicionarEspectador(s, pedido);
+        }
+    }
+}
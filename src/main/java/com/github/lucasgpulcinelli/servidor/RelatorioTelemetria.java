@@ -0,0 +1,58 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import com.github.lucasgpulcinelli.comunicacao.Telemetria;
+
+/**
+ * RelatorioTelemetria imprime periodicamente no console a saúde da conexão de
+ * cada jogador conectado e o número de espectadores.
+ *
+ * A leitura das medidas não usa travas, então o relatório não atrasa nem a
+ * lógica do jogo nem as conexões.
+ *
+ * @see comunicacao.Telemetria
+ */
+public class RelatorioTelemetria extends Thread {
+    private final long periodoMs;
+    private final Transmissao transmissao;
+    private final ComunicadorJogo[] jogadores;
+
+    /**
+     * Cria um novo relatório, que só começa a imprimir quando a thread for
+     * iniciada.
+     *
+     * @param segundos    intervalo entre dois relatórios
+     * @param transmissao a transmissão para os espectadores
+     * @param jogadores   os comunicadores de cada jogador
+     */
+    public RelatorioTelemetria(int segundos, Transmissao transmissao, ComunicadorJogo... jogadores) {
+        this.periodoMs = segundos * 1000L;
+        this.transmissao = transmissao;
+        this.jogadores = jogadores;
+        setDaemon(true);
+    }
+
+    /**
+     * run imprime um relatório a cada período.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(periodoMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            for (int i = 0; i < jogadores.length; i++) {
+                Telemetria t = jogadores[i].getTelemetria();
+                ControleTaxa controle = jogadores[i].getControleTaxa();
+                if (jogadores[i].getConectado() && t != null && controle != null) {
+                    System.out.printf("jogador %d: %d estados/s, %s\n", i + 1, controle.getTaxa(), t);
+                }
+            }
+            PoolBuffers pool = transmissao.getPool();
+            System.out.printf("espectadores: %d, buffers: %d criados, %d livres\n",
+                    transmissao.getNumeroEspectadores(), pool.getCriados(), pool.getLivres());
+        }
+    }
+}
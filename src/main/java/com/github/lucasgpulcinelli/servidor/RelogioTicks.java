@@ -0,0 +1,61 @@
+package com.github.lucasgpulcinelli.servidor;
+
+/**
+ * RelogioTicks avisa as threads de envio quando a lógica de jogo termina um
+ * tick.
+ *
+ * Em vez de cada {@link ComunicadorJogo} dormir no seu próprio ritmo e ler o
+ * estado em um momento qualquer, a thread da lógica de jogo publica cada tick
+ * completo aqui, e os comunicadores esperam pelo tick em que devem enviar.
+ * Assim, os envios são alinhados com a simulação: jogadores com a mesma taxa
+ * recebem o estado do mesmo tick.
+ */
+public class RelogioTicks {
+    /** duração de um tick da lógica de jogo, em nanossegundos */
+    public static final long NANOS_POR_TICK = 1_000_000_000L / ControleTaxa.TICKS_POR_SEGUNDO;
+
+    /** último tick completo */
+    private long tick;
+
+    /**
+     * Cria um novo relógio.
+     *
+     * @param tick o tick atual da lógica de jogo
+     */
+    public RelogioTicks(long tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * publicar avisa que um tick terminou, acordando quem estiver esperando por
+     * ele. Deve ser chamado somente pela thread da lógica de jogo.
+     *
+     * @param tick o tick que terminou
+     */
+    synchronized public void publicar(long tick) {
+        this.tick = tick;
+        notifyAll();
+    }
+
+    /**
+     * @return o último tick completo
+     */
+    synchronized public long getTick() {
+        return tick;
+    }
+
+    /**
+     * esperar espera até que um certo tick tenha terminado, retornando
+     * imediatamente caso ele já tenha terminado.
+     *
+     * @param alvo o tick esperado
+     * @return o último tick completo, que pode ser depois do alvo
+     * @throws InterruptedException caso a espera seja interrompida
+     */
+    synchronized public long esperar(long alvo) throws InterruptedException {
+        while (tick < alvo) {
+            wait();
+        }
+        return tick;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * Replay reproduz uma partida gravada pelo {@link GravadorPartida}, sem
+ * interface gráfica e na velocidade máxima, comparando o hash do estado de
+ * cada tick com o hash gravado na partida original.
+ *
+ * Como a lógica do jogo usa variáveis estáticas, cada execução do Replay deve
+ * reproduzir uma única partida.
+ *
+ * @see GravadorPartida
+ * @see Simulacao
+ */
+public class Replay {
+    /**
+     * main reproduz um arquivo de partida e imprime um resumo da reprodução.
+     *
+     * @param args caminho do arquivo de partida
+     * @throws IOException caso o arquivo não possa ser lido ou seja inválido
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("uso: Replay <arquivo de partida>");
+            System.exit(1);
+        }
+
+        DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(args[0]), 65536));
+
+        if (entrada.readInt() != GravadorPartida.MAGICA) {
+            throw new IOException("não é um arquivo de partida: " + args[0]);
+        }
+        int versao = entrada.readUnsignedByte();
+        if (versao != GravadorPartida.VERSAO) {
+            throw new IOException("versão de arquivo não suportada: " + versao);
+        }
+        long semente = entrada.readLong();
+        long tickInicial = entrada.readLong();
+        if (tickInicial != 0) {
+            throw new IOException("partidas que não começam no tick 0 não podem ser reproduzidas");
+        }
+
+        EstadoJogo ej = EstadoJogo.criar(Personagem.getDesenhaveis());
+        Simulacao simulacao = new Simulacao(semente, ej, null);
+        simulacao.iniciar();
+
+        long ticks = 0;
+        long divergencias = 0;
+        long primeiraDivergencia = -1;
+        long entradas = 0;
+        boolean truncado = false;
+        long inicio = System.nanoTime();
+
+        while (true) {
+            int n;
+            try {
+                n = entrada.readUnsignedByte();
+            } catch (EOFException e) {
+                // fim normal do arquivo
+                break;
+            }
+
+            int hashGravado;
+            try {
+                if (n == 0xff) {
+                    n = entrada.readUnsignedShort();
+                }
+                for (int i = 0; i < n; i++) {
+                    simulacao.enfileirar(Entrada.ler(entrada));
+                }
+                hashGravado = entrada.readInt();
+            } catch (EOFException e) {
+                // o servidor foi encerrado no meio da escrita de um tick
+                truncado = true;
+                break;
+            }
+
+            boolean ganhouNivel = simulacao.tick();
+            ticks++;
+            entradas += n;
+
+            if (simulacao.hashEstado() != hashGravado) {
+                divergencias++;
+                if (primeiraDivergencia < 0) {
+                    primeiraDivergencia = ej.getTick();
+                }
+            }
+
+            if (ganhouNivel) {
+                simulacao.proximoNivel();
+            }
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        entrada.close();
+
+        System.out.printf("semente %d, %d ticks (%.1f minutos de jogo), %d entradas%s\n",
+                semente, ticks, ticks / 60.0 / 60.0, entradas,
+                truncado ? ", último tick incompleto" : "");
+        System.out.printf("reproduzido em %.3fs (%.0f ticks/s)\n", segundos, ticks / segundos);
+        System.out.printf("nível %d, score %d e %d, vidas %d e %d\n", ej.getNivel(),
+                ej.getScore(1), ej.getScore(2), ej.getVidas(1), ej.getVidas(2));
+
+        if (divergencias == 0) {
+            System.out.println("todos os ticks conferem com a partida original");
+        } else {
+            System.out.printf("%d ticks divergem da partida original, o primeiro é o tick %d\n",
+                    divergencias, primeiraDivergencia);
+            System.exit(2);
+        }
+    }
+}
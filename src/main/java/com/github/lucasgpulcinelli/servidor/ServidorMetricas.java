@@ -0,0 +1,245 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.comunicacao.Telemetria;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ServidorMetricas expõe a saúde do servidor em um endpoint HTTP local, em
+ * http://127.0.0.1:porta/metricas, no formato de texto do Prometheus: taxa e
+ * percentis da duração dos ticks, personagens por {@link Sprite}, jogadores e
+ * espectadores conectados, taxa de envio de cada jogador com as medidas, as
+ * mudanças por causa e a causa da última (do {@link ControleTaxa}), bytes
+ * enviados, tempo de codificação dos estados e pausas do coletor de lixo.
+ *
+ * Os bytes são exportados só como contadores, que nunca recomeçam do zero,
+ * para que a taxa seja calculada por quem lê as métricas.
+ *
+ * Todos os valores vêm de campos volatile e arrays atômicos, publicados pelas
+ * threads do jogo ({@link MetricasTick}, {@link Telemetria} e
+ * {@link Transmissao}); nenhuma trava da simulação é pega, então uma leitura
+ * do endpoint nunca atrasa a lógica de jogo. As requisições são atendidas por
+ * uma única thread daemon.
+ */
+public class ServidorMetricas {
+    private final HttpServer servidor;
+    private final MetricasTick ticks;
+    private final Transmissao transmissao;
+    private final ComunicadorJogo[] jogadores;
+
+    /**
+     * Cria o endpoint, que só começa a responder quando for iniciado.
+     *
+     * @param porta       porta local do endpoint
+     * @param ticks       as métricas dos ticks
+     * @param transmissao a transmissão para os espectadores
+     * @param jogadores   os comunicadores de cada jogador
+     * @throws IOException caso a porta não possa ser usada
+     */
+    public ServidorMetricas(int porta, MetricasTick ticks, Transmissao transmissao,
+            ComunicadorJogo... jogadores) throws IOException {
+        this.ticks = ticks;
+        this.transmissao = transmissao;
+        this.jogadores = jogadores;
+
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 0);
+        servidor.createContext("/metricas", this::responder);
+        servidor.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metricas");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * iniciar começa a responder as requisições.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * responder escreve todas as métricas como resposta de uma requisição.
+     *
+     * @param troca a requisição
+     * @throws IOException caso a resposta não possa ser escrita
+     */
+    private void responder(HttpExchange troca) throws IOException {
+        byte[] corpo = gerar().getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        troca.sendResponseHeaders(200, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    /**
+     * gerar lê todas as métricas no formato de texto do Prometheus.
+     *
+     * @return o texto das métricas
+     */
+    private String gerar() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("# TYPE servidor_ticks_total counter\n");
+        linha(sb, "servidor_ticks_total", "", ticks.getTicks());
+        sb.append("# TYPE servidor_ticks_por_segundo gauge\n");
+        linha(sb, "servidor_ticks_por_segundo", "", ticks.getTicksPorSegundo());
+
+        long[] duracoes = ticks.getDuracoesOrdenadas();
+        if (duracoes.length > 0) {
+            sb.append("# TYPE servidor_tick_segundos summary\n");
+            for (double q : new double[] { 0.5, 0.9, 0.99, 1 }) {
+                int i = Math.min(duracoes.length - 1, (int) (duracoes.length * q));
+                linha(sb, "servidor_tick_segundos", "quantile=\"" + q + "\"", duracoes[i] / 1e9);
+            }
+        }
+
+        sb.append("# TYPE servidor_entidades gauge\n");
+        for (Sprite s : Sprite.values()) {
+            linha(sb, "servidor_entidades", "sprite=\"" + s + "\"", ticks.getEntidades(s));
+        }
+
+        int conectados = 0;
+        for (ComunicadorJogo cj : jogadores) {
+            conectados += cj.getConectado() ? 1 : 0;
+        }
+        sb.append("# TYPE servidor_jogadores_conectados gauge\n");
+        linha(sb, "servidor_jogadores_conectados", "", conectados);
+        sb.append("# TYPE servidor_espectadores gauge\n");
+        linha(sb, "servidor_espectadores", "", transmissao.getNumeroEspectadores());
+
+        // bytes enviados para cada jogador, somando as suas conexões, e para todos
+        // os espectadores juntos
+        String[] destinos = new String[jogadores.length + 1];
+        for (int i = 0; i < jogadores.length; i++) {
+            destinos[i] = "destino=\"jogador" + (i + 1) + "\"";
+        }
+        destinos[jogadores.length] = "destino=\"espectadores\"";
+
+        sb.append("# TYPE servidor_bytes_enviados_total counter\n");
+        for (int i = 0; i < jogadores.length; i++) {
+            linha(sb, "servidor_bytes_enviados_total", destinos[i], jogadores[i].getBytesEnviados());
+        }
+        linha(sb, "servidor_bytes_enviados_total", destinos[jogadores.length],
+                transmissao.getBytesEnviados());
+
+        // taxa de estados escolhida para cada jogador, e por que ela mudou
+        sb.append("# TYPE servidor_taxa_estados gauge\n");
+        for (int i = 0; i < jogadores.length; i++) {
+            ControleTaxa c = jogadores[i].getControleTaxa();
+            if (c != null) {
+                linha(sb, "servidor_taxa_estados", destinos[i], c.getTaxa());
+            }
+        }
+        sb.append("# TYPE servidor_mudancas_taxa_total counter\n");
+        for (int i = 0; i < jogadores.length; i++) {
+            ControleTaxa c = jogadores[i].getControleTaxa();
+            if (c == null) {
+                continue;
+            }
+            for (ControleTaxa.Causa causa : ControleTaxa.Causa.values()) {
+                linha(sb, "servidor_mudancas_taxa_total",
+                        destinos[i] + ",motivo=\"" + causa.getNome() + "\"", c.getMudancas(causa));
+            }
+        }
+        // só a causa vira rótulo; as medidas que levaram a ela são amostras próprias
+        sb.append("# TYPE servidor_taxa_motivo_info gauge\n");
+        for (int i = 0; i < jogadores.length; i++) {
+            ControleTaxa c = jogadores[i].getControleTaxa();
+            ControleTaxa.Causa causa = (c == null) ? null : c.getUltimaCausa();
+            if (causa != null) {
+                linha(sb, "servidor_taxa_motivo_info",
+                        destinos[i] + ",motivo=\"" + causa.getNome() + "\"", 1);
+            }
+        }
+        // as medidas usadas pelo controle de taxa, como médias da conexão atual
+        ControleTaxa[] controles = new ControleTaxa[jogadores.length];
+        for (int i = 0; i < jogadores.length; i++) {
+            controles[i] = jogadores[i].getControleTaxa();
+        }
+        sb.append("# TYPE servidor_taxa_escrita_segundos gauge\n");
+        for (int i = 0; i < controles.length; i++) {
+            if (controles[i] != null) {
+                linha(sb, "servidor_taxa_escrita_segundos", destinos[i], controles[i].getMediaEscritaMs() / 1e3);
+            }
+        }
+        sb.append("# TYPE servidor_taxa_rtt_segundos gauge\n");
+        for (int i = 0; i < controles.length; i++) {
+            if (controles[i] != null) {
+                linha(sb, "servidor_taxa_rtt_segundos", destinos[i], controles[i].getMediaRttMs() / 1e3);
+            }
+        }
+        sb.append("# TYPE servidor_taxa_atraso_segundos gauge\n");
+        for (int i = 0; i < controles.length; i++) {
+            if (controles[i] != null) {
+                linha(sb, "servidor_taxa_atraso_segundos", destinos[i], controles[i].getAtrasoMs() / 1e3);
+            }
+        }
+        sb.append("# TYPE servidor_taxa_ocupacao gauge\n");
+        for (int i = 0; i < controles.length; i++) {
+            if (controles[i] != null) {
+                linha(sb, "servidor_taxa_ocupacao", destinos[i], controles[i].getOcupacao());
+            }
+        }
+
+        // para os jogadores o tempo inclui a escrita na socket, já que cada um
+        // codifica o seu próprio estado
+        sb.append("# TYPE servidor_codificacao_segundos gauge\n");
+        for (int i = 0; i < jogadores.length; i++) {
+            Telemetria t = jogadores[i].getTelemetria();
+            if (t != null && t.getEnvioMedio() >= 0) {
+                linha(sb, "servidor_codificacao_segundos", destinos[i], t.getEnvioMedio() / 1e9);
+            }
+        }
+        if (transmissao.getCodificacaoMedia() >= 0) {
+            linha(sb, "servidor_codificacao_segundos", destinos[jogadores.length],
+                    transmissao.getCodificacaoMedia() / 1e9);
+        }
+
+        sb.append("# TYPE servidor_gc_pausas_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            linha(sb, "servidor_gc_pausas_total", "coletor=\"" + gc.getName() + "\"", gc.getCollectionCount());
+        }
+        sb.append("# TYPE servidor_gc_pausas_segundos_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            linha(sb, "servidor_gc_pausas_segundos_total", "coletor=\"" + gc.getName() + "\"",
+                    gc.getCollectionTime() / 1e3);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * linha escreve uma amostra de uma métrica.
+     *
+     * @param sb      onde a linha é escrita
+     * @param nome    nome da métrica
+     * @param rotulos rótulos da amostra, ou vazio
+     * @param valor   valor da amostra
+     */
+    private static void linha(StringBuilder sb, String nome, String rotulos, double valor) {
+        sb.append(nome);
+        if (!rotulos.isEmpty()) {
+            sb.append('{').append(rotulos).append('}');
+        }
+        sb.append(' ');
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            sb.append((long) valor);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.9g", valor));
+        }
+        sb.append('\n');
+    }
+}
@@ -0,0 +1,296 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Evento;
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.perfil.Fase;
+import com.github.lucasgpulcinelli.perfil.Perfil;
+import com.github.lucasgpulcinelli.registro.RegistroPartida;
+import com.github.lucasgpulcinelli.sistema.Aleatorio;
+import com.github.lucasgpulcinelli.sistema.Base;
+import com.github.lucasgpulcinelli.sistema.Canhao;
+import com.github.lucasgpulcinelli.sistema.Checkpoint;
+import com.github.lucasgpulcinelli.sistema.Inimigo;
+import com.github.lucasgpulcinelli.sistema.NaveEspecial;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+import com.github.lucasgpulcinelli.sistema.TelaJogo;
+
+/**
+ * Simulacao executa a lógica do jogo, um tick por vez.
+ *
+ * Toda a alteração na lógica do jogo acontece na thread que chama
+ * {@link tick}: as threads de conexão somente enfileiram {@link Entrada}s, que
+ * são aplicadas no início do próximo tick. Junto com a semente do
+ * {@link Aleatorio}, isso faz com que a mesma sequência de entradas sempre
+ * gere a mesma partida, o que permite gravar uma partida com o
+ * {@link GravadorPartida} e reproduzí-la com {@link Replay}.
+ *
+ * @see Main
+ * @see Replay
+ */
+public class Simulacao {
+    /** estado de jogo simulado */
+    private final EstadoJogo ej;
+    /** gravador da partida, ou null caso a partida não seja gravada */
+    private final GravadorPartida gravador;
+    /** entradas esperando o próximo tick */
+    private final ConcurrentLinkedQueue<Entrada> entradas = new ConcurrentLinkedQueue<>();
+    /**
+     * entradas aplicadas no tick atual, para o gravador; reutilizada em todos os
+     * ticks, já que o gravador codifica as entradas antes de retornar
+     */
+    private final ArrayList<Entrada> aplicadas = new ArrayList<>();
+    /** canhão atual de cada jogador, indexado pelo número do jogador */
+    private final Canhao[] canhoes = new Canhao[3];
+
+    /**
+     * Cria uma nova simulação, semeando o gerador de números aleatórios do jogo.
+     *
+     * @param semente  semente da partida
+     * @param ej       estado de jogo a ser simulado
+     * @param gravador gravador da partida, ou null para não gravar
+     */
+    public Simulacao(long semente, EstadoJogo ej, GravadorPartida gravador) {
+        this.ej = ej;
+        this.gravador = gravador;
+        Aleatorio.semear(semente);
+    }
+
+    /**
+     * iniciar cria as bases e os inimigos do primeiro nível, deve ser chamado
+     * uma única vez antes do primeiro tick.
+     */
+    public void iniciar() {
+        synchronized (Personagem.getPersonagens()) {
+            initBases();
+            initInimigos(ej.getNivel());
+        }
+    }
+
+    /**
+     * restaurar continua uma partida salva por um {@link GravadorCheckpoint}, em
+     * vez de {@link iniciar}. Os canhões restaurados continuam sendo dos seus
+     * jogadores, que voltam a controlá-los quando se reconectarem.
+     *
+     * @param dados o estado salvo
+     * @throws IOException caso o estado seja inválido
+     */
+    public void restaurar(byte[] dados) throws IOException {
+        synchronized (Personagem.getPersonagens()) {
+            Checkpoint.restaurar(dados, ej);
+            for (Personagem p : Personagem.getPersonagens()) {
+                if (p instanceof Canhao) {
+                    canhoes[((Canhao) p).getJogador()] = (Canhao) p;
+                }
+            }
+        }
+    }
+
+    /**
+     * capturar copia todo o estado da partida para um checkpoint, com a trava da
+     * lista de personagens; deve ser chamado entre dois ticks.
+     *
+     * @param out onde o estado é escrito
+     * @throws IOException caso a escrita em out falhe
+     */
+    public void capturar(DataOutput out) throws IOException {
+        synchronized (Personagem.getPersonagens()) {
+            Checkpoint.capturar(ej, out);
+        }
+    }
+
+    /**
+     * @param jogador o jogador, 1 ou 2
+     * @return se o jogador já teve um canhão nessa partida
+     */
+    public boolean participou(int jogador) {
+        return canhoes[jogador] != null;
+    }
+
+    /**
+     * enfileirar coloca uma entrada para ser aplicada no início do próximo tick.
+     * Pode ser chamado por qualquer thread.
+     *
+     * @param e a entrada
+     */
+    public void enfileirar(Entrada e) {
+        entradas.add(e);
+    }
+
+    /**
+     * tick aplica as entradas pendentes e executa um frame de todos os
+     * personagens, avançando o tick do estado de jogo.
+     *
+     * O tick inteiro roda com a trava da lista de personagens, a mesma usada por
+     * quem envia o estado, então nenhum envio vê um tick pela metade.
+     *
+     * @return se os jogadores ganharam o nível nesse tick; nesse caso,
+     *         {@link proximoNivel} deve ser chamado antes do próximo tick
+     */
+    @SuppressWarnings("try")
+    public boolean tick() {
+        aplicadas.clear();
+        boolean ganhouNivel;
+
+        RegistroPartida.inicioTick(ej.getTick() + 1);
+        synchronized (Personagem.getPersonagens()) {
+            try (Perfil.Escopo escopo = Perfil.abrir(Fase.ENTRADAS)) {
+                Entrada e;
+                while ((e = entradas.poll()) != null) {
+                    aplicar(e);
+                    aplicadas.add(e);
+                }
+            }
+
+            try (Perfil.Escopo escopo = Perfil.abrir(Fase.FRAME)) {
+                ganhouNivel = frameTodos();
+            }
+            ej.avancarTick();
+            if (ganhouNivel) {
+                ej.ganhouNivel();
+                RegistroPartida.nivelGanho(ej.getNivel());
+            }
+        }
+
+        if (gravador != null) {
+            try (Perfil.Escopo escopo = Perfil.abrir(Fase.GRAVACAO)) {
+                gravador.registrarTick(aplicadas, hashEstado());
+            }
+        }
+
+        return ganhouNivel;
+    }
+
+    /**
+     * proximoNivel prepara os inimigos do próximo nível, depois de um tick em
+     * que os jogadores ganharam.
+     */
+    public void proximoNivel() {
+        synchronized (Personagem.getPersonagens()) {
+            Inimigo.resetarInimigos();
+            initInimigos(ej.getNivel());
+        }
+    }
+
+    /**
+     * hashEstado calcula um resumo de todo o estado visível do jogo, usado para
+     * comparar uma reprodução com a partida original.
+     *
+     * @return o hash do estado atual
+     */
+    public int hashEstado() {
+        int h = 17;
+        for (Desenhavel d : Personagem.getDesenhaveis()) {
+            h = 31 * h + d.getSprite().ordinal();
+            h = 31 * h + Float.floatToIntBits(d.getX());
+            h = 31 * h + Float.floatToIntBits(d.getY());
+        }
+        for (int jogador = 1; jogador <= 2; jogador++) {
+            h = 31 * h + ej.getScore(jogador);
+            h = 31 * h + ej.getVidas(jogador);
+        }
+        h = 31 * h + ej.getNivel();
+        return 31 * h + Long.hashCode(ej.getTick());
+    }
+
+    /**
+     * aplicar executa uma entrada na lógica do jogo.
+     *
+     * @param e a entrada
+     */
+    private void aplicar(Entrada e) {
+        switch (e.getTipo()) {
+            case Entrada.ACAO:
+                Canhao c = canhoes[e.getJogador()];
+                if (c != null) {
+                    c.agir(e.getAcao(), e.getFramesPorAcao());
+                }
+                break;
+            case Entrada.ENTRAR:
+                // um jogador com o canhão ainda vivo nunca ganha um segundo
+                Canhao atual = canhoes[e.getJogador()];
+                if (atual == null || !atual.getVivo()) {
+                    novoCanhao(e.getJogador());
+                }
+                break;
+            case Entrada.CONECTAR:
+                Canhao anterior = canhoes[e.getJogador()];
+                if (anterior == null) {
+                    // o primeiro canhão do jogador nessa partida
+                    novoCanhao(e.getJogador());
+                } else if (!anterior.getVivo()) {
+                    // o canhão morreu enquanto o jogador estava desconectado, ou antes
+                    // de ele confirmar a volta: o novo cliente não viu a perda de vida,
+                    // então ela é avisada de novo, e o novo canhão só entra com a
+                    // confirmação (Entrada.ENTRAR). Um canhão vivo, como o de uma
+                    // partida restaurada, simplesmente volta a ser controlado
+                    ej.addEvento((e.getJogador() == 1) ? Evento.PERDEU_VIDA_P1 : Evento.PERDEU_VIDA_P2);
+                }
+                break;
+            case Entrada.DESCONECTAR:
+                ej.perderJogo();
+                break;
+        }
+    }
+
+    /**
+     * novoCanhao coloca um novo canhão do jogador no jogo.
+     *
+     * @param jogador o jogador, 1 ou 2
+     */
+    private void novoCanhao(int jogador) {
+        canhoes[jogador] = new Canhao(TelaJogo.MAX_X * 0.2f + 0.5f, TelaJogo.MAX_Y - 0.5f, jogador);
+    }
+
+    private static void initBases() {
+        for (int i = 0; i < 4; i++) {
+            new Base(7 * i + 4 + 0.5f, TelaJogo.MAX_Y - 3 + 0.5f);
+        }
+    }
+
+    private static void initInimigos(int nivel) {
+        Sprite sprite = Sprite.INIMIGO1;
+
+        for (int i = 0; i < 5; i++) {
+            if (i >= 3) {
+                sprite = Sprite.INIMIGO3;
+            } else if (i >= 1) {
+                sprite = Sprite.INIMIGO2;
+            }
+
+            for (int j = 0; j < 11; j++) {
+                new Inimigo(j * 2 + 1 + 0.5f, i * 2 + 2 + nivel + 0.5f, sprite);
+            }
+        }
+    }
+
+    @SuppressWarnings("try")
+    private static boolean frameTodos() {
+        List<Personagem> personagens = Personagem.getPersonagens();
+
+        for (int i = 0, mortos = 0; i + mortos < personagens.size(); i++) {
+            // roda o método frame, e caso o desenhavel tenha morrido, a List personagens
+            // vai ter get(i) com o valor do próximo Personagem (pois o personagem anterior
+            // foi removido)
+
+            Personagem p = personagens.get(i + mortos);
+            mortos += (p.frame()) ? 1 : 0;
+        }
+
+        // tenta criar uma nave especial
+        if (Aleatorio.proximo() < 0.0003)
+            NaveEspecial.tentarGerar();
+
+        // finaliza o frame dos inimigos e retorna se o jogador ganhou
+        try (Perfil.Escopo escopo = Perfil.abrir(Fase.INIMIGOS)) {
+            return Inimigo.finalFrameInimigos();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.github.lucasgpulcinelli.servidor;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Saudacao;
+import com.github.lucasgpulcinelli.sistema.Personagem;
+
+/**
+ * Transmissao envia o estado de jogo para todos os espectadores conectados.
+ *
+ * Para que o número de espectadores não pese no loop principal do jogo, o
+ * estado é codificado uma única vez por envio, e o mesmo
+ * {@link BufferCompartilhado} é colocado na fila de cada {@link Espectador}; a
+ * escrita na socket de cada um acontece na sua própria thread.
+ *
+ * O estado é serializado diretamente no ByteBuffer direto de um buffer do
+ * {@link PoolBuffers}, por uma única ObjectOutputStream reutilizada, e cada
+ * espectador escreve esse mesmo buffer no seu SocketChannel; o buffer volta ao
+ * pool depois que o último espectador o enviou. Assim, fora a própria
+ * serialização, o envio para os espectadores não cria lixo.
+ *
+ * Os bytes codificados são a continuação de uma stream de ObjectOutputStream:
+ * um reset seguido do {@link EstadoJogo}, então os clientes leem o estado
+ * normalmente com uma ObjectInputStream.
+ *
+ * O último estado codificado fica guardado com o seu tick, e os
+ * {@link ComunicadorJogo} também o pedem com {@link codificado}: cada tick é
+ * serializado uma única vez, não importa quantos jogadores e espectadores o
+ * recebam. Os jogadores copiam esses bytes para a sua própria stream, que pode
+ * ser comprimida.
+ *
+ * @see Espectador
+ * @see Recepcionista
+ */
+public class Transmissao {
+    /** a cada quantos ticks da lógica de jogo os espectadores recebem um estado */
+    public static final int TICKS_POR_ENVIO = 2;
+
+    /**
+     * SemCabecalho é uma ObjectOutputStream que não escreve o cabeçalho de
+     * stream, para que seus bytes possam continuar uma stream já iniciada.
+     */
+    private static final class SemCabecalho extends ObjectOutputStream {
+        /**
+         * @param out onde os bytes serão escritos
+         * @throws IOException caso a escrita falhe
+         */
+        private SemCabecalho(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() {
+        }
+    }
+
+    /** capacidade inicial de cada buffer, bem maior que um estado típico */
+    private static final int CAPACIDADE_BUFFER = 64 * 1024;
+    /** número máximo de buffers livres guardados no pool */
+    private static final int MAXIMO_LIVRES = 64;
+
+    /**
+     * SaidaBuffer repassa o que é escrito para o buffer do estado sendo
+     * codificado, para que a mesma ObjectOutputStream sirva a todos os buffers.
+     */
+    private static final class SaidaBuffer extends OutputStream {
+        private BufferCompartilhado destino;
+
+        @Override
+        public void write(int b) {
+            destino.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            destino.write(b, off, len);
+        }
+    }
+
+    /** cria a thread de cada espectador */
+    private final ThreadFactory threads;
+
+    /**
+     * espectadores conectados; o array é trocado por uma cópia a cada conexão
+     * ou desconexão, e nunca alterado, para que publicar o percorra sem criar
+     * um iterador
+     */
+    private volatile Espectador[] espectadores = new Espectador[0];
+
+    /** buffers para os estados codificados */
+    private final PoolBuffers pool = new PoolBuffers(MAXIMO_LIVRES, CAPACIDADE_BUFFER);
+
+    /** destino da codificação, apontando para o buffer atual */
+    private final SaidaBuffer destino = new SaidaBuffer();
+    /** stream reutilizada para a codificação do estado, criada no primeiro envio */
+    private ObjectOutputStream saida = null;
+
+    /**
+     * último estado codificado, com uma referência própria, e o seu tick; só são
+     * usados com as travas da lista de personagens e do estado de jogo
+     */
+    private BufferCompartilhado ultimoCodificado = null;
+    private long tickCodificado = -1;
+
+    /** média móvel do tempo de codificação de um estado, em nanossegundos */
+    private volatile double codificacaoMedia = -1;
+
+    /** tick do último estado publicado, informado na saudação dos espectadores */
+    private volatile long ultimoTick = 0;
+    /** total de bytes escritos para todos os espectadores */
+    private final AtomicLong bytesEnviados = new AtomicLong();
+
+    /**
+     * Cria uma nova transmissão, sem espectadores.
+     *
+     * @param threads cria a thread de cada espectador
+     */
+    public Transmissao(ThreadFactory threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * adicionarEspectador inicia a thread de um novo espectador.
+     *
+     * @param canal  o canal do espectador
+     * @param pedido a saudação do cliente
+     */
+    public void adicionarEspectador(SocketChannel canal, Saudacao pedido) {
+        Espectador e = new Espectador(canal, pedido, this);
+        synchronized (this) {
+            Espectador[] novos = Arrays.copyOf(espectadores, espectadores.length + 1);
+            novos[novos.length - 1] = e;
+            espectadores = novos;
+        }
+        threads.newThread(e).start();
+    }
+
+    /**
+     * removerEspectador retira um espectador desconectado da transmissão.
+     *
+     * @param e o espectador a ser removido
+     */
+    synchronized void removerEspectador(Espectador e) {
+        Espectador[] atuais = espectadores;
+        for (int i = 0; i < atuais.length; i++) {
+            if (atuais[i] == e) {
+                Espectador[] novos = Arrays.copyOf(atuais, atuais.length - 1);
+                System.arraycopy(atuais, i + 1, novos, i, atuais.length - i - 1);
+                espectadores = novos;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return o número de espectadores conectados
+     */
+    public int getNumeroEspectadores() {
+        return espectadores.length;
+    }
+
+    /**
+     * @return a média móvel do tempo de codificação de um estado, em
+     *         nanossegundos, ou -1 caso nenhum estado tenha sido codificado
+     */
+    public double getCodificacaoMedia() {
+        return codificacaoMedia;
+    }
+
+    /**
+     * @return o total de bytes escritos para todos os espectadores
+     */
+    public long getBytesEnviados() {
+        return bytesEnviados.get();
+    }
+
+    /**
+     * registrarEnviados soma os bytes escritos por um espectador ao total.
+     *
+     * @param bytes os bytes escritos
+     */
+    void registrarEnviados(long bytes) {
+        bytesEnviados.addAndGet(bytes);
+    }
+
+    /**
+     * @return o tick do último estado publicado
+     */
+    public long getUltimoTick() {
+        return ultimoTick;
+    }
+
+    /**
+     * @return o pool de buffers dos estados codificados
+     */
+    public PoolBuffers getPool() {
+        return pool;
+    }
+
+    /**
+     * publicar codifica o estado de jogo atual e o coloca na fila de todos os
+     * espectadores. Caso não haja espectadores, nada é codificado.
+     *
+     * @param ej o estado de jogo
+     */
+    public void publicar(EstadoJogo ej) {
+        ultimoTick = ej.getTick();
+        Espectador[] atuais = espectadores;
+        if (atuais.length == 0) {
+            return;
+        }
+
+        BufferCompartilhado quadro;
+        try {
+            synchronized (Personagem.getPersonagens()) {
+                synchronized (ej) {
+                    quadro = codificado(ej);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro codificando estado: " + e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < atuais.length; i++) {
+            quadro.reter();
+            atuais[i].enfileirar(quadro);
+        }
+        quadro.liberar();
+    }
+
+    /**
+     * codificado retorna o estado de jogo atual codificado, serializando-o
+     * somente na primeira vez em que o seu tick é pedido, seja pela publicação
+     * para os espectadores ou pelo envio a um jogador.
+     *
+     * Deve ser chamado com as travas da lista de personagens e do estado de
+     * jogo, que também garantem que uma única thread codifica por vez.
+     *
+     * @param ej o estado de jogo
+     * @return o estado codificado, com uma referência que passa a ser de quem
+     *         chamou
+     * @throws IOException caso a serialização falhe
+     */
+    BufferCompartilhado codificado(EstadoJogo ej) throws IOException {
+        if (ultimoCodificado == null || tickCodificado != ej.getTick()) {
+            BufferCompartilhado quadro = pool.obter();
+            try {
+                long inicio = System.nanoTime();
+                codificar(ej, quadro);
+                long duracao = System.nanoTime() - inicio;
+                codificacaoMedia = (codificacaoMedia < 0) ? duracao
+                        : codificacaoMedia + 0.1 * (duracao - codificacaoMedia);
+            } catch (IOException e) {
+                // a stream pode ter ficado no meio de um objeto, então é recriada
+                saida = null;
+                quadro.liberar();
+                throw e;
+            }
+
+            if (ultimoCodificado != null) {
+                ultimoCodificado.liberar();
+            }
+            ultimoCodificado = quadro;
+            tickCodificado = ej.getTick();
+        }
+
+        ultimoCodificado.reter();
+        return ultimoCodificado;
+    }
+
+    /**
+     * codificar transforma o estado de jogo nos bytes que um cliente lê como o
+     * próximo objeto da sua ObjectInputStream.
+     *
+     * @param ej     o estado de jogo
+     * @param quadro o buffer onde os bytes são escritos
+     * @throws IOException caso a serialização falhe
+     */
+    private void codificar(EstadoJogo ej, BufferCompartilhado quadro) throws IOException {
+        destino.destino = quadro;
+        if (saida == null) {
+            saida = new SemCabecalho(destino);
+        }
+
+        // o reset faz o cliente esquecer os objetos que já recebeu, já que esses
+        // bytes não conhecem os objetos enviados antes deles
+        saida.reset();
+        saida.writeObject(ej);
+        saida.flush();
+
+        destino.destino = null;
+        quadro.concluir();
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.lucasgpulcinelli.sistema;
+
+/**
+ * Aleatorio é a única fonte de números aleatórios da lógica do jogo.
+ *
+ * Todos os sorteios da lógica (tiros dos inimigos, aparição e score da nave
+ * especial) passam por aqui, e são feitos somente pela thread da lógica de
+ * jogo. Assim, uma partida inteira pode ser reproduzida a partir da semente e
+ * das ações dos jogadores.
+ *
+ * O gerador é o mesmo gerador congruente linear de java.util.Random, gerando
+ * exatamente a mesma sequência para a mesma semente, mas com o estado interno
+ * acessível, para que ele possa ser salvo em um {@link Checkpoint}.
+ */
+public final class Aleatorio {
+    private static final long MULTIPLICADOR = 0x5DEECE66DL;
+    private static final long INCREMENTO = 0xBL;
+    private static final long MASCARA = (1L << 48) - 1;
+
+    /** estado do gerador compartilhado por toda a lógica de jogo */
+    private static long estado = embaralhar(System.nanoTime());
+
+    /** classe somente com métodos estáticos */
+    private Aleatorio() {
+    }
+
+    /**
+     * @param semente uma semente
+     * @return o estado inicial do gerador para essa semente, como em
+     *         java.util.Random
+     */
+    private static long embaralhar(long semente) {
+        return (semente ^ MULTIPLICADOR) & MASCARA;
+    }
+
+    /**
+     * @param bits quantos bits devem ser gerados, no máximo 32
+     * @return os próximos bits aleatórios
+     */
+    private static int proximosBits(int bits) {
+        estado = (estado * MULTIPLICADOR + INCREMENTO) & MASCARA;
+        return (int) (estado >>> (48 - bits));
+    }
+
+    /**
+     * semear reinicia o gerador com uma semente conhecida.
+     *
+     * @param semente a semente da partida
+     */
+    public static void semear(long semente) {
+        estado = embaralhar(semente);
+    }
+
+    /**
+     * @return um número aleatório entre 0 (inclusivo) e 1 (exclusivo), assim
+     *         como Math.random()
+     */
+    public static double proximo() {
+        return (((long) proximosBits(26) << 27) + proximosBits(27)) * 0x1.0p-53;
+    }
+
+    /**
+     * @return o estado interno do gerador, para ser salvo
+     */
+    static long getEstado() {
+        return estado;
+    }
+
+    /**
+     * @param e um estado retornado por {@link getEstado}
+     */
+    static void setEstado(long e) {
+        estado = e & MASCARA;
+    }
+}
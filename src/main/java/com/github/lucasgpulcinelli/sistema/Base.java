@@ -1,5 +1,8 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
@@ -65,6 +68,32 @@ public class Base implements Serializable {
                 matar();
             }
         }
+
+        @Override
+        void escreverCheckpoint(DataOutput out) throws IOException {
+            super.escreverCheckpoint(out);
+            out.writeByte(vida);
+        }
+
+        @Override
+        void lerCheckpoint(DataInput in) throws IOException {
+            super.lerCheckpoint(in);
+            vida = in.readByte();
+        }
+    }
+
+    /** cria uma base vazia, usada somente para restaurar pedaços */
+    private Base() {
+    }
+
+    /**
+     * restaurarPedaco cria um único pedaço de base, cujo estado será lido de um
+     * {@link Checkpoint}.
+     *
+     * @return o novo pedaço
+     */
+    static PedacoBase restaurarPedaco() {
+        return new Base().new PedacoBase(0, 0);
     }
 
     /**
@@ -1,10 +1,14 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import com.github.lucasgpulcinelli.comunicacao.Acao;
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.registro.RegistroPartida;
 
 /**
  * Canhao implementa as ações e o jogador em si, conectando o mundo do sistema
@@ -45,12 +49,58 @@ public class Canhao extends Personagem {
         this.jogador = jogador;
     }
 
+    /**
+     * @return o id do jogador associado ao canhão
+     */
+    public int getJogador() {
+        return jogador;
+    }
+
+    /**
+     * @return se o canhão ainda está no jogo; um canhão atingido já não está
+     *         vivo, mesmo antes de sair da lista de personagens no próximo frame
+     */
+    public boolean getVivo() {
+        ArrayList<Personagem> ps = Personagem.getPersonagens();
+        synchronized (ps) {
+            return !deveMorrer && ps.contains(this);
+        }
+    }
+
+    /**
+     * @return o tiro do canhão que ainda está na tela, ou null
+     */
+    Tiro getTiro() {
+        return tiro;
+    }
+
+    /**
+     * @param tiro o tiro do canhão que ainda está na tela, ou null
+     */
+    void setTiro(Tiro tiro) {
+        this.tiro = tiro;
+    }
+
+    @Override
+    void escreverCheckpoint(DataOutput out) throws IOException {
+        super.escreverCheckpoint(out);
+        out.writeInt(framesMovimento);
+    }
+
+    @Override
+    void lerCheckpoint(DataInput in) throws IOException {
+        super.lerCheckpoint(in);
+        framesMovimento = in.readInt();
+    }
+
     /**
      * Um canhão faz o jogador associado perder uma vida quando morre.
      */
     @Override
     public void matar() {
-        EstadoJogo.pegarUnicoEstado().perderVida(jogador);
+        EstadoJogo ej = EstadoJogo.pegarUnicoEstado();
+        ej.perderVida(jogador);
+        RegistroPartida.vidaPerdida(jogador, ej.getVidas(jogador));
         super.matar();
     }
 
@@ -60,15 +110,27 @@ public class Canhao extends Personagem {
      * 
      * @param acao ação a ser realizada
      */
-    synchronized public void agir(Acao acao) {
+    public void agir(Acao acao) {
+        agir(acao, 2);
+    }
+
+    /**
+     * agir realiza uma ação que vale por um certo número de frames do loop
+     * principal do jogo. Isso mantém a velocidade do canhão igual para clientes
+     * que enviam ações em taxas diferentes.
+     * 
+     * @param acao          ação a ser realizada
+     * @param framesPorAcao número de frames até a próxima ação do jogador
+     */
+    synchronized public void agir(Acao acao, int framesPorAcao) {
         switch (acao) {
             case ESQUERDA:
-                framesMovimento = 2;
+                framesMovimento = framesPorAcao;
                 setVelocidade(velocidadeCanhao);
                 setAngulo((float) 0);
                 break;
             case DIREITA:
-                framesMovimento = 2;
+                framesMovimento = framesPorAcao;
                 setVelocidade(velocidadeCanhao);
                 setAngulo((float) Math.PI);
                 break;
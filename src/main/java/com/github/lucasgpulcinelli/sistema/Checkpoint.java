@@ -0,0 +1,166 @@
+package com.github.lucasgpulcinelli.sistema;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
+import com.github.lucasgpulcinelli.comunicacao.Sprite;
+
+/**
+ * Checkpoint captura e restaura todo o estado da lógica de jogo: todos os
+ * personagens na ordem da lista, o {@link EstadoJogo} (tick, scores, vidas,
+ * nível e eventos), a formação dos inimigos e o estado do {@link Aleatorio}.
+ * Restaurar um checkpoint em um processo novo continua a partida exatamente de
+ * onde ela estava.
+ *
+ * O formato é binário e compacto: cada personagem é um byte com o seu tipo,
+ * os argumentos do construtor que o tipo precisar e o estado escrito pelo
+ * próprio personagem; o tiro de cada canhão é guardado pela posição na lista.
+ * Os personagens vêm primeiro pois os seus construtores alteram o estado de
+ * jogo, a formação e o gerador aleatório, que são restaurados depois.
+ *
+ * Os dois métodos devem ser chamados pela thread da lógica de jogo, entre dois
+ * ticks, com a trava da lista de personagens; a captura só copia o estado para
+ * um buffer dado por quem chama, e a conferência e a escrita no disco podem ser
+ * feitas por outra thread.
+ */
+public final class Checkpoint {
+    private static final byte CANHAO = 0;
+    private static final byte TIRO = 1;
+    private static final byte INIMIGO = 2;
+    private static final byte PEDACO_BASE = 3;
+    private static final byte NAVE_ESPECIAL = 4;
+    private static final byte PARTICULA = 5;
+
+    /** classe somente com métodos estáticos */
+    private Checkpoint() {
+    }
+
+    /**
+     * capturar copia todo o estado da lógica de jogo.
+     *
+     * @param ej  o estado de jogo
+     * @param out onde o estado é escrito
+     * @throws IOException caso a escrita em out falhe
+     */
+    public static void capturar(EstadoJogo ej, DataOutput out) throws IOException {
+        ArrayList<Personagem> personagens = Personagem.getPersonagens();
+        // os canhões e os tiros com as suas posições, para ligar cada canhão ao
+        // seu tiro sem procurar o tiro na lista inteira
+        ArrayList<Canhao> canhoes = new ArrayList<>(2);
+        ArrayList<Tiro> tiros = new ArrayList<>();
+        int[] posicoesTiros = new int[personagens.size()];
+
+        out.writeInt(personagens.size());
+        for (int i = 0; i < personagens.size(); i++) {
+            Personagem p = personagens.get(i);
+            if (p instanceof Canhao) {
+                out.writeByte(CANHAO);
+                out.writeByte(((Canhao) p).getJogador());
+                canhoes.add((Canhao) p);
+            } else if (p instanceof Tiro) {
+                out.writeByte(TIRO);
+                out.writeByte(((Tiro) p).jogador);
+                posicoesTiros[tiros.size()] = i;
+                tiros.add((Tiro) p);
+            } else if (p instanceof Inimigo) {
+                out.writeByte(INIMIGO);
+                out.writeByte(p.getSprite().ordinal());
+            } else if (p instanceof Base.PedacoBase) {
+                out.writeByte(PEDACO_BASE);
+            } else if (p instanceof NaveEspecial) {
+                out.writeByte(NAVE_ESPECIAL);
+            } else if (p instanceof Particula) {
+                out.writeByte(PARTICULA);
+            } else {
+                throw new IllegalStateException("personagem desconhecido: " + p.getClass());
+            }
+            p.escreverCheckpoint(out);
+        }
+
+        // o tiro de cada canhão, pela posição na lista
+        for (Canhao c : canhoes) {
+            int posicao = -1;
+            for (int i = 0; i < tiros.size(); i++) {
+                if (tiros.get(i) == c.getTiro()) {
+                    posicao = posicoesTiros[i];
+                    break;
+                }
+            }
+            out.writeInt(posicao);
+        }
+
+        ej.escreverCheckpoint(out);
+        Inimigo.escreverFormacao(out);
+        out.writeLong(Aleatorio.getEstado());
+    }
+
+    /**
+     * restaurar recria o estado capturado por {@link capturar}. Só pode ser
+     * chamado antes de qualquer personagem ser criado.
+     *
+     * @param dados o estado codificado
+     * @param ej    o estado de jogo, que é sobrescrito
+     * @throws IOException caso os dados estejam incompletos ou inválidos
+     */
+    public static void restaurar(byte[] dados, EstadoJogo ej) throws IOException {
+        ArrayList<Personagem> personagens = Personagem.getPersonagens();
+        if (!personagens.isEmpty()) {
+            throw new IllegalStateException("o checkpoint deve ser restaurado antes do jogo começar");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(dados));
+        try {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                // cada construtor coloca o personagem no fim da lista, mantendo a ordem
+                Personagem p;
+                byte tipo = in.readByte();
+                switch (tipo) {
+                    case CANHAO:
+                        p = new Canhao(0, 0, in.readByte());
+                        break;
+                    case TIRO:
+                        p = new Tiro(0, 0, (int) in.readByte());
+                        break;
+                    case INIMIGO:
+                        p = new Inimigo(0, 0, Sprite.values()[in.readUnsignedByte()]);
+                        break;
+                    case PEDACO_BASE:
+                        p = Base.restaurarPedaco();
+                        break;
+                    case NAVE_ESPECIAL:
+                        p = NaveEspecial.restaurarNave();
+                        break;
+                    case PARTICULA:
+                        p = new Particula(0, 0);
+                        break;
+                    default:
+                        throw new IOException("tipo de personagem inválido: " + tipo);
+                }
+                p.lerCheckpoint(in);
+            }
+
+            for (Personagem p : personagens) {
+                if (p instanceof Canhao) {
+                    int tiro = in.readInt();
+                    ((Canhao) p).setTiro((tiro < 0) ? null : (Tiro) personagens.get(tiro));
+                }
+            }
+
+            // sobrescreve o que os construtores alteraram
+            ej.lerCheckpoint(in);
+            Inimigo.lerFormacao(in);
+            Aleatorio.setEstado(in.readLong());
+        } catch (RuntimeException e) {
+            throw new IOException("checkpoint inválido", e);
+        }
+
+        if (in.available() != 0) {
+            throw new IOException("checkpoint com bytes sobrando");
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.security.InvalidParameterException;
 
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
@@ -112,7 +115,7 @@ public class Inimigo extends Personagem {
     synchronized public boolean frame() {
         boolean retorno = super.frame();
 
-        if (Math.random() < 1 / 2000f)
+        if (Aleatorio.proximo() < 1 / 2000f)
             new Tiro(getX(), getY(), true);
 
         if (!podeMover()) {
@@ -160,6 +163,33 @@ public class Inimigo extends Personagem {
         return inimigosVivos == 0;
     }
 
+    /**
+     * escreverFormacao escreve o estado compartilhado por todos os inimigos, para
+     * ser restaurado por {@link lerFormacao}.
+     *
+     * @param out onde o estado é escrito
+     * @throws IOException caso a escrita falhe
+     */
+    static void escreverFormacao(DataOutput out) throws IOException {
+        out.writeInt(inimigosVivos);
+        out.writeBoolean(descendo);
+        out.writeBoolean(paraEsquerda);
+        out.writeInt(framesDescendo);
+    }
+
+    /**
+     * lerFormacao restaura o estado escrito por {@link escreverFormacao}.
+     *
+     * @param in de onde o estado é lido
+     * @throws IOException caso a leitura falhe
+     */
+    static void lerFormacao(DataInput in) throws IOException {
+        inimigosVivos = in.readInt();
+        descendo = in.readBoolean();
+        paraEsquerda = in.readBoolean();
+        framesDescendo = in.readInt();
+    }
+
     /**
      * resetarInimigos retorna os estados internos da classe ao padrão inicial,
      * ideal para o início de um próximo nível.
@@ -1,8 +1,13 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.registro.RegistroPartida;
 
 /**
  * NaveEspecial implementa o personagem mais peculiar do jogo.
@@ -26,7 +31,7 @@ public class NaveEspecial extends Personagem {
     private NaveEspecial() {
         super(Sprite.NAVEESPECIAL, 0, 1, 0.5f, 0.5f);
 
-        boolean vemDaEsquerda = Math.random() < 0.5;
+        boolean vemDaEsquerda = Aleatorio.proximo() < 0.5;
         setX(vemDaEsquerda ? 0.5f : TelaJogo.MAX_X - 0.5f);
         setVelocidade(0.05f);
         setAngulo(vemDaEsquerda ? (float) Math.PI : 0);
@@ -42,6 +47,31 @@ public class NaveEspecial extends Personagem {
             return;
         }
         unicaNave = new NaveEspecial();
+        RegistroPartida.naveEspecial();
+    }
+
+    /**
+     * restaurarNave cria a nave especial cujo estado será lido de um
+     * {@link Checkpoint}. O número aleatório usado pelo construtor não importa,
+     * pois o estado do gerador também é restaurado.
+     *
+     * @return a nova nave
+     */
+    static NaveEspecial restaurarNave() {
+        unicaNave = new NaveEspecial();
+        return unicaNave;
+    }
+
+    @Override
+    void escreverCheckpoint(DataOutput out) throws IOException {
+        super.escreverCheckpoint(out);
+        out.writeBoolean(mortoPorCanhao);
+    }
+
+    @Override
+    void lerCheckpoint(DataInput in) throws IOException {
+        super.lerCheckpoint(in);
+        mortoPorCanhao = in.readBoolean();
     }
 
     /**
@@ -51,7 +81,7 @@ public class NaveEspecial extends Personagem {
     @Override
     public int getScoreMorto() {
         final int[] scores = { 50, 100, 150, 200, 300 };
-        int i = (int) (Math.random() * 5);
+        int i = (int) (Aleatorio.proximo() * 5);
 
         return scores[i];
     }
@@ -1,5 +1,9 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
@@ -24,6 +28,18 @@ public class Particula extends Personagem {
         EstadoJogo.pegarUnicoEstado().addEvento(Evento.OBJETO_DESTRUIDO);
     }
 
+    @Override
+    void escreverCheckpoint(DataOutput out) throws IOException {
+        super.escreverCheckpoint(out);
+        out.writeInt(contador);
+    }
+
+    @Override
+    void lerCheckpoint(DataInput in) throws IOException {
+        super.lerCheckpoint(in);
+        contador = in.readInt();
+    }
+
     /** Uma partícula deve morrer quando o contador zerar. */
     @Override
     synchronized public boolean frame() {
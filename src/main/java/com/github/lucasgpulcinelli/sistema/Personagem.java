@@ -1,11 +1,16 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import com.github.lucasgpulcinelli.comunicacao.Desenhavel;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.perfil.Fase;
+import com.github.lucasgpulcinelli.perfil.Perfil;
 
 /**
  * Personagem implementa a fundação lógica do jogo.
@@ -101,6 +106,39 @@ public abstract class Personagem extends Desenhavel {
         return true;
     }
 
+    /**
+     * escreverCheckpoint escreve o estado do personagem, para ser restaurado por
+     * {@link lerCheckpoint} em um personagem recém-criado do mesmo tipo. As
+     * subclasses com estado próprio devem sobrescrever os dois métodos.
+     *
+     * @param out onde o estado é escrito
+     * @throws IOException caso a escrita falhe
+     * @see Checkpoint
+     */
+    void escreverCheckpoint(DataOutput out) throws IOException {
+        out.writeByte(getSprite().ordinal());
+        out.writeFloat(getX());
+        out.writeFloat(getY());
+        out.writeFloat(velocidade);
+        out.writeFloat(angulo);
+        out.writeBoolean(deveMorrer);
+    }
+
+    /**
+     * lerCheckpoint restaura o estado escrito por {@link escreverCheckpoint}.
+     *
+     * @param in de onde o estado é lido
+     * @throws IOException caso a leitura falhe
+     */
+    void lerCheckpoint(DataInput in) throws IOException {
+        setSprite(Sprite.values()[in.readUnsignedByte()]);
+        setX(in.readFloat());
+        setY(in.readFloat());
+        velocidade = in.readFloat();
+        angulo = in.readFloat();
+        deveMorrer = in.readBoolean();
+    }
+
     /**
      * acaoDeColisao implementa a lógica do que ocorre quando um personagem colide
      * com outro.
@@ -125,7 +163,10 @@ public abstract class Personagem extends Desenhavel {
      * @return se o personagem morreu nesse frame
      */
     synchronized public boolean frame() {
-        if (morrerSeNecessario())
+        long inicio = Perfil.agora();
+        boolean morreu = morrerSeNecessario();
+        Perfil.acumular(Fase.MORTES, inicio);
+        if (morreu)
             return true;
 
         if (!(podeMover()))
@@ -137,11 +178,13 @@ public abstract class Personagem extends Desenhavel {
         setX(x);
         setY(y);
 
+        inicio = Perfil.agora();
         Personagem colidido;
         if ((colidido = checarColisoes()) != null) {
             this.acaoDeColisao(colidido);
             colidido.acaoDeColisao(this);
         }
+        Perfil.acumular(Fase.COLISAO, inicio);
 
         return false;
     }
@@ -1,8 +1,13 @@
 package com.github.lucasgpulcinelli.sistema;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.github.lucasgpulcinelli.comunicacao.EstadoJogo;
 import com.github.lucasgpulcinelli.comunicacao.Evento;
 import com.github.lucasgpulcinelli.comunicacao.Sprite;
+import com.github.lucasgpulcinelli.registro.RegistroPartida;
 
 /**
  * Tiro implementa o Personagem mais rápido do jogo.
@@ -59,6 +64,18 @@ public class Tiro extends Personagem {
         this.jogador = jogador;
     }
 
+    @Override
+    void escreverCheckpoint(DataOutput out) throws IOException {
+        super.escreverCheckpoint(out);
+        out.writeBoolean(jaMatouPersonagem);
+    }
+
+    @Override
+    void lerCheckpoint(DataInput in) throws IOException {
+        super.lerCheckpoint(in);
+        jaMatouPersonagem = in.readBoolean();
+    }
+
     /**
      * Ação de colisão do tiro, pode ser bem diferente dependendo se vem de um
      * inimigo ou não.
@@ -100,7 +117,10 @@ public class Tiro extends Personagem {
         jaMatouPersonagem = true;
 
         if (jogador != -1) {
-            EstadoJogo.pegarUnicoEstado().addScore(jogador, p.getScoreMorto());
+            // a score da nave especial é sorteada, então é calculada uma única vez
+            int score = p.getScoreMorto();
+            EstadoJogo.pegarUnicoEstado().addScore(jogador, score);
+            RegistroPartida.abate(jogador, p.getSprite(), score);
         }
 
         p.matar();